@@ -0,0 +1,80 @@
+package benchmarks;
+
+import collidables.GameEnvironment;
+import geometry.Point;
+import geometry.Rectangle;
+import sprites.Ball;
+import sprites.Block;
+import sprites.Velocity;
+
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * Builds the standard level of Game.initialize as a closed box: the death region is a
+ * plain wall and blocks have no listeners, so balls keep bouncing forever and a benchmark
+ * can step them for as long as it likes.
+ */
+final class Arena {
+    static final int WIDTH = 800;
+    static final int HEIGHT = 600;
+    private static final int BORDER = 20;
+
+    private Arena() {
+    }
+
+    /**
+     * Builds the walled level.
+     * @return an environment holding the four walls and the level blocks
+     */
+    static GameEnvironment walledLevel() {
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(block(0, 0, WIDTH, BORDER));
+        environment.addCollidable(block(0, 0, BORDER, HEIGHT));
+        environment.addCollidable(block(WIDTH - BORDER, 0, BORDER, HEIGHT));
+        environment.addCollidable(block(0, HEIGHT - BORDER, WIDTH, BORDER));
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 12 - i; j++) {
+                environment.addCollidable(block(WIDTH - BORDER - (j + 1) * 50, 100 + i * 25, 50, 25));
+            }
+        }
+        return environment;
+    }
+
+    /**
+     * Builds an empty box of the given size: just the four walls.
+     * @param width  the width of the box
+     * @param height the height of the box
+     * @return an environment holding the four walls
+     */
+    static GameEnvironment box(int width, int height) {
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(block(0, 0, width, BORDER));
+        environment.addCollidable(block(0, 0, BORDER, height));
+        environment.addCollidable(block(width - BORDER, 0, BORDER, height));
+        environment.addCollidable(block(0, height - BORDER, width, BORDER));
+        return environment;
+    }
+
+    /**
+     * Creates balls below the blocks with random directions and speeds.
+     * @param environment the environment the balls move in
+     * @param count the number of balls
+     * @param seed the seed of the random positions and velocities
+     * @return the balls
+     */
+    static Ball[] balls(GameEnvironment environment, int count, long seed) {
+        Random random = new Random(seed);
+        Ball[] balls = new Ball[count];
+        for (int i = 0; i < count; i++) {
+            balls[i] = new Ball(new Point(40 + random.nextInt(WIDTH - 80), 300 + random.nextInt(240)), 5, Color.RED);
+            balls[i].setVelocity(Velocity.fromAngleAndSpeed(random.nextInt(360), 2 + random.nextInt(4)));
+            balls[i].setGameEnvironment(environment);
+        }
+        return balls;
+    }
+
+    private static Block block(double x, double y, double width, double height) {
+        return new Block(new Rectangle(new Point(x, y), width, height), Color.GRAY);
+    }
+}
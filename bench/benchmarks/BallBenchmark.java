@@ -0,0 +1,68 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sprites.Ball;
+import sprites.SpriteCollection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one simulation tick: a single Ball.moveOneStep, and a whole
+ * SpriteCollection.notifyAllTimePassed over a scene with a given number of balls.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BallBenchmark {
+    @Param({"3", "300"})
+    private int balls;
+
+    private Ball ball;
+    private SpriteCollection sprites;
+
+    /**
+     * Builds the walled level with its balls.
+     */
+    @Setup
+    public void setUp() {
+        Ball[] scene = Arena.balls(Arena.walledLevel(), balls, 7);
+        ball = scene[0];
+        sprites = new SpriteCollection();
+        for (Ball b : scene) {
+            sprites.addSprite(b);
+        }
+    }
+
+    /**
+     * A single ball moving one step.
+     * @return the ball
+     */
+    @Benchmark
+    public Ball moveOneStep() {
+        ball.moveOneStep();
+        return ball;
+    }
+
+    /**
+     * Every ball of the scene moving one step.
+     * @return the sprites
+     */
+    @Benchmark
+    public SpriteCollection notifyAllTimePassed() {
+        sprites.notifyAllTimePassed();
+        return sprites;
+    }
+}
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import collidables.GameEnvironment;
+import geometry.Point;
+import sprites.Ball;
+import sprites.BallCollider;
+import sprites.SpriteCollection;
+
+/**
+ * Fills the walled arena with more and more balls that bounce off each other and reports
+ * what the BallCollider costs per tick, next to the cost of moving the balls and the 16.7 ms
+ * a tick may take at 60 Hz. For comparison it also times one naive pass over every pair
+ * of balls. The pairs tested and the sort shifts per tick show that sort-and-sweep only
+ * looks at near neighbours and that the insertion sort has little to do between ticks.
+ */
+public class BallCollisions {
+    private static final int[] SIZES = {500, 1000, 2000, 4000, 8000};
+    private static final int WARMUP_TICKS = 120;
+    private static final int TICKS = 600;
+    private static final double BUDGET_US = 1e6 / 60;
+
+    /**
+     * Runs the arena for every ball count.
+     * @param args optional: ball counts to run instead of the default ones
+     */
+    public static void main(String[] args) {
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%6s %10s %10s %10s %12s %12s %10s %10s %8s%n", "balls", "move us", "collide us",
+                "naive us", "pairs/tick", "all pairs", "shifts", "contacts", "budget");
+        // The first pass warms up the JIT.
+        for (int round = 0; round < 2; round++) {
+            for (int size : sizes) {
+                Result r = run(size);
+                if (round == 1) {
+                    System.out.printf("%6d %10.1f %10.1f %10.1f %12.0f %12d %10.0f %10.0f %7.1f%%%n", size,
+                            r.moveNanos / 1000.0, r.collideNanos / 1000.0, r.naiveNanos / 1000.0, r.pairs,
+                            (long) size * (size - 1) / 2, r.shifts, r.contacts,
+                            (r.moveNanos + r.collideNanos) / 1000.0 / BUDGET_US * 100);
+                }
+            }
+        }
+    }
+
+    private static Result run(int count) {
+        GameEnvironment environment = Arena.walledLevel();
+        SpriteCollection sprites = new SpriteCollection();
+        BallCollider collider = new BallCollider();
+        Ball[] balls = Arena.balls(environment, count, 11);
+        for (Ball ball : balls) {
+            sprites.addSprite(ball);
+            collider.add(ball);
+        }
+        // Let the balls spread out of their starting overlaps first.
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            sprites.notifyAllTimePassed();
+            collider.resolve();
+        }
+
+        Result r = new Result();
+        long move = 0;
+        long collide = 0;
+        for (int i = 0; i < TICKS; i++) {
+            long start = System.nanoTime();
+            sprites.notifyAllTimePassed();
+            long moved = System.nanoTime();
+            collider.resolve();
+            long resolved = System.nanoTime();
+            move += moved - start;
+            collide += resolved - moved;
+            r.pairs += collider.getLastPairsTested();
+            r.shifts += collider.getLastShifts();
+            r.contacts += collider.getLastCollisions();
+        }
+        r.moveNanos = (double) move / TICKS;
+        r.collideNanos = (double) collide / TICKS;
+        r.pairs /= TICKS;
+        r.shifts /= TICKS;
+        r.contacts /= TICKS;
+
+        long start = System.nanoTime();
+        int touching = naiveContacts(balls);
+        r.naiveNanos = System.nanoTime() - start;
+        if (touching < 0) {
+            System.out.println(touching);
+        }
+        return r;
+    }
+
+    /**
+     * Counts the touching pairs by testing every pair of balls.
+     */
+    private static int naiveContacts(Ball[] balls) {
+        int touching = 0;
+        for (int i = 0; i < balls.length; i++) {
+            Point a = balls[i].getCenter();
+            for (int j = i + 1; j < balls.length; j++) {
+                Point b = balls[j].getCenter();
+                double dx = b.getX() - a.getX();
+                double dy = b.getY() - a.getY();
+                double reach = balls[i].getSize() + balls[j].getSize();
+                if (dx * dx + dy * dy < reach * reach) {
+                    touching++;
+                }
+            }
+        }
+        return touching;
+    }
+
+    /**
+     * The averaged per-tick numbers of one run.
+     */
+    private static final class Result {
+        private double moveNanos;
+        private double collideNanos;
+        private double naiveNanos;
+        private double pairs;
+        private double shifts;
+        private double contacts;
+    }
+}
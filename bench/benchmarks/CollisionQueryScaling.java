@@ -0,0 +1,169 @@
+package benchmarks;
+
+import collidables.Collidable;
+import collidables.CollidableIndex;
+import collidables.CollisionInfo;
+import collidables.DynamicAabbTree;
+import collidables.GameEnvironment;
+import collidables.UniformGrid;
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+import sprites.Block;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures how the cost of GameEnvironment.getClosestCollision grows with the number of
+ * blocks for each CollidableIndex, next to the linear scan they replaced. Every query is
+ * also checked against the linear scan, so the run fails loudly if they ever disagree.
+ */
+public class CollisionQueryScaling {
+    private static final int BLOCK_WIDTH = 50;
+    private static final int BLOCK_HEIGHT = 25;
+    private static final int QUERIES = 20000;
+    private static final int SCAN_BUDGET = 2000000;
+
+    /**
+     * Runs the benchmark for a range of level sizes and prints one row per size.
+     * @param args optional list of block counts to measure
+     */
+    public static void main(String[] args) {
+        int[] sizes = {100, 1000, 10000, 100000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%10s %16s %16s %16s%n", "blocks", "scan ns/query", "grid ns/query", "tree ns/query");
+        for (int n : sizes) {
+            Line[] queries = buildQueries(n, new Random(n));
+            GameEnvironment gridLevel = buildLevel(n, () -> new UniformGrid(64));
+            GameEnvironment treeLevel = buildLevel(n, () -> new DynamicAabbTree(8));
+
+            verify(gridLevel, queries);
+            verify(treeLevel, queries);
+            // Warm up every path before measuring.
+            measureScan(gridLevel, queries);
+            measureIndex(gridLevel, queries);
+            measureIndex(treeLevel, queries);
+            double scan = measureScan(gridLevel, queries);
+            double grid = measureIndex(gridLevel, queries);
+            double tree = measureIndex(treeLevel, queries);
+            System.out.printf("%10d %16.1f %16.1f %16.1f%n", n, scan, grid, tree);
+        }
+    }
+
+    /**
+     * Builds a square-ish level of n touching blocks, like the rows in Game.addLevelBlocks.
+     * @param n the number of blocks
+     * @param index creates the index the environment is backed by
+     * @return an environment holding the blocks
+     */
+    static GameEnvironment buildLevel(int n, Supplier<CollidableIndex> index) {
+        GameEnvironment environment = new GameEnvironment(index.get());
+        int perRow = (int) Math.ceil(Math.sqrt(n * 2.0));
+        for (int i = 0; i < n; i++) {
+            int x = (i % perRow) * BLOCK_WIDTH;
+            int y = (i / perRow) * BLOCK_HEIGHT;
+            environment.addCollidable(new Block(new Rectangle(new Point(x, y), BLOCK_WIDTH, BLOCK_HEIGHT),
+                    Color.GRAY));
+        }
+        return environment;
+    }
+
+    /**
+     * Builds ball-sized trajectories scattered over the level.
+     * @param n the number of blocks in the level
+     * @param random the source of randomness
+     * @return the trajectories
+     */
+    static Line[] buildQueries(int n, Random random) {
+        int perRow = (int) Math.ceil(Math.sqrt(n * 2.0));
+        double width = perRow * BLOCK_WIDTH;
+        double height = Math.ceil((double) n / perRow) * BLOCK_HEIGHT;
+        Line[] queries = new Line[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            double x = random.nextDouble() * width;
+            double y = random.nextDouble() * height;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double length = 1 + random.nextDouble() * 8;
+            queries[i] = new Line(x, y, x + Math.cos(angle) * length, y + Math.sin(angle) * length);
+        }
+        return queries;
+    }
+
+    private static CollisionInfo linearScan(List<Collidable> collidables, Line trajectory) {
+        CollisionInfo closest = null;
+        double minDistance = Double.MAX_VALUE;
+        for (Collidable c : collidables) {
+            Point p = trajectory.closestIntersectionToStartOfLine(c.getCollisionRectangle());
+            if (p != null) {
+                double dist = trajectory.start().distance(p);
+                if (dist < minDistance) {
+                    minDistance = dist;
+                    closest = new CollisionInfo(p, c);
+                }
+            }
+        }
+        return closest;
+    }
+
+    private static void verify(GameEnvironment environment, Line[] queries) {
+        int checks = Math.min(queries.length, Math.max(200, SCAN_BUDGET / environment.getCollidables().size()));
+        for (int i = 0; i < checks; i++) {
+            Line q = queries[i];
+            CollisionInfo expected = linearScan(environment.getCollidables(), q);
+            CollisionInfo actual = environment.getClosestCollision(q);
+            if (expected == null ? actual != null
+                    : actual == null || expected.collisionObject() != actual.collisionObject()
+                    || expected.collisionPoint().getX() != actual.collisionPoint().getX()
+                    || expected.collisionPoint().getY() != actual.collisionPoint().getY()) {
+                throw new IllegalStateException("index and scan disagree for trajectory from "
+                        + q.getStart() + " to " + q.getEnd());
+            }
+        }
+    }
+
+    private static double measureScan(GameEnvironment environment, Line[] queries) {
+        List<Collidable> collidables = environment.getCollidables();
+        // The scan is O(blocks) per query, so only time as many queries as the budget allows.
+        int count = Math.min(queries.length, Math.max(50, SCAN_BUDGET / collidables.size()));
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (linearScan(collidables, queries[i]) != null) {
+                hits++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        consume(hits);
+        return (double) elapsed / count;
+    }
+
+    private static double measureIndex(GameEnvironment environment, Line[] queries) {
+        int rounds = 20;
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (Line q : queries) {
+                if (environment.getClosestCollision(q) != null) {
+                    hits++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        consume(hits);
+        return (double) elapsed / ((long) rounds * queries.length);
+    }
+
+    private static void consume(int value) {
+        if (value == Integer.MIN_VALUE) {
+            System.out.println(value);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package benchmarks;
+
+import collidables.GameEnvironment;
+import counters.Counter;
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.FrameBuffer;
+import graphics.ImageDrawSurface;
+import graphics.StaticLayer;
+import input.RandomInput;
+import sprites.Ball;
+import sprites.Block;
+import sprites.Paddle;
+import sprites.ScoreIndicator;
+import sprites.SpriteCollection;
+import sprites.Velocity;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Plays a scene of blocks, a paddle and a few balls at several window sizes and compares
+ * redrawing the whole frame every time (background, cached static layer, dynamic sprites)
+ * with redrawing only the dirty regions into a FrameBuffer. Reports the pixels touched
+ * and the CPU time per frame of both.
+ */
+public class DirtyRedraw {
+    private static final int FRAMES = 1200;
+    private static final int[][] SIZES = {{800, 600}, {1920, 1080}, {3840, 2160}};
+
+    /**
+     * Runs the comparison for every window size.
+     * @param args optional: number of balls (default 10)
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        System.out.printf("%11s %14s %14s %12s %12s%n", "window", "full px/frame", "dirty px/frame",
+                "full us", "dirty us");
+        for (int[] size : SIZES) {
+            // The first pass warms up the JIT.
+            for (int round = 0; round < 2; round++) {
+                double[] full = run(size[0], size[1], balls, false);
+                double[] dirty = run(size[0], size[1], balls, true);
+                if (round == 1) {
+                    System.out.printf("%11s %14.0f %14.0f %12.1f %12.1f%n", size[0] + "x" + size[1],
+                            full[0], dirty[0], full[1], dirty[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the scene and returns the average pixels touched and microseconds per frame.
+     */
+    private static double[] run(int width, int height, int ballCount, boolean dirty) {
+        GameEnvironment environment = new GameEnvironment();
+        SpriteCollection sprites = new SpriteCollection();
+        sprites.setStaticLayer(new StaticLayer(width, height, Color.WHITE));
+        Counter score = new Counter();
+
+        addBlock(environment, sprites, new Block(new Rectangle(new Point(0, 0), width, 20), Color.GRAY));
+        addBlock(environment, sprites, new Block(new Rectangle(new Point(0, 0), 20, height), Color.GRAY));
+        addBlock(environment, sprites, new Block(new Rectangle(new Point(width - 20, 0), 20, height), Color.GRAY));
+        addBlock(environment, sprites, new Block(new Rectangle(new Point(0, height - 20), width, 20), Color.GRAY));
+        Color[] colors = {Color.RED, Color.YELLOW, Color.BLUE, Color.PINK, Color.GREEN};
+        for (int y = 100; y < height / 3; y += 25) {
+            for (int x = 20; x + 50 <= width - 20; x += 50) {
+                Block block = new Block(new Rectangle(new Point(x, y), 50, 25), colors[(x / 50 + y / 25) % 5]);
+                block.addHitListener((beingHit, hitter) -> {
+                    environment.removeCollidable(beingHit);
+                    sprites.removeSprite(beingHit);
+                    score.increase(5);
+                });
+                addBlock(environment, sprites, block);
+            }
+        }
+        Paddle paddle = new Paddle(new Rectangle(new Point(width / 2 - 60, height - 40), 120, 5), Color.ORANGE,
+                new RandomInput(1), 6, width);
+        environment.addCollidable(paddle);
+        sprites.addSprite(paddle);
+        Random random = new Random(5);
+        for (int i = 0; i < ballCount; i++) {
+            Ball ball = new Ball(new Point(40 + random.nextInt(width - 80), height / 2 + random.nextInt(height / 3)),
+                    5, Color.BLACK);
+            ball.setVelocity(Velocity.fromAngleAndSpeed(random.nextInt(360), 4));
+            ball.setGameEnvironment(environment);
+            sprites.addSprite(ball);
+        }
+        sprites.addSprite(new ScoreIndicator(score));
+
+        FrameBuffer frame = new FrameBuffer(width, height, Color.WHITE);
+        ImageDrawSurface surface = new ImageDrawSurface(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        long pixels = 0;
+        long nanos = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            sprites.notifyAllTimePassed();
+            long start = System.nanoTime();
+            if (dirty) {
+                sprites.drawDirtyOn(frame, 0.5);
+                pixels += frame.getPixelsTouched();
+            } else {
+                surface.setColor(Color.WHITE);
+                surface.fillRectangle(0, 0, width, height);
+                sprites.drawAllOn(surface, 0.5);
+                pixels += (long) width * height;
+            }
+            nanos += System.nanoTime() - start;
+        }
+        return new double[] {(double) pixels / FRAMES, nanos / 1000.0 / FRAMES};
+    }
+
+    private static void addBlock(GameEnvironment environment, SpriteCollection sprites, Block block) {
+        environment.addCollidable(block);
+        sprites.addSprite(block);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import collidables.CollisionInfo;
+import collidables.GameEnvironment;
+import collidables.SweepResult;
+import collidables.UniformGrid;
+import geometry.Line;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks GameEnvironment collision queries on levels of 10, 1k and 100k collidables.
+ * Each invocation runs the next of a fixed set of random ball-sized trajectories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnvironmentBenchmark {
+    @Param({"10", "1000", "100000"})
+    private int blocks;
+
+    private GameEnvironment environment;
+    private Line[] queries;
+    private final SweepResult sweep = new SweepResult();
+    private int next;
+
+    /**
+     * Builds the level and the trajectories.
+     */
+    @Setup
+    public void setUp() {
+        environment = CollisionQueryScaling.buildLevel(blocks, () -> new UniformGrid(64));
+        queries = CollisionQueryScaling.buildQueries(blocks, new Random(blocks));
+    }
+
+    /**
+     * The closest point-trajectory collision.
+     * @return the collision, or null
+     */
+    @Benchmark
+    public CollisionInfo getClosestCollision() {
+        Line q = queries[next++ % queries.length];
+        return environment.getClosestCollision(q);
+    }
+
+    /**
+     * The first contact of a ball-sized circle swept along the same trajectories.
+     * @return whether the circle hit anything
+     */
+    @Benchmark
+    public boolean sweepCircle() {
+        Line q = queries[next++ % queries.length];
+        double x = q.getStart().getX();
+        double y = q.getStart().getY();
+        return environment.sweepCircle(x, y, q.getEnd().getX() - x, q.getEnd().getY() - y, 5, sweep);
+    }
+}
@@ -0,0 +1,169 @@
+package benchmarks;
+
+import collidables.GameEnvironment;
+import core.Game;
+import geometry.Point;
+import input.InputProvider;
+import input.RandomInput;
+import input.TrajectoryInput;
+import sprites.Ball;
+import sprites.BallScheduler;
+import sprites.SpriteCollection;
+import sprites.Velocity;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.function.LongFunction;
+
+/**
+ * Compares stepping every ball every tick with moving the balls from event to event with a
+ * BallScheduler, in simulated seconds per wall-clock second at 60 ticks per second.
+ *
+ * <p>First whole games: short games of the standard level with an idle paddle, where the
+ * event-driven game jumps from event to event, with a random paddle, and long ones with
+ * the trajectory-predicting bot, which looks at every ball every tick. The mean scores of
+ * both modes are printed side by side, with the number of games whose score or length
+ * differs between the two. Then sparse scenes: balls bouncing in
+ * empty boxes far larger than the screen, where the scheduler jumps straight from one
+ * event to the next. Every ball is checked to still be inside its box at the end.</p>
+ */
+public class EventDriven {
+    private static final int RANDOM_GAMES = 500;
+    private static final int BOT_GAMES = 10;
+    private static final int BOT_TICKS = 20000;
+    private static final int[] BALLS = {10, 100, 1000};
+    private static final int[][] BOXES = {{800, 600}, {4000, 3000}, {16000, 12000}};
+    private static final long SPARSE_TICKS = 60L * 60 * 10;
+
+    /**
+     * Runs the games and the sparse scenes.
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.out.printf("%-22s %12s %12s %9s %14s %14s %8s%n", "games", "stepped s/s", "event s/s", "speed-up",
+                "stepped score", "event score", "differ");
+        for (int round = 0; round < 2; round++) {
+            GameResult[] idle = new GameResult[2];
+            GameResult[] random = new GameResult[2];
+            GameResult[] bot = new GameResult[2];
+            for (int mode = 0; mode < 2; mode++) {
+                idle[mode] = games(n -> InputProvider.IDLE, RANDOM_GAMES, 20000, mode == 1);
+                random[mode] = games(RandomInput::new, RANDOM_GAMES, 20000, mode == 1);
+                bot[mode] = games(n -> new TrajectoryInput(), BOT_GAMES, BOT_TICKS, mode == 1);
+            }
+            if (round == 1) {
+                print("idle paddle", idle);
+                print("random paddle", random);
+                print("bot, 20000 ticks", bot);
+            }
+        }
+
+        System.out.printf("%n%-22s %12s %12s %9s %12s %9s%n", "sparse scene", "stepped s/s", "event s/s",
+                "speed-up", "steps/tick", "escaped");
+        for (int[] box : BOXES) {
+            for (int balls : BALLS) {
+                // The stepped run is shorter; its cost per tick does not change over time.
+                long steppedTicks = Math.max(600, SPARSE_TICKS * 10 / balls / (box[0] / 800));
+                sparse(box[0], box[1], balls, Math.min(steppedTicks, 600), false);
+                sparse(box[0], box[1], balls, 600, true);
+                SparseResult stepped = sparse(box[0], box[1], balls, Math.min(steppedTicks, SPARSE_TICKS), false);
+                SparseResult event = sparse(box[0], box[1], balls, SPARSE_TICKS, true);
+                System.out.printf("%-22s %12.0f %12.0f %8.0fx %12.3f %9d%n",
+                        balls + " balls, " + box[0] + "x" + box[1], stepped.simulatedPerSecond,
+                        event.simulatedPerSecond, event.simulatedPerSecond / stepped.simulatedPerSecond,
+                        event.stepsPerTick, stepped.escaped + event.escaped);
+            }
+        }
+    }
+
+    private static void print(String name, GameResult[] r) {
+        int differ = 0;
+        for (int n = 0; n < r[0].scores.length; n++) {
+            if (r[0].scores[n] != r[1].scores[n] || r[0].ticks[n] != r[1].ticks[n]) {
+                differ++;
+            }
+        }
+        System.out.printf("%-22s %12.0f %12.0f %8.1fx %14.2f %14.2f %8d%n", name, r[0].simulatedPerSecond,
+                r[1].simulatedPerSecond, r[1].simulatedPerSecond / r[0].simulatedPerSecond, r[0].meanScore,
+                r[1].meanScore, differ);
+    }
+
+    private static GameResult games(LongFunction<InputProvider> policy, int games, int maxTicks, boolean event) {
+        GameResult r = new GameResult();
+        r.scores = new int[games];
+        r.ticks = new long[games];
+        long ticks = 0;
+        long score = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < games; n++) {
+            Game game = new Game(policy.apply(n));
+            game.setEventDriven(event);
+            game.initialize();
+            game.step(maxTicks);
+            r.scores[n] = game.getScore();
+            r.ticks[n] = game.getTicks();
+            ticks += game.getTicks();
+            score += game.getScore();
+        }
+        r.simulatedPerSecond = ticks / 60.0 / ((System.nanoTime() - start) / 1e9);
+        r.meanScore = (double) score / games;
+        return r;
+    }
+
+    private static SparseResult sparse(int width, int height, int count, long ticks, boolean event) {
+        GameEnvironment environment = Arena.box(width, height);
+        Random random = new Random(count);
+        Ball[] balls = new Ball[count];
+        SpriteCollection sprites = new SpriteCollection();
+        BallScheduler scheduler = new BallScheduler(environment);
+        for (int i = 0; i < count; i++) {
+            balls[i] = new Ball(new Point(40 + random.nextInt(width - 80), 40 + random.nextInt(height - 80)), 5,
+                    Color.RED);
+            balls[i].setVelocity(Velocity.fromAngleAndSpeed(random.nextInt(360), 2 + random.nextInt(4)));
+            balls[i].setGameEnvironment(environment);
+            if (event) {
+                scheduler.add(balls[i], 0);
+            } else {
+                sprites.addSprite(balls[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        if (event) {
+            for (long tick = scheduler.nextEvent(); tick < ticks; tick = scheduler.nextEvent()) {
+                scheduler.advance(tick);
+            }
+            scheduler.sync(ticks);
+        } else {
+            for (long tick = 0; tick < ticks; tick++) {
+                sprites.notifyAllTimePassed();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        SparseResult r = new SparseResult();
+        r.simulatedPerSecond = ticks / 60.0 / (elapsed / 1e9);
+        r.stepsPerTick = (double) scheduler.getSteps() / ticks;
+        for (Ball ball : balls) {
+            Point c = ball.getCenter();
+            if (c.getX() < 20 || c.getX() > width - 20 || c.getY() < 20 || c.getY() > height - 20) {
+                r.escaped++;
+            }
+        }
+        return r;
+    }
+
+    private static final class GameResult {
+        private double simulatedPerSecond;
+        private double meanScore;
+        private int[] scores;
+        private long[] ticks;
+    }
+
+    private static final class SparseResult {
+        private double simulatedPerSecond;
+        private double stepsPerTick;
+        private int escaped;
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmarks of the geometry primitives every collision query is built on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryBenchmark {
+    private final Line crossing = new Line(100, 100, 160, 140);
+    private final Line other = new Line(100, 140, 160, 100);
+    private final Rectangle block = new Rectangle(new Point(120, 110), 50, 25);
+    private final Line throughBlock = new Line(110, 100, 180, 150);
+
+    /**
+     * Intersection of two crossing segments.
+     * @return the intersection point
+     */
+    @Benchmark
+    public Point lineIntersectionWith() {
+        return crossing.intersectionWith(other);
+    }
+
+    /**
+     * All intersection points of a segment that crosses a block.
+     * @return the intersection points
+     */
+    @Benchmark
+    public List<Point> rectangleIntersectionPoints() {
+        return block.intersectionPoints(throughBlock);
+    }
+
+    /**
+     * The closest intersection point of a segment that crosses a block.
+     * @return the closest intersection point
+     */
+    @Benchmark
+    public Point closestIntersectionToStartOfLine() {
+        return throughBlock.closestIntersectionToStartOfLine(block);
+    }
+}
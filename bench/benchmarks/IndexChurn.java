@@ -0,0 +1,121 @@
+package benchmarks;
+
+import collidables.Collidable;
+import collidables.CollidableIndex;
+import collidables.CollisionInfo;
+import collidables.DynamicAabbTree;
+import collidables.GameEnvironment;
+import collidables.UniformGrid;
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+import sprites.Ball;
+import sprites.Velocity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Simulates levels where many collidables move every tick and blocks keep getting destroyed,
+ * and reports the per-tick cost of keeping each CollidableIndex up to date and querying it.
+ * Moving collidables wander by a few pixels per tick, like the paddle does.
+ */
+public class IndexChurn {
+    private static final int TICKS = 600;
+    private static final int QUERIES_PER_TICK = 200;
+
+    /**
+     * Runs the churn scenario for each index and prints the average tick cost.
+     * @param args optional: block count, moving collidable count, blocks removed per tick
+     */
+    public static void main(String[] args) {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int movers = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int removedPerTick = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        System.out.printf("blocks=%d moving=%d removed/tick=%d%n", blocks, movers, removedPerTick);
+        for (int round = 0; round < 2; round++) {
+            double grid = run(() -> new UniformGrid(64), blocks, movers, removedPerTick);
+            double tree = run(() -> new DynamicAabbTree(8), blocks, movers, removedPerTick);
+            if (round == 1) {
+                System.out.printf("grid: %10.1f us/tick%n", grid / 1000);
+                System.out.printf("tree: %10.1f us/tick%n", tree / 1000);
+            }
+        }
+    }
+
+    private static double run(Supplier<CollidableIndex> index, int blocks, int movers, int removedPerTick) {
+        Random random = new Random(42);
+        GameEnvironment environment = CollisionQueryScaling.buildLevel(blocks, index);
+        List<Collidable> removable = new ArrayList<>(environment.getCollidables());
+        double width = Math.ceil(Math.sqrt(blocks * 2.0)) * 50;
+        double height = blocks / Math.ceil(Math.sqrt(blocks * 2.0)) * 25;
+        Mover[] moving = new Mover[movers];
+        for (int i = 0; i < movers; i++) {
+            moving[i] = new Mover(random.nextDouble() * width, random.nextDouble() * height);
+            environment.addCollidable(moving[i]);
+        }
+        Line[] queries = CollisionQueryScaling.buildQueries(blocks, random);
+
+        int hits = 0;
+        int q = 0;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (Mover m : moving) {
+                m.wander(random);
+                environment.updateCollidable(m);
+            }
+            for (int i = 0; i < removedPerTick && !removable.isEmpty(); i++) {
+                int victim = random.nextInt(removable.size());
+                Collidable c = removable.get(victim);
+                removable.set(victim, removable.get(removable.size() - 1));
+                removable.remove(removable.size() - 1);
+                environment.removeCollidable(c);
+            }
+            for (int i = 0; i < QUERIES_PER_TICK; i++) {
+                CollisionInfo info = environment.getClosestCollision(queries[q++ % queries.length]);
+                if (info != null) {
+                    hits++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (hits == Integer.MIN_VALUE) {
+            System.out.println(hits);
+        }
+        return (double) elapsed / TICKS;
+    }
+
+    /**
+     * A paddle-sized collidable that replaces its rectangle whenever it moves.
+     */
+    private static final class Mover implements Collidable {
+        private Rectangle rectangle;
+        private double vx;
+
+        private Mover(double x, double y) {
+            this.rectangle = new Rectangle(new Point(x, y), 40, 5);
+            this.vx = 6;
+        }
+
+        private void wander(Random random) {
+            if (random.nextInt(60) == 0) {
+                vx = -vx;
+            }
+            Point p = rectangle.getUpperLeft();
+            rectangle = new Rectangle(new Point(p.getX() + vx, p.getY()), 40, 5);
+        }
+
+        @Override
+        public Rectangle getCollisionRectangle() {
+            return rectangle;
+        }
+
+        @Override
+        public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
+            return currentVelocity;
+        }
+    }
+}
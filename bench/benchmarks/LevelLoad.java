@@ -0,0 +1,73 @@
+package benchmarks;
+
+import collidables.GameEnvironment;
+import core.Game;
+import input.InputProvider;
+import levels.LevelFile;
+import sprites.Block;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a level with a million blocks and reports how long loading it takes: reading
+ * the memory-mapped file into a LevelFile, creating all its blocks in an environment, and
+ * setting up a headless game with it, which only loads the chunks around the start.
+ */
+public class LevelLoad {
+    private static final int REPEATS = 5;
+
+    /**
+     * Writes the level, loads it a few times and prints the fastest timings.
+     * @param args optional: number of blocks in the level
+     * @throws IOException if the level file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int perRow = (int) Math.ceil(Math.sqrt(blocks));
+        LevelFile level = new LevelFile(perRow * 10, perRow * 5 + 600);
+        Color[] colors = {Color.GRAY, Color.RED, Color.YELLOW, Color.BLUE, Color.PINK, Color.GREEN};
+        for (int i = 0; i < blocks; i++) {
+            level.addBlock(i % perRow * 10, 600 + i / perRow * 5, 10, 5, level.addColor(colors[i % colors.length]),
+                    LevelFile.DESTRUCTIBLE);
+        }
+        Path file = Files.createTempFile("level", ".bin");
+        try {
+            level.write(file);
+            System.out.printf("%d blocks, %.1f MB%n", blocks, Files.size(file) / 1e6);
+
+            long read = Long.MAX_VALUE;
+            long build = Long.MAX_VALUE;
+            long game = Long.MAX_VALUE;
+            // The first repeat warms up the JIT; each step reports its fastest run.
+            for (int i = 0; i < REPEATS; i++) {
+                long t0 = System.nanoTime();
+                LevelFile loaded = LevelFile.read(file);
+                long t1 = System.nanoTime();
+                GameEnvironment environment = new GameEnvironment();
+                for (int b = 0; b < loaded.getBlockCount(); b++) {
+                    Block block = loaded.createBlock(b);
+                    environment.addCollidable(block);
+                }
+                long t2 = System.nanoTime();
+                Game g = new Game(InputProvider.IDLE);
+                g.setLevel(loaded);
+                g.initialize();
+                long t3 = System.nanoTime();
+                if (loaded.getBlockCount() != blocks || environment.getCollidables().size() != blocks) {
+                    throw new IllegalStateException("the level did not load completely");
+                }
+                read = Math.min(read, t1 - t0);
+                build = Math.min(build, t2 - t1);
+                game = Math.min(game, t3 - t2);
+            }
+            System.out.printf("read level file:        %8.1f ms (%.1f ns/block)%n", read / 1e6, (double) read / blocks);
+            System.out.printf("create blocks:          %8.1f ms (%.1f ns/block)%n", build / 1e6, (double) build / blocks);
+            System.out.printf("set up headless game:   %8.1f ms (%.1f ns/block)%n", game / 1e6, (double) game / blocks);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package benchmarks;
+
+import collidables.GameEnvironment;
+import core.Game;
+import graphics.Camera;
+import graphics.ImageDrawSurface;
+import input.RandomInput;
+import levels.ChunkHost;
+import levels.LevelFile;
+import levels.LevelStreamer;
+import sprites.Block;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Scrolls a camera back and forth over levels of 10k up to a million blocks while a
+ * LevelStreamer loads and evicts the chunks around it, and draws every frame through the
+ * camera. Reports the streaming and drawing time per frame, the worst frame, how many
+ * blocks were loaded and the heap left after a GC, which should all stay flat as the level
+ * grows. Then plays a headless game of each level for comparison.
+ */
+public class LevelStreaming {
+    private static final int[] SIZES = {10000, 100000, 1000000};
+    private static final int FRAMES = 3000;
+    private static final int SCROLL_SPEED = 12;
+    private static final int CHUNK_SIZE = 256;
+    private static final int GAME_TICKS = 3000;
+
+    /**
+     * Runs the scroll and the game for every level size.
+     * @param args optional: block counts to run instead of the default ones
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%8s %11s %9s %9s %9s %9s %9s %8s %9s %12s%n", "blocks", "world", "stream us",
+                "draw us", "worst us", "loaded", "max", "waits", "heap MB", "game us/tick");
+        // The first pass warms up the JIT.
+        for (int round = 0; round < 2; round++) {
+            for (int size : sizes) {
+                LevelFile level = level(size);
+                Result r = scroll(level);
+                double tickNanos = play(level);
+                if (round == 1) {
+                    System.out.printf("%8d %5dx%-5d %9.1f %9.1f %9.0f %9.0f %9d %8d %9.1f %12.1f%n", size,
+                            level.getWidth(), level.getHeight(), r.streamNanos / 1000.0, r.drawNanos / 1000.0,
+                            r.worstNanos / 1000.0, r.loaded, r.maxLoaded, r.waits, r.heapBytes / 1e6,
+                            tickNanos / 1000.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lays out a level of about twice as many columns as rows of 40x20 blocks in 50x25 cells.
+     */
+    private static LevelFile level(int blocks) {
+        int columns = (int) Math.ceil(Math.sqrt(blocks * 2.0));
+        int rows = (blocks + columns - 1) / columns;
+        LevelFile level = new LevelFile(columns * 50 + 40, rows * 25 + 600);
+        Color[] colors = {Color.GRAY, Color.RED, Color.YELLOW, Color.BLUE, Color.PINK, Color.GREEN};
+        for (int i = 0; i < blocks; i++) {
+            level.addBlock(20 + i % columns * 50, 20 + i / columns * 25, 40, 20,
+                    level.addColor(colors[i / columns % colors.length]), LevelFile.DESTRUCTIBLE);
+        }
+        return level;
+    }
+
+    private static Result scroll(LevelFile level) {
+        SpriteCollection sprites = new SpriteCollection();
+        GameEnvironment environment = new GameEnvironment();
+        ChunkHost host = new ChunkHost() {
+            @Override
+            public void addBlock(Block block, boolean destructible) {
+                sprites.addSprite(block);
+                environment.addCollidable(block);
+            }
+
+            @Override
+            public boolean removeBlock(Block block) {
+                sprites.removeSprite(block);
+                environment.removeCollidable(block);
+                return true;
+            }
+        };
+        LevelStreamer streamer = new LevelStreamer(level, host, CHUNK_SIZE, true);
+        Camera camera = new Camera(800, 600, level.getWidth(), level.getHeight());
+        ImageDrawSurface surface = new ImageDrawSurface(new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB));
+
+        Result r = new Result();
+        long stream = 0;
+        long draw = 0;
+        double x = 0;
+        double y = 0;
+        int direction = 1;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            // Sweep left and right, dropping down a screen at either end.
+            x += direction * SCROLL_SPEED;
+            if (x < 0 || x > level.getWidth() - camera.getWidth()) {
+                direction = -direction;
+                y = y + camera.getHeight() > level.getHeight() - camera.getHeight() ? 0 : y + camera.getHeight();
+            }
+            camera.moveTo(x, y);
+
+            long start = System.nanoTime();
+            streamer.beginUpdate();
+            double left = camera.getX();
+            double top = camera.getY();
+            streamer.require(left, top, left + camera.getWidth(), top + camera.getHeight());
+            streamer.prefetch(left - CHUNK_SIZE, top - CHUNK_SIZE,
+                    left + camera.getWidth() + CHUNK_SIZE, top + camera.getHeight() + CHUNK_SIZE);
+            streamer.endUpdate();
+            long streamed = System.nanoTime();
+            surface.setColor(Color.WHITE);
+            surface.fillRectangle(0, 0, 800, 600);
+            sprites.drawAllOn(surface, 1, camera);
+            long drawn = System.nanoTime();
+
+            stream += streamed - start;
+            draw += drawn - streamed;
+            r.worstNanos = Math.max(r.worstNanos, drawn - start);
+            r.loaded += streamer.getLoadedBlocks();
+            r.maxLoaded = Math.max(r.maxLoaded, streamer.getLoadedBlocks());
+        }
+        r.streamNanos = (double) stream / FRAMES;
+        r.drawNanos = (double) draw / FRAMES;
+        r.loaded /= FRAMES;
+        r.waits = streamer.getWaits();
+        if (sprites.getSprites().size() != streamer.getLoadedBlocks()) {
+            throw new IllegalStateException("the streamer and the sprites disagree on what is loaded");
+        }
+        System.gc();
+        r.heapBytes = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        streamer.close();
+        return r;
+    }
+
+    /**
+     * Plays a headless game of the level until it ends and returns the time per tick.
+     */
+    private static double play(LevelFile level) {
+        Game game = new Game(new RandomInput(1));
+        game.setLevel(level);
+        game.initialize();
+        long start = System.nanoTime();
+        int done = game.step(GAME_TICKS);
+        return (double) (System.nanoTime() - start) / Math.max(1, done);
+    }
+
+    /**
+     * The averaged per-frame numbers of one scroll.
+     */
+    private static final class Result {
+        private double streamNanos;
+        private double drawNanos;
+        private long worstNanos;
+        private double loaded;
+        private int maxLoaded;
+        private int waits;
+        private long heapBytes;
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import biuoop.DrawSurface;
+import collidables.GameEnvironment;
+import geometry.Point;
+import geometry.Rectangle;
+import sprites.Block;
+import sprites.Sprite;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+
+/**
+ * Destroys every block of a level in a single tick, the way a bomb or a cleared level
+ * would, and reports the cost of that tick for growing levels. Each block removes itself
+ * from the sprites and the environment while the sprites are being updated, like
+ * Block.removeFromGame does. A linear cost shows as a flat time per block.
+ */
+public class MassRemoval {
+    private static final int[] SIZES = {2500, 5000, 10000, 20000, 40000};
+    private static final int REPEATS = 5;
+
+    /**
+     * Runs the removal for every level size.
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        System.out.printf("%8s %12s %12s%n", "blocks", "tick us", "ns/block");
+        // The first pass warms up the JIT. Each size reports its fastest tick.
+        for (int round = 0; round < 2; round++) {
+            for (int size : SIZES) {
+                long nanos = Long.MAX_VALUE;
+                for (int i = 0; i < REPEATS; i++) {
+                    nanos = Math.min(nanos, run(size));
+                }
+                if (round == 1) {
+                    System.out.printf("%8d %12.0f %12.1f%n", size, nanos / 1000.0, (double) nanos / size);
+                }
+            }
+        }
+    }
+
+    private static long run(int count) {
+        GameEnvironment environment = new GameEnvironment();
+        SpriteCollection sprites = new SpriteCollection();
+        Block[] blocks = new Block[count];
+        int perRow = (int) Math.ceil(Math.sqrt(count));
+        for (int i = 0; i < count; i++) {
+            blocks[i] = new Block(new Rectangle(new Point(i % perRow * 50, i / perRow * 25), 50, 25), Color.GRAY);
+            sprites.addSprite(blocks[i]);
+            environment.addCollidable(blocks[i]);
+        }
+        sprites.addSprite(new Sprite() {
+            @Override
+            public void drawOn(DrawSurface d) {
+            }
+
+            @Override
+            public void timePassed() {
+                for (Block block : blocks) {
+                    environment.removeCollidable(block);
+                    sprites.removeSprite(block);
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        sprites.notifyAllTimePassed();
+        environment.getCollidables();
+        long elapsed = System.nanoTime() - start;
+        if (sprites.getSprites().size() != 1 || !environment.getCollidables().isEmpty()) {
+            throw new IllegalStateException("blocks left after the tick");
+        }
+        return elapsed;
+    }
+}
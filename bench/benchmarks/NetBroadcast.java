@@ -0,0 +1,131 @@
+package benchmarks;
+
+import input.RandomInput;
+import net.GameClient;
+import net.GameServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connects 1 up to 1000 headless clients over loopback to a GameServer and lets them play
+ * at 60 Hz with random paddles. Reports the payload bytes sent per client per tick, the
+ * delta sizes against the full state a client would otherwise get every frame, and the
+ * server's busy time per frame it actually sent, from which it works out how many clients
+ * one core could serve. All clients run on one thread through a selector, so the server
+ * and the clients share the machine; the busy time only counts the server's own thread.
+ * When the clients fall behind, the server skips frames for them and sends full states to
+ * clients whose acknowledged frame is too old, both of which are counted. A few frames
+ * are skipped whenever a client waits to acknowledge a full state, but once more than 1%
+ * of them are skipped the server is not keeping up, and the row is marked as over
+ * capacity: its clients per core figure is then only what the server managed to send.
+ *
+ * <p>At the end of every run each client's copy of the world is checked against its
+ * counters: the ball count must match, and the classic level's four walls must be the only
+ * live blocks that are not destructible.</p>
+ */
+public class NetBroadcast {
+    private static final int[] CLIENTS = {1, 10, 100, 400, 1000};
+    private static final int SECONDS = 3;
+    private static final int WALLS = 4;
+    private static final double MAX_SKIPPED = 0.01;
+
+    /**
+     * Runs the broadcast for every client count.
+     * @param args optional: client counts to run instead of the default ones
+     * @throws Exception if a socket fails or a thread is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int[] counts = CLIENTS;
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                counts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        long nanosPerTick = 1000000000L / 60;
+        // Warm up the JIT on both ends.
+        run(10, 1);
+        System.out.printf("%8s %8s %10s %9s %9s %9s %8s %12s %10s %9s %8s%n", "clients", "frames", "B/client/t",
+                "delta p50", "delta p99", "full B", "fulls", "us/sent", "per core", "skipped", "checks");
+        for (int clients : counts) {
+            Result r = run(clients, SECONDS);
+            GameServer s = r.server;
+            long sent = s.getClientFrames() - s.getSkippedFrames();
+            double busyPerSent = s.getBusyNanos() / (double) Math.max(1, sent);
+            double skipped = s.getSkippedFrames() / (double) Math.max(1, s.getClientFrames());
+            System.out.printf("%8d %8d %10.1f %9d %9d %9.0f %8d %12.2f %10.0f %8.1f%% %8s%s%n", clients,
+                    s.getTicks(), s.getBytesSent() / (double) s.getClientFrames(),
+                    s.getDeltaBytes().getPercentile(50), s.getDeltaBytes().getPercentile(99),
+                    s.getFullBytes().getMean(), r.fullUpdates, busyPerSent / 1000.0, nanosPerTick / busyPerSent,
+                    skipped * 100, r.mismatches == 0 ? "ok" : r.mismatches + " bad",
+                    skipped > MAX_SKIPPED ? "  over capacity" : "");
+        }
+    }
+
+    private static Result run(int clients, int seconds) throws IOException, InterruptedException {
+        GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, "game-server");
+        serverThread.start();
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+        List<GameClient> all = new ArrayList<>();
+        List<RandomInput> paddles = new ArrayList<>();
+        Result result = new Result(server);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < clients; i++) {
+                GameClient client = GameClient.connect(address);
+                client.getChannel().register(selector, SelectionKey.OP_READ, i);
+                all.add(client);
+                paddles.add(new RandomInput(i));
+            }
+            long deadline = System.nanoTime() + seconds * 1000000000L;
+            while (System.nanoTime() < deadline) {
+                selector.select(10);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    int i = (Integer) key.attachment();
+                    all.get(i).setInput(paddles.get(i).poll());
+                    all.get(i).receive();
+                }
+                selector.selectedKeys().clear();
+            }
+            server.close();
+            serverThread.join();
+            for (GameClient client : all) {
+                result.fullUpdates += client.getFullUpdates();
+                if (client.getBallCount() != client.getRemainingBalls()
+                        || client.getLiveBlocks() - client.getRemainingBlocks() != WALLS) {
+                    result.mismatches++;
+                }
+            }
+        } finally {
+            server.close();
+            for (GameClient client : all) {
+                client.close();
+            }
+        }
+        return result;
+    }
+
+    private static final class Result {
+        private final GameServer server;
+        private long fullUpdates;
+        private int mismatches;
+
+        private Result(GameServer server) {
+            this.server = server;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import collidables.GameEnvironment;
+import geometry.Point;
+import geometry.Rectangle;
+import sprites.Ball;
+import sprites.Block;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Steps a scene with thousands of balls in a level of destructible blocks, once with every
+ * ball moved on the calling thread and once with the balls prepared on a ForkJoinPool, and
+ * reports the tick cost of both. The two runs must end with bit-for-bit identical balls,
+ * so the run fails loudly if parallel preparation ever changes the outcome.
+ */
+public class ParallelPhysics {
+    private static final int BRICK_WIDTH = 20;
+    private static final int BRICK_HEIGHT = 10;
+
+    /**
+     * Runs the serial and the parallel scene and prints their tick cost.
+     * @param args optional: ball count, tick count, pool parallelism
+     */
+    public static void main(String[] args) {
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        System.out.printf("balls=%d ticks=%d threads=%d%n", balls, ticks, threads);
+        for (int round = 0; round < 2; round++) {
+            Scene serial = new Scene(balls, null);
+            Scene parallel = new Scene(balls, pool);
+            double serialTime = serial.run(ticks);
+            double parallelTime = parallel.run(ticks);
+            serial.compare(parallel);
+            if (round == 1) {
+                System.out.printf("serial:   %10.1f us/tick%n", serialTime / 1000);
+                System.out.printf("parallel: %10.1f us/tick (%.2fx)%n", parallelTime / 1000,
+                        serialTime / parallelTime);
+                System.out.printf("blocks left: %d, runs identical%n", serial.environment.getCollidables().size());
+            }
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * The walled arena with its upper half filled with small bricks that disappear when hit.
+     */
+    private static final class Scene {
+        private final GameEnvironment environment = Arena.walledLevel();
+        private final SpriteCollection sprites = new SpriteCollection();
+        private final Ball[] balls;
+
+        private Scene(int ballCount, ForkJoinPool pool) {
+            for (int y = 40; y + BRICK_HEIGHT <= 280; y += BRICK_HEIGHT) {
+                for (int x = 40; x + BRICK_WIDTH <= Arena.WIDTH - 40; x += BRICK_WIDTH) {
+                    Block brick = new Block(new Rectangle(new Point(x, y), BRICK_WIDTH, BRICK_HEIGHT), Color.GRAY);
+                    brick.addHitListener((beingHit, hitter) -> environment.removeCollidable(beingHit));
+                    environment.addCollidable(brick);
+                }
+            }
+            balls = Arena.balls(environment, ballCount, 7);
+            for (Ball ball : balls) {
+                sprites.addSprite(ball);
+            }
+            sprites.setParallelism(pool);
+        }
+
+        private double run(int ticks) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                sprites.notifyAllTimePassed();
+            }
+            return (double) (System.nanoTime() - start) / ticks;
+        }
+
+        private void compare(Scene other) {
+            if (environment.getCollidables().size() != other.environment.getCollidables().size()) {
+                throw new IllegalStateException("serial and parallel runs destroyed different blocks");
+            }
+            for (int i = 0; i < balls.length; i++) {
+                Ball a = balls[i];
+                Ball b = other.balls[i];
+                if (Double.doubleToLongBits(a.getCenter().getX()) != Double.doubleToLongBits(b.getCenter().getX())
+                        || Double.doubleToLongBits(a.getCenter().getY())
+                        != Double.doubleToLongBits(b.getCenter().getY())
+                        || Double.doubleToLongBits(a.getVelocity().getDx())
+                        != Double.doubleToLongBits(b.getVelocity().getDx())
+                        || Double.doubleToLongBits(a.getVelocity().getDy())
+                        != Double.doubleToLongBits(b.getVelocity().getDy())) {
+                    throw new IllegalStateException("serial and parallel runs disagree on ball " + i);
+                }
+            }
+        }
+    }
+}
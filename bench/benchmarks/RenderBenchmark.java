@@ -0,0 +1,193 @@
+package benchmarks;
+
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.ImageDrawSurface;
+import graphics.RenderQueue;
+import graphics.StaticLayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sprites.Ball;
+import sprites.Block;
+import sprites.SpriteCollection;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks drawing one frame of a level with a given number of blocks and three balls
+ * into an 800x600 offscreen image: every block drawn every frame one by one or batched by
+ * colour through a RenderQueue, against the blocks cached in a transparent or an opaque
+ * StaticLayer.
+ *
+ * <p>The window benchmarks draw on the surface biuoop's GUI hands out, which records one
+ * command per call, colour changes included, and replay it into the image the way
+ * GUI.show replays it into the window.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+    static final int WIDTH = 800;
+    static final int HEIGHT = 600;
+    private static final Color[] COLORS = {
+            Color.GRAY, Color.RED, Color.YELLOW, Color.BLUE, Color.PINK, Color.GREEN
+    };
+
+    @Param({"100", "10000"})
+    private int blocks;
+
+    @Param({"diagonal", "rows"})
+    private String colors;
+
+    private SpriteCollection direct;
+    private SpriteCollection batched;
+    private SpriteCollection cached;
+    private SpriteCollection cachedOpaque;
+    private ImageDrawSurface surface;
+    private DrawSurface window;
+    private Method paint;
+    private Method clear;
+
+    /**
+     * Builds the level once for every way of drawing it.
+     */
+    @Setup
+    public void setUp() {
+        direct = level(blocks, colors);
+        batched = level(blocks, colors);
+        batched.setRenderQueue(new RenderQueue(WIDTH, HEIGHT));
+        cached = level(blocks, colors);
+        cached.setStaticLayer(new StaticLayer(WIDTH, HEIGHT));
+        cachedOpaque = level(blocks, colors);
+        cachedOpaque.setStaticLayer(new StaticLayer(WIDTH, HEIGHT, Color.WHITE));
+        surface = new ImageDrawSurface(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB));
+    }
+
+    /**
+     * Creates the recording surface GUI.getDrawSurface returns, which is not public.
+     * @throws ReflectiveOperationException if the biuoop surface cannot be created
+     */
+    @Setup
+    public void setUpWindow() throws ReflectiveOperationException {
+        Class<?> recording = Class.forName("biuoop.RecordingDrawSurface");
+        Constructor<?> constructor = recording.getConstructor(int.class, int.class);
+        constructor.setAccessible(true);
+        window = (DrawSurface) constructor.newInstance(WIDTH, HEIGHT);
+        paint = recording.getMethod("paint", Graphics.class);
+        paint.setAccessible(true);
+        clear = recording.getMethod("clear");
+        clear.setAccessible(true);
+    }
+
+    /**
+     * Builds a level of touching blocks filling the screen, with three balls on top.
+     * @param count  the number of blocks
+     * @param colors "rows" for one colour per row like the game's levels, or "diagonal"
+     *               for colours changing from every block to the next
+     * @return the sprites of the level
+     */
+    static SpriteCollection level(int count, String colors) {
+        SpriteCollection sprites = new SpriteCollection();
+        int perRow = (int) Math.ceil(Math.sqrt(count * (double) WIDTH / HEIGHT));
+        int rows = (count + perRow - 1) / perRow;
+        double width = (double) WIDTH / perRow;
+        double height = (double) HEIGHT / rows;
+        for (int i = 0; i < count; i++) {
+            int col = i % perRow;
+            int row = i / perRow;
+            sprites.addSprite(new Block(new Rectangle(new Point(col * width, row * height), width, height),
+                    COLORS[("rows".equals(colors) ? row : row + col) % COLORS.length]));
+        }
+        for (int i = 0; i < 3; i++) {
+            sprites.addSprite(new Ball(new Point(300 + i * 50, 400), 5, Color.RED));
+        }
+        return sprites;
+    }
+
+    /**
+     * Draws every block and ball.
+     * @return the surface
+     */
+    @Benchmark
+    public ImageDrawSurface drawDirect() {
+        direct.drawAllOn(surface);
+        return surface;
+    }
+
+    /**
+     * Draws every block batched by colour, then the balls.
+     * @return the surface
+     */
+    @Benchmark
+    public ImageDrawSurface drawBatched() {
+        batched.drawAllOn(surface);
+        return surface;
+    }
+
+    /**
+     * Blits the cached blocks from a transparent layer and draws the balls.
+     * @return the surface
+     */
+    @Benchmark
+    public ImageDrawSurface drawCached() {
+        cached.drawAllOn(surface);
+        return surface;
+    }
+
+    /**
+     * Blits the cached blocks from an opaque layer and draws the balls.
+     * @return the surface
+     */
+    @Benchmark
+    public ImageDrawSurface drawCachedOpaque() {
+        cachedOpaque.drawAllOn(surface);
+        return surface;
+    }
+
+    /**
+     * Draws every block and ball on the window surface one by one and shows it.
+     * @return the surface
+     * @throws ReflectiveOperationException if the biuoop surface cannot be replayed
+     */
+    @Benchmark
+    public ImageDrawSurface drawDirectOnWindow() throws ReflectiveOperationException {
+        direct.drawAllOn(window);
+        return show();
+    }
+
+    /**
+     * Draws every block batched by colour, then the balls, on the window surface and shows it.
+     * @return the surface
+     * @throws ReflectiveOperationException if the biuoop surface cannot be replayed
+     */
+    @Benchmark
+    public ImageDrawSurface drawBatchedOnWindow() throws ReflectiveOperationException {
+        batched.drawAllOn(window);
+        return show();
+    }
+
+    private ImageDrawSurface show() throws ReflectiveOperationException {
+        paint.invoke(window, surface.getGraphics());
+        clear.invoke(window);
+        return surface;
+    }
+}
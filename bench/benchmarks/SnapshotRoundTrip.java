@@ -0,0 +1,108 @@
+package benchmarks;
+
+import core.Game;
+import core.GameSnapshot;
+import geometry.Point;
+import geometry.Rectangle;
+import input.InputProvider;
+import input.RandomInput;
+import sprites.Block;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Saves and loads the snapshot of a game with a very large level and reports how long
+ * each step takes. Also checks that a restored game saves to the same bytes and that a
+ * game restored mid-way plays on exactly like the original.
+ */
+public class SnapshotRoundTrip {
+    private static final int ROUNDS = 20;
+
+    /**
+     * Runs the round trips and prints the timings.
+     * @param args optional: number of extra blocks in the level
+     * @throws IOException if the snapshot files cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Path file = Files.createTempFile("snapshot", ".bin");
+        Path copy = Files.createTempFile("snapshot-copy", ".bin");
+        try {
+            checkContinuation(file);
+
+            Game game = new Game(InputProvider.IDLE);
+            game.initialize();
+            for (int i = 0; i < blocks; i++) {
+                new Block(new Rectangle(new Point(i % 1000 * 10, 1000 + i / 1000 * 5), 10, 5), Color.GRAY)
+                        .addToGame(game);
+            }
+
+            long snapshotNanos = 0;
+            long writeNanos = 0;
+            long readNanos = 0;
+            long restoreNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long t0 = System.nanoTime();
+                GameSnapshot snapshot = game.snapshot();
+                long t1 = System.nanoTime();
+                snapshot.write(file);
+                long t2 = System.nanoTime();
+                GameSnapshot loaded = GameSnapshot.read(file);
+                long t3 = System.nanoTime();
+                Game restored = new Game(InputProvider.IDLE);
+                restored.restore(loaded);
+                long t4 = System.nanoTime();
+                if (round > 0) {
+                    snapshotNanos += t1 - t0;
+                    writeNanos += t2 - t1;
+                    readNanos += t3 - t2;
+                    restoreNanos += t4 - t3;
+                }
+                if (round == 0) {
+                    restored.snapshot().write(copy);
+                    if (!Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(copy))) {
+                        throw new IllegalStateException("a restored game saves differently");
+                    }
+                }
+            }
+            int measured = ROUNDS - 1;
+            System.out.printf("%d collidables, %d bytes%n", game.snapshot().getCollidableCount(), Files.size(file));
+            System.out.printf("snapshot %8.2f ms%n", snapshotNanos / 1e6 / measured);
+            System.out.printf("write    %8.2f ms%n", writeNanos / 1e6 / measured);
+            System.out.printf("read     %8.2f ms%n", readNanos / 1e6 / measured);
+            System.out.printf("restore  %8.2f ms%n", restoreNanos / 1e6 / measured);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    /**
+     * Plays a game, snapshots it half way, and checks the restored game ends the same way.
+     */
+    private static void checkContinuation(Path file) throws IOException {
+        for (long seed = 0; seed < 20; seed++) {
+            Game original = new Game(new RandomInput(seed));
+            original.initialize();
+            original.step(150);
+            original.snapshot().write(file);
+            RandomInput rest = new RandomInput(seed);
+            for (int i = 0; i < 150; i++) {
+                rest.poll();
+            }
+            original.step(100000);
+
+            Game restored = new Game(rest);
+            restored.restore(GameSnapshot.read(file));
+            restored.step(100000);
+            if (restored.getTicks() != original.getTicks() || restored.getScore() != original.getScore()) {
+                throw new IllegalStateException("restored game " + seed + " played on differently");
+            }
+        }
+        System.out.println("restored games play on like the originals");
+    }
+}
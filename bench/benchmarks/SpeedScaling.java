@@ -0,0 +1,225 @@
+package benchmarks;
+
+import collidables.Collidable;
+import collidables.GameEnvironment;
+import core.Game;
+import geometry.Point;
+import geometry.Rectangle;
+import input.InputProvider;
+import input.RandomInput;
+import levels.LevelFile;
+import metrics.LogHistogram;
+import sprites.Ball;
+import sprites.Block;
+import sprites.Sprite;
+import sprites.Velocity;
+
+import java.awt.Color;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Speeds the balls up to 50 times their usual speed and compares one hit per tick, where
+ * a ball stops at whatever it touches, with several hits per tick, where it goes on along
+ * its new path for the rest of the tick.
+ *
+ * <p>First a closed arena: 200 balls in the walled level, checked after every tick to be
+ * inside the walls and not to overlap any block, with the cost per ball per tick and the
+ * spread of whole ticks. The hits per ball per second show how much of its path a ball
+ * keeps: one that stops at every hit covers less ground and hits less often.</p>
+ *
+ * <p>Then whole games with a random paddle, where every live ball is checked every tick
+ * to be inside the world, since there the paddle also moves into the balls. A ball counts
+ * as escaped once, however long it stays out. Every tick the ball counter must also drop
+ * by exactly the number of balls that left the game.</p>
+ *
+ * <p>Last a ball sent at the death region from right below a wall, so fast that with
+ * several hits per tick it would bounce between the two a few times within one tick. It
+ * must stop at the death region and be counted out once.</p>
+ */
+public class SpeedScaling {
+    private static final int[] SPEEDS = {1, 10, 20, 30, 50};
+    private static final int[] HITS = {1, 8};
+    private static final int BALLS = 200;
+    private static final int TICKS = 3000;
+    private static final int GAMES = 100;
+    private static final int GAME_TICKS = 20000;
+    private static final int BORDER = 20;
+    private static final int BALL_RADIUS = 5;
+    private static final double TRAPPED_SPEED = 1000;
+
+    /**
+     * Runs the arena and the games for every speed and hit limit.
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        // Warm up the JIT.
+        for (int hits : HITS) {
+            arena(10, hits, 500);
+            games(10, hits, 10);
+        }
+
+        System.out.printf("%-22s %12s %12s %12s %12s %9s %12s%n", "arena, " + BALLS + " balls", "ns/ball/t",
+                "tick p99 us", "tick max us", "hits/ball/s", "escaped", "overlaps");
+        for (int speed : SPEEDS) {
+            for (int hits : HITS) {
+                ArenaResult r = arena(speed, hits, TICKS);
+                System.out.printf("%-22s %12.0f %12.1f %12.1f %12.1f %9d %12d%n", speed + "x, " + hits + " hits/tick",
+                        r.tickNanos.getMean() / BALLS, r.tickNanos.getPercentile(99) / 1000.0,
+                        r.tickNanos.getMax() / 1000.0, r.hits * 60.0 / BALLS / TICKS, r.escaped, r.overlaps);
+            }
+        }
+
+        System.out.printf("%n%-22s %12s %12s %12s %9s %12s%n", "games, random paddle", "ticks/game", "us/tick",
+                "score", "escaped", "miscounted");
+        for (int speed : SPEEDS) {
+            for (int hits : HITS) {
+                GameResult r = games(speed, hits, GAMES);
+                System.out.printf("%-22s %12.1f %12.2f %12.2f %9d %12d%n", speed + "x, " + hits + " hits/tick",
+                        (double) r.ticks / GAMES, r.nanos / 1000.0 / r.ticks, (double) r.score / GAMES, r.escaped,
+                        r.miscounted);
+            }
+        }
+
+        System.out.printf("%n%-22s %12s%n", "wall over death region", "counted out");
+        for (int hits : HITS) {
+            int out = trapped(hits);
+            System.out.printf("%-22s %12d%n", hits + " hits/tick", out);
+            if (out != 1) {
+                throw new IllegalStateException("a ball was counted out " + out + " times with " + hits + " hits/tick");
+            }
+        }
+    }
+
+    private static ArenaResult arena(int speed, int hits, int ticks) {
+        GameEnvironment environment = Arena.walledLevel();
+        Ball[] balls = Arena.balls(environment, BALLS, 7);
+        for (Ball ball : balls) {
+            ball.setVelocity(scale(ball.getVelocity(), speed));
+            ball.setMaxHitsPerTick(hits);
+        }
+        boolean[] escaped = new boolean[BALLS];
+        ArenaResult r = new ArenaResult();
+        for (Collidable c : environment.getCollidables()) {
+            ((Block) c).addHitListener((block, ball) -> r.hits++);
+        }
+        for (int tick = 0; tick < ticks; tick++) {
+            long start = System.nanoTime();
+            for (Ball ball : balls) {
+                ball.timePassed();
+            }
+            r.tickNanos.record(System.nanoTime() - start);
+            for (int i = 0; i < BALLS; i++) {
+                Point c = balls[i].getCenter();
+                if (c.getX() < BORDER || c.getX() > Arena.WIDTH - BORDER
+                        || c.getY() < BORDER || c.getY() > Arena.HEIGHT - BORDER) {
+                    if (!escaped[i]) {
+                        escaped[i] = true;
+                        r.escaped++;
+                    }
+                } else if (environment.firstCollidable(b -> overlaps(b.getCollisionRectangle(), c, BALL_RADIUS))
+                        != null) {
+                    r.overlaps++;
+                }
+            }
+        }
+        return r;
+    }
+
+    private static GameResult games(int speed, int hits, int games) {
+        GameResult r = new GameResult();
+        Set<Ball> escaped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int n = 0; n < games; n++) {
+            Game game = new Game(new RandomInput(n));
+            game.setMaxHitsPerTick(hits);
+            game.initialize();
+            for (Sprite s : game.getSprites()) {
+                if (s instanceof Ball) {
+                    ((Ball) s).setVelocity(scale(((Ball) s).getVelocity(), speed));
+                }
+            }
+            int live = game.getRemainingBalls();
+            while (!game.isOver() && game.getTicks() < GAME_TICKS) {
+                int counted = game.getRemainingBalls();
+                long start = System.nanoTime();
+                game.step(1);
+                r.nanos += System.nanoTime() - start;
+                int wasLive = live;
+                live = 0;
+                for (Sprite s : game.getSprites()) {
+                    if (s instanceof Ball) {
+                        live++;
+                        Point c = ((Ball) s).getCenter();
+                        if (c.getX() < 0 || c.getX() > Arena.WIDTH || c.getY() < 0 || c.getY() > Arena.HEIGHT) {
+                            escaped.add((Ball) s);
+                        }
+                    }
+                }
+                if (counted - game.getRemainingBalls() != wasLive - live) {
+                    r.miscounted++;
+                }
+            }
+            r.ticks += game.getTicks();
+            r.score += game.getScore();
+        }
+        r.escaped = escaped.size();
+        return r;
+    }
+
+    /**
+     * Plays one tick of a game whose first ball starts right below a short wall, heading
+     * straight down at the death region, and returns how many balls the tick counted out.
+     */
+    private static int trapped(int hits) {
+        LevelFile level = new LevelFile(Arena.WIDTH, Arena.HEIGHT);
+        level.addBlock(260, 380, 80, 10, level.addColor(Color.GRAY), 0);
+        // A block to destroy, or the game would be won before it starts.
+        level.addBlock(600, 100, 40, 20, level.addColor(Color.RED), LevelFile.DESTRUCTIBLE);
+        Game game = new Game(InputProvider.IDLE);
+        game.setMaxHitsPerTick(hits);
+        game.setLevel(level);
+        game.initialize();
+        for (Sprite s : game.getSprites()) {
+            // The first ball starts at (300, 400), below the wall and clear of the paddle.
+            if (s instanceof Ball) {
+                ((Ball) s).setVelocity(0.5, TRAPPED_SPEED);
+                break;
+            }
+        }
+        int before = game.getRemainingBalls();
+        game.step(1);
+        return before - game.getRemainingBalls();
+    }
+
+    private static Velocity scale(Velocity v, int factor) {
+        return new Velocity(v.getDx() * factor, v.getDy() * factor);
+    }
+
+    /**
+     * Checks whether a circle overlaps a rectangle by more than a thousandth of a pixel.
+     */
+    private static boolean overlaps(Rectangle rect, Point c, double radius) {
+        double left = rect.getUpperLeft().getX();
+        double top = rect.getUpperLeft().getY();
+        double x = Math.max(left, Math.min(c.getX(), left + rect.getWidth()));
+        double y = Math.max(top, Math.min(c.getY(), top + rect.getHeight()));
+        return Math.hypot(c.getX() - x, c.getY() - y) < radius - 1e-3;
+    }
+
+    private static final class ArenaResult {
+        private final LogHistogram tickNanos = new LogHistogram();
+        private long hits;
+        private int escaped;
+        private long overlaps;
+    }
+
+    private static final class GameResult {
+        private long ticks;
+        private long nanos;
+        private long score;
+        private int escaped;
+        private long miscounted;
+    }
+}
@@ -1,4 +1,10 @@
 import core.Game;
+import input.TrajectoryInput;
+import levels.LevelFile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 // Name: Nitai Weiss
 // ID: 208302984
 /**
@@ -9,10 +15,20 @@ public class Ass5Game {
     /**
      * The main method creates and runs the game.
      *
-     * @param args command-line arguments (not used)
+     * @param args optional: --record followed by the file to record the paddle input to,
+     *             --level followed by a level file written by ConvertLevel,
+     *             --bot to watch a TrajectoryInput play instead of using the keyboard
+     * @throws IOException if the level file cannot be read
      */
-    public static void main(String[] args) {
-        Game game = new Game();
+    public static void main(String[] args) throws IOException {
+        Game game = Arrays.asList(args).contains("--bot") ? new Game(new TrajectoryInput(), true) : new Game();
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--record")) {
+                game.setRecordingFile(Paths.get(args[++i]));
+            } else if (args[i].equals("--level")) {
+                game.setLevel(LevelFile.read(Paths.get(args[++i])));
+            }
+        }
         game.initialize();
         game.run();
     }
@@ -0,0 +1,76 @@
+import input.InputProvider;
+import input.RandomInput;
+import input.SweepInput;
+import input.TrajectoryInput;
+import simulation.BatchRunner;
+import simulation.BatchStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * The BatchSimulation class plays the level of Game.initialize thousands of times with a
+ * scripted or random paddle, prints the aggregated outcomes, and reports how the games
+ * per second scale as more cores are used.
+ */
+public class BatchSimulation {
+    /**
+     * The main method runs the batch once per thread count, from one thread up to all cores.
+     *
+     * @param args optional: number of games (default 2000), policy "random", "sweep",
+     *             "track" or "idle" (default random), tick limit per game (default 20000),
+     *             "event" to move the balls from event to event instead of every tick
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        String name = args.length > 1 ? args[1] : "random";
+        int maxTicks = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        BatchRunner runner = new BatchRunner(policy(name), maxTicks);
+        runner.setEventDriven(args.length > 3 && args[3].equals("event"));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int t = 1; t < cores; t *= 2) {
+            threadCounts.add(t);
+        }
+        threadCounts.add(cores);
+
+        // Warm up the JIT so the single-threaded baseline is not penalised.
+        runner.run(Math.min(games, 200), cores);
+
+        System.out.printf("%d games, %s policy, up to %d ticks each%n", games, name, maxTicks);
+        System.out.printf("%8s %12s %12s%n", "threads", "games/s", "efficiency");
+        double baseline = 0;
+        BatchStats stats = null;
+        for (int threads : threadCounts) {
+            long start = System.nanoTime();
+            BatchStats result = runner.run(games, threads);
+            double rate = games / ((System.nanoTime() - start) / 1e9);
+            if (stats == null) {
+                baseline = rate;
+            } else if (result.getWins() != stats.getWins()
+                    || result.getScores().getMean() != stats.getScores().getMean()) {
+                throw new IllegalStateException("outcomes changed with " + threads + " threads");
+            }
+            stats = result;
+            System.out.printf("%8d %12.1f %11.0f%%%n", threads, rate, rate / (baseline * threads) * 100);
+        }
+        stats.print(System.out);
+    }
+
+    private static LongFunction<InputProvider> policy(String name) {
+        switch (name) {
+            case "random":
+                return RandomInput::new;
+            case "sweep":
+                return n -> new SweepInput(20 + (int) (n % 60));
+            case "track":
+                return n -> new TrajectoryInput();
+            case "idle":
+                return n -> InputProvider.IDLE;
+            default:
+                throw new IllegalArgumentException("unknown policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+import levels.LevelFile;
+import levels.TextLevel;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * The ConvertLevel class turns a level drawn as text into the binary level file that
+ * Ass5Game's --level option loads.
+ */
+public class ConvertLevel {
+    /**
+     * The main method reads the text layout and writes the level file.
+     *
+     * @param args the text layout to read, then the level file to write
+     * @throws IOException if the layout cannot be read or the level cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: ConvertLevel <layout.txt> <level.bin>");
+            return;
+        }
+        LevelFile level = TextLevel.read(Paths.get(args[0]));
+        level.write(Paths.get(args[1]));
+        System.out.printf("%s: %d blocks, %dx%d%n", args[1], level.getBlockCount(), level.getWidth(), level.getHeight());
+    }
+}
@@ -0,0 +1,22 @@
+import core.Game;
+import input.InputProvider;
+
+/**
+ * The HeadlessGame class runs the Arkanoid simulation without a window,
+ * as fast as the CPU allows, and reports how many ticks per second it reached.
+ */
+public class HeadlessGame {
+    /**
+     * The main method creates a headless game with an idle paddle and steps it to the end.
+     *
+     * @param args optional maximum number of ticks to simulate (default 1,000,000), then
+     *             "event" to move the balls from event to event instead of every tick
+     */
+    public static void main(String[] args) {
+        int maxTicks = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Game game = new Game(InputProvider.IDLE);
+        game.setEventDriven(args.length > 1 && args[1].equals("event"));
+        game.initialize();
+        game.runHeadless(maxTicks);
+    }
+}
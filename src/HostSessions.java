@@ -0,0 +1,61 @@
+import input.RandomInput;
+import input.TrajectoryInput;
+import simulation.SessionHost;
+import simulation.SessionStats;
+
+/**
+ * The HostSessions class loads a SessionHost with more and more concurrent headless games,
+ * each ticking at 60 Hz with a random paddle, and prints the tick latency percentiles at
+ * every load. It stops once the host cannot keep up and reports how many sessions a core
+ * carries while the 99th percentile tick still finishes within one tick period.
+ */
+public class HostSessions {
+    private static final int MAX_SESSIONS = 1 << 20;
+
+    /**
+     * The main method doubles the session count until the host falls behind.
+     *
+     * @param args optional: number of carrier threads (default all cores), seconds per
+     *             load step (default 3), starting session count (default 100), paddle
+     *             "random" or "track" (default random)
+     */
+    public static void main(String[] args) {
+        int carriers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        boolean track = args.length > 3 && args[3].equals("track");
+        SessionHost host = new SessionHost(track ? n -> new TrajectoryInput() : RandomInput::new, carriers);
+        long nanosPerTick = 1000000000L / 60;
+
+        // Warm up the JIT so the first load step is not penalised.
+        host.run(sessions, 1000000000L);
+
+        System.out.printf("%d carrier threads, 60 ticks/s per session, %d s per step%n", carriers, seconds);
+        System.out.printf("%9s %10s %6s %9s %9s %9s %9s %9s %8s %8s%n", "sessions", "ticks/s", "busy",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "tick us", "dropped", "evicted");
+        int capacity = 0;
+        SessionStats last = null;
+        for (; sessions <= MAX_SESSIONS; sessions *= 2) {
+            SessionStats stats = host.run(sessions, seconds * 1000000000L);
+            last = stats;
+            System.out.printf("%9d %10.0f %5.0f%% %9.2f %9.2f %9.2f %9.2f %9.1f %8d %8d%n", sessions,
+                    stats.getTicks() / (double) seconds,
+                    stats.getBusyNanos() / (seconds * 1e9 * carriers) * 100,
+                    stats.getLatency().getPercentile(50) / 1e6, stats.getLatency().getPercentile(99) / 1e6,
+                    stats.getLatency().getPercentile(99.9) / 1e6, stats.getLatency().getMax() / 1e6,
+                    stats.getTickTimes().getMean() / 1e3, stats.getDroppedTicks(), stats.getEvictedSessions());
+            if (stats.getLatency().getPercentile(99) > nanosPerTick || stats.getDroppedTicks() > 0) {
+                break;
+            }
+            capacity = sessions;
+        }
+        System.out.printf("capacity: %d sessions (%.0f per core) with p99 tick latency under %.1f ms%n",
+                capacity, (double) capacity / carriers, nanosPerTick / 1e6);
+        if (last != null) {
+            last.print(System.out);
+            if (last.getOutcomes().getGames() > 0) {
+                last.getOutcomes().print(System.out);
+            }
+        }
+    }
+}
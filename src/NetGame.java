@@ -0,0 +1,97 @@
+import input.RandomInput;
+import levels.LevelFile;
+import net.GameClient;
+import net.GameServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
+/**
+ * The NetGame class runs the game over the network: an authoritative server, a headless
+ * client that plays it with a random paddle, or both over loopback in one process.
+ */
+public class NetGame {
+    private static final int DEFAULT_PORT = 7777;
+
+    /**
+     * The main method starts a server, a client or both.
+     *
+     * @param args "server [port] [level file]" serves games until killed,
+     *             "client host port [seconds]" plays against a server (default 10 s),
+     *             "loopback [seconds]" runs a server and a client in this process (default 10 s)
+     * @throws IOException if a socket or the level file fails
+     * @throws InterruptedException if interrupted while waiting for the server to stop
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String mode = args.length > 0 ? args[0] : "loopback";
+        if (mode.equals("server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            GameServer server = new GameServer(new InetSocketAddress(port));
+            if (args.length > 2) {
+                server.setLevel(LevelFile.read(Paths.get(args[2])));
+            }
+            System.out.printf("serving games on port %d%n", server.getPort());
+            server.run();
+        } else if (mode.equals("client")) {
+            if (args.length < 3) {
+                throw new IllegalArgumentException("usage: client host port [seconds]");
+            }
+            int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+            play(new InetSocketAddress(args[1], Integer.parseInt(args[2])), seconds);
+        } else if (mode.equals("loopback")) {
+            int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+            GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            IOException[] failure = new IOException[1];
+            Thread serverThread = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }, "game-server");
+            serverThread.start();
+            play(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), seconds);
+            server.close();
+            serverThread.join();
+            if (failure[0] != null) {
+                throw new IOException("server failed", failure[0]);
+            }
+            System.out.printf("server: %d frames, %.1f payload bytes per frame, delta p50 %d B p99 %d B,"
+                            + " full state %.0f B, %d skipped%n",
+                    server.getTicks(), server.getBytesSent() / (double) server.getClientFrames(),
+                    server.getDeltaBytes().getPercentile(50), server.getDeltaBytes().getPercentile(99),
+                    server.getFullBytes().getMean(), server.getSkippedFrames());
+        } else {
+            throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * Plays against a server with a random paddle for the given time, then prints what
+     * the client saw.
+     */
+    private static void play(InetSocketAddress address, int seconds) throws IOException {
+        RandomInput paddle = new RandomInput(1);
+        long deadline = System.nanoTime() + seconds * 1000000000L;
+        try (GameClient client = GameClient.connect(address)) {
+            long lastScore = -1;
+            while (System.nanoTime() < deadline) {
+                client.setInput(paddle.poll());
+                if (client.receive() == 0) {
+                    Thread.sleep(1);
+                } else if (client.getScore() != lastScore) {
+                    lastScore = client.getScore();
+                    System.out.printf("frame %d: score %d, %d balls, %d blocks%n", client.getFrame(),
+                            client.getScore(), client.getRemainingBalls(), client.getRemainingBlocks());
+                }
+            }
+            long updates = client.getFullUpdates() + client.getDeltaUpdates();
+            System.out.printf("client: %d updates (%d full), %.1f bytes received per update%n", updates,
+                    client.getFullUpdates(), client.getBytesReceived() / (double) Math.max(1, updates));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
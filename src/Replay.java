@@ -0,0 +1,56 @@
+import core.Game;
+import input.InputRecording;
+import levels.LevelFile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * The Replay class plays back a game recorded with Ass5Game's --record option, either
+ * headless as fast as possible or in a window at any speed. A game recorded on a level
+ * file is played back on the same file, which must still hold the same level.
+ */
+public class Replay {
+    /**
+     * The main method loads the recording and replays it.
+     *
+     * @param args the recording file, then "max" to replay headless as fast as possible
+     *             (the default) or a speed factor such as 0.5 or 4 to watch it in a window
+     * @throws IOException if the recording or its level file cannot be read, or the level
+     *                     file no longer holds the level the game was recorded on
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: Replay <recording> [max | speed]");
+            return;
+        }
+        InputRecording recording = InputRecording.read(Paths.get(args[0]));
+        String speed = args.length > 1 ? args[1] : "max";
+        LevelFile level = null;
+        if (recording.getLevelPath() != null) {
+            level = LevelFile.read(Paths.get(recording.getLevelPath()));
+            if (level.contentHash() != recording.getLevelHash()) {
+                throw new IOException(recording.getLevelPath() + " is not the level the game was recorded on");
+            }
+        }
+
+        if (speed.equals("max")) {
+            Game game = new Game(recording.player());
+            game.setSeed(recording.getSeed());
+            if (level != null) {
+                game.setLevel(level);
+            }
+            game.initialize();
+            game.runHeadless((int) Math.min(recording.getTicks(), Integer.MAX_VALUE));
+        } else {
+            Game game = new Game(recording.player(), true);
+            game.setSeed(recording.getSeed());
+            if (level != null) {
+                game.setLevel(level);
+            }
+            game.setTickRate((int) Math.max(1, Math.round(60 * Double.parseDouble(speed))));
+            game.initialize();
+            game.run();
+        }
+    }
+}
@@ -26,5 +26,19 @@ public interface Collidable {
      * @return the new velocity after the collision
      */
     Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
+
+    /**
+     * Notifies the object that a swept ball touched it, with the full contact description.
+     * The default implementation forwards the contact point to
+     * {@link #hit(Ball, Point, Velocity)}; collidables that can use the surface normal
+     * directly should override it.
+     * @param hitter          the ball that hits
+     * @param contact         the contact point and surface normal of the hit
+     * @param currentVelocity the velocity of the ball before the collision
+     * @return the new velocity after the collision
+     */
+    default Velocity hit(Ball hitter, SweepResult contact, Velocity currentVelocity) {
+        return hit(hitter, new Point(contact.getContactX(), contact.getContactY()), currentVelocity);
+    }
 }
 
@@ -0,0 +1,88 @@
+package collidables;
+
+import geometry.Line;
+
+import java.util.List;
+
+/**
+ * A CollidableIndex is a broadphase structure the GameEnvironment uses to find the
+ * collidables near a trajectory or an area without scanning every one of them.
+ * Implementations break distance ties by insertion order, so every index gives the
+ * same answers as a linear scan over the collidables in the order they were added.
+ */
+public interface CollidableIndex {
+
+    /**
+     * Adds the given collidable to the index.
+     * @param c the collidable to add
+     */
+    void insert(Collidable c);
+
+    /**
+     * Removes the given collidable from the index. Does nothing if it is not indexed.
+     * @param c the collidable to remove
+     */
+    void remove(Collidable c);
+
+    /**
+     * Re-indexes the given collidable after its collision rectangle was replaced.
+     * The collidable keeps its original insertion order.
+     * @param c the collidable that moved
+     */
+    void update(Collidable c);
+
+    /**
+     * Checks whether the given collidable is in the index.
+     * @param c the collidable to look for
+     * @return true if it is indexed
+     */
+    boolean contains(Collidable c);
+
+    /**
+     * Returns the number of indexed collidables.
+     * @return the number of collidables in the index
+     */
+    int size();
+
+    /**
+     * Finds the collidable whose rectangle the trajectory hits closest to its start.
+     * @param trajectory the path to check for collisions
+     * @return the closest collision, or null if the trajectory hits nothing
+     */
+    CollisionInfo closestCollision(Line trajectory);
+
+    /**
+     * Sweeps a circle along a straight movement and records the first collidable it touches.
+     * Implementations must not allocate and must only read shared state, keeping their
+     * scratch space in the given result.
+     * @param x      the x coordinate of the circle's centre before the movement
+     * @param y      the y coordinate of the circle's centre before the movement
+     * @param dx     the movement along x
+     * @param dy     the movement along y
+     * @param radius the radius of the circle
+     * @param out    receives the time of impact, contact point and surface normal
+     */
+    void sweepCircle(double x, double y, double dx, double dy, double radius, SweepResult out);
+
+    /**
+     * Finds the collidable, of those inserted first, whose rectangle contains the given
+     * point, edges included. Like {@link #sweepCircle} it must not allocate and must only
+     * read shared state, keeping its scratch space in the given result.
+     * @param x       the x coordinate of the point
+     * @param y       the y coordinate of the point
+     * @param scratch the result whose scratch space the query may use; its answer is left alone
+     * @return the containing collidable that was inserted first, or null if none contains the point
+     */
+    Collidable firstContaining(double x, double y, SweepResult scratch);
+
+    /**
+     * Adds to the given list every collidable whose rectangle overlaps the given box.
+     * The order of the added collidables is unspecified.
+     * @param minX the left edge of the box
+     * @param minY the top edge of the box
+     * @param maxX the right edge of the box
+     * @param maxY the bottom edge of the box
+     * @param out  the list the overlapping collidables are added to
+     */
+    void query(double minX, double minY, double maxX, double maxY, List<Collidable> out);
+}
@@ -0,0 +1,537 @@
+package collidables;
+
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The DynamicAabbTree class is a bounding-volume hierarchy over collidables that stays
+ * balanced while collidables are added, moved and removed.
+ *
+ * <p>Every leaf stores a "fat" box: the collidable's rectangle grown by a margin. As long
+ * as a moving collidable stays inside its fat box, updating it costs nothing; only when
+ * it leaves the box is its leaf taken out and reinserted, with the new box stretched
+ * along the direction it was moving. The tree is kept height-balanced with rotations,
+ * so trajectory and box queries visit O(log n) nodes.</p>
+ *
+ * <p>Nodes live in parallel arrays and removed nodes are recycled through a free list,
+ * so steady-state updates do not allocate.</p>
+ */
+public class DynamicAabbTree implements CollidableIndex {
+    private static final int NULL = -1;
+    private static final double EDGE_SLACK = 1e-6;
+    private static final double PREDICTION = 2;
+
+    private final double margin;
+    private final Map<Collidable, Integer> leaves = new IdentityHashMap<>();
+    private int root = NULL;
+    private int freeList = NULL;
+    private int capacity;
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    private int[] parent = new int[0];
+    private int[] child1 = new int[0];
+    private int[] child2 = new int[0];
+    private int[] height = new int[0];
+    private Collidable[] item = new Collidable[0];
+    private long[] sequence = new long[0];
+    private int[] stack = new int[64];
+    private long nextSequence;
+
+    /**
+     * Constructs an empty tree whose leaves are fattened by the given margin.
+     * @param margin how far, in pixels, a collidable may move before its leaf is reinserted
+     */
+    public DynamicAabbTree(double margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("margin must not be negative: " + margin);
+        }
+        this.margin = margin;
+    }
+
+    @Override
+    public boolean contains(Collidable c) {
+        return leaves.containsKey(c);
+    }
+
+    @Override
+    public int size() {
+        return leaves.size();
+    }
+
+    /**
+     * Returns the height of the tree; a single leaf has height 0.
+     * @return the height of the tree, or -1 if it is empty
+     */
+    public int height() {
+        return root == NULL ? -1 : height[root];
+    }
+
+    @Override
+    public void insert(Collidable c) {
+        int leaf = allocateNode();
+        item[leaf] = c;
+        sequence[leaf] = nextSequence++;
+        height[leaf] = 0;
+        fatten(leaf, c.getCollisionRectangle());
+        leaves.put(c, leaf);
+        insertLeaf(leaf);
+    }
+
+    @Override
+    public void remove(Collidable c) {
+        Integer leaf = leaves.remove(c);
+        if (leaf != null) {
+            removeLeaf(leaf);
+            freeNode(leaf);
+        }
+    }
+
+    @Override
+    public void update(Collidable c) {
+        Integer boxed = leaves.get(c);
+        if (boxed == null) {
+            return;
+        }
+        int leaf = boxed;
+        Rectangle r = c.getCollisionRectangle();
+        double left = r.getUpperLeft().getX();
+        double top = r.getUpperLeft().getY();
+        if (left >= minX[leaf] && top >= minY[leaf]
+                && left + r.getWidth() <= maxX[leaf] && top + r.getHeight() <= maxY[leaf]) {
+            return;
+        }
+        // Stretch the new fat box in the direction the collidable is heading, so a steady
+        // mover stays inside it for several more updates.
+        double oldCenterX = (minX[leaf] + maxX[leaf]) / 2;
+        double oldCenterY = (minY[leaf] + maxY[leaf]) / 2;
+        double displacementX = PREDICTION * (left + r.getWidth() / 2 - oldCenterX);
+        double displacementY = PREDICTION * (top + r.getHeight() / 2 - oldCenterY);
+        removeLeaf(leaf);
+        fatten(leaf, r);
+        if (displacementX < 0) {
+            minX[leaf] += displacementX;
+        } else {
+            maxX[leaf] += displacementX;
+        }
+        if (displacementY < 0) {
+            minY[leaf] += displacementY;
+        } else {
+            maxY[leaf] += displacementY;
+        }
+        insertLeaf(leaf);
+    }
+
+    @Override
+    public CollisionInfo closestCollision(Line trajectory) {
+        if (root == NULL) {
+            return null;
+        }
+        Point start = trajectory.getStart();
+        double x0 = start.getX();
+        double y0 = start.getY();
+        double dx = trajectory.getEnd().getX() - x0;
+        double dy = trajectory.getEnd().getY() - y0;
+        double length = Math.hypot(dx, dy);
+
+        Collidable best = null;
+        Point bestPoint = null;
+        double bestDistance = Double.MAX_VALUE;
+        long bestSequence = Long.MAX_VALUE;
+
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            double tEnter = segmentEnter(node, x0, y0, dx, dy);
+            if (tEnter < 0 || (best != null && tEnter * length > bestDistance + EDGE_SLACK)) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                Point p = trajectory.closestIntersectionToStartOfLine(item[node].getCollisionRectangle());
+                if (p == null) {
+                    continue;
+                }
+                double dist = start.distance(p);
+                if (dist < bestDistance || (dist == bestDistance && sequence[node] < bestSequence)) {
+                    bestDistance = dist;
+                    bestSequence = sequence[node];
+                    bestPoint = p;
+                    best = item[node];
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+        return best == null ? null : new CollisionInfo(bestPoint, best);
+    }
+
+    @Override
+    public void sweepCircle(double x, double y, double dx, double dy, double radius, SweepResult out) {
+        out.begin(x, y, dx, dy, radius);
+        if (root == NULL) {
+            return;
+        }
+        int[] nodes = out.stack;
+        int top = 0;
+        nodes[top++] = root;
+        while (top > 0) {
+            int node = nodes[--top];
+            double tEnter = out.enterTime(minX[node] - EDGE_SLACK, minY[node] - EDGE_SLACK,
+                    maxX[node] + EDGE_SLACK, maxY[node] + EDGE_SLACK);
+            if (tEnter < 0 || tEnter > out.bestTime()) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                out.consider(item[node], sequence[node]);
+            } else {
+                if (top + 2 > nodes.length) {
+                    nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    out.stack = nodes;
+                }
+                nodes[top++] = child1[node];
+                nodes[top++] = child2[node];
+            }
+        }
+    }
+
+    @Override
+    public Collidable firstContaining(double x, double y, SweepResult scratch) {
+        if (root == NULL) {
+            return null;
+        }
+        Collidable best = null;
+        long bestSequence = Long.MAX_VALUE;
+        int[] nodes = scratch.stack;
+        int top = 0;
+        nodes[top++] = root;
+        while (top > 0) {
+            int node = nodes[--top];
+            if (minX[node] > x || maxX[node] < x || minY[node] > y || maxY[node] < y) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                if (sequence[node] < bestSequence
+                        && UniformGrid.overlaps(item[node].getCollisionRectangle(), x, y, x, y)) {
+                    best = item[node];
+                    bestSequence = sequence[node];
+                }
+            } else {
+                if (top + 2 > nodes.length) {
+                    nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    scratch.stack = nodes;
+                }
+                nodes[top++] = child1[node];
+                nodes[top++] = child2[node];
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void query(double qMinX, double qMinY, double qMaxX, double qMaxY, List<Collidable> out) {
+        if (root == NULL) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (minX[node] > qMaxX || maxX[node] < qMinX || minY[node] > qMaxY || maxY[node] < qMinY) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                if (UniformGrid.overlaps(item[node].getCollisionRectangle(), qMinX, qMinY, qMaxX, qMaxY)) {
+                    out.add(item[node]);
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    /**
+     * Returns the parameter at which the segment enters the box of a node,
+     * or -1 if the segment misses it.
+     */
+    private double segmentEnter(int node, double x0, double y0, double dx, double dy) {
+        double tEnter = 0;
+        double tExit = 1;
+        double lowX = minX[node] - EDGE_SLACK;
+        double highX = maxX[node] + EDGE_SLACK;
+        double lowY = minY[node] - EDGE_SLACK;
+        double highY = maxY[node] + EDGE_SLACK;
+        if (dx == 0) {
+            if (x0 < lowX || x0 > highX) {
+                return -1;
+            }
+        } else {
+            double t1 = (lowX - x0) / dx;
+            double t2 = (highX - x0) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < lowY || y0 > highY) {
+                return -1;
+            }
+        } else {
+            double t1 = (lowY - y0) / dy;
+            double t2 = (highY - y0) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        return tEnter <= tExit ? tEnter : -1;
+    }
+
+    private void fatten(int leaf, Rectangle r) {
+        minX[leaf] = r.getUpperLeft().getX() - margin;
+        minY[leaf] = r.getUpperLeft().getY() - margin;
+        maxX[leaf] = r.getUpperLeft().getX() + r.getWidth() + margin;
+        maxY[leaf] = r.getUpperLeft().getY() + r.getHeight() + margin;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            int newCapacity = Math.max(16, capacity * 2);
+            minX = Arrays.copyOf(minX, newCapacity);
+            minY = Arrays.copyOf(minY, newCapacity);
+            maxX = Arrays.copyOf(maxX, newCapacity);
+            maxY = Arrays.copyOf(maxY, newCapacity);
+            parent = Arrays.copyOf(parent, newCapacity);
+            child1 = Arrays.copyOf(child1, newCapacity);
+            child2 = Arrays.copyOf(child2, newCapacity);
+            height = Arrays.copyOf(height, newCapacity);
+            item = Arrays.copyOf(item, newCapacity);
+            sequence = Arrays.copyOf(sequence, newCapacity);
+            for (int i = capacity; i < newCapacity; i++) {
+                parent[i] = i + 1 < newCapacity ? i + 1 : NULL;
+            }
+            freeList = capacity;
+            capacity = newCapacity;
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        item[node] = null;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        item[node] = null;
+        height[node] = -1;
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    private static double perimeter(double x1, double y1, double x2, double y2) {
+        return 2 * ((x2 - x1) + (y2 - y1));
+    }
+
+    private double unionPerimeter(int a, int b) {
+        return perimeter(Math.min(minX[a], minX[b]), Math.min(minY[a], minY[b]),
+                Math.max(maxX[a], maxX[b]), Math.max(maxY[a], maxY[b]));
+    }
+
+    private void setUnion(int node, int a, int b) {
+        minX[node] = Math.min(minX[a], minX[b]);
+        minY[node] = Math.min(minY[a], minY[b]);
+        maxX[node] = Math.max(maxX[a], maxX[b]);
+        maxY[node] = Math.max(maxY[a], maxY[b]);
+    }
+
+    /**
+     * Inserts a leaf next to the sibling that grows the total perimeter the least.
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        int index = root;
+        while (child1[index] != NULL) {
+            int c1 = child1[index];
+            int c2 = child2[index];
+            double area = perimeter(minX[index], minY[index], maxX[index], maxY[index]);
+            double combinedArea = unionPerimeter(index, leaf);
+            double cost = 2 * combinedArea;
+            double inheritanceCost = 2 * (combinedArea - area);
+            double cost1 = childCost(c1, leaf) + inheritanceCost;
+            double cost2 = childCost(c2, leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        setUnion(newParent, sibling, leaf);
+        height[newParent] = height[sibling] + 1;
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refitFrom(parent[leaf]);
+    }
+
+    private double childCost(int child, int leaf) {
+        double combined = unionPerimeter(child, leaf);
+        if (child1[child] == NULL) {
+            return combined;
+        }
+        return combined - perimeter(minX[child], minY[child], maxX[child], maxY[child]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+        if (grandParent != NULL) {
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            refitFrom(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+        }
+        parent[leaf] = NULL;
+    }
+
+    /**
+     * Walks from the given node up to the root, rebalancing and refitting boxes on the way.
+     */
+    private void refitFrom(int node) {
+        int index = node;
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            setUnion(index, c1, c2);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if the subtree rooted at iA is unbalanced.
+     * @return the index of the new root of the subtree
+     */
+    private int balance(int iA) {
+        if (child1[iA] == NULL || height[iA] < 2) {
+            return iA;
+        }
+        int iB = child1[iA];
+        int iC = child2[iA];
+        int balance = height[iC] - height[iB];
+
+        if (balance > 1) {
+            // Rotate C up.
+            int iF = child1[iC];
+            int iG = child2[iC];
+            child1[iC] = iA;
+            parent[iC] = parent[iA];
+            parent[iA] = iC;
+            replaceChild(parent[iC], iA, iC);
+            if (height[iF] > height[iG]) {
+                child2[iC] = iF;
+                child2[iA] = iG;
+                parent[iG] = iA;
+                setUnion(iA, iB, iG);
+                setUnion(iC, iA, iF);
+                height[iA] = 1 + Math.max(height[iB], height[iG]);
+                height[iC] = 1 + Math.max(height[iA], height[iF]);
+            } else {
+                child2[iC] = iG;
+                child2[iA] = iF;
+                parent[iF] = iA;
+                setUnion(iA, iB, iF);
+                setUnion(iC, iA, iG);
+                height[iA] = 1 + Math.max(height[iB], height[iF]);
+                height[iC] = 1 + Math.max(height[iA], height[iG]);
+            }
+            return iC;
+        }
+
+        if (balance < -1) {
+            // Rotate B up.
+            int iD = child1[iB];
+            int iE = child2[iB];
+            child1[iB] = iA;
+            parent[iB] = parent[iA];
+            parent[iA] = iB;
+            replaceChild(parent[iB], iA, iB);
+            if (height[iD] > height[iE]) {
+                child2[iB] = iD;
+                child1[iA] = iE;
+                parent[iE] = iA;
+                setUnion(iA, iC, iE);
+                setUnion(iB, iA, iD);
+                height[iA] = 1 + Math.max(height[iC], height[iE]);
+                height[iB] = 1 + Math.max(height[iA], height[iD]);
+            } else {
+                child2[iB] = iE;
+                child1[iA] = iD;
+                parent[iD] = iA;
+                setUnion(iA, iC, iD);
+                setUnion(iB, iA, iE);
+                height[iA] = 1 + Math.max(height[iC], height[iD]);
+                height[iB] = 1 + Math.max(height[iA], height[iE]);
+            }
+            return iB;
+        }
+        return iA;
+    }
+
+    private void replaceChild(int p, int oldChild, int newChild) {
+        if (p == NULL) {
+            root = newChild;
+        } else if (child1[p] == oldChild) {
+            child1[p] = newChild;
+        } else {
+            child2[p] = newChild;
+        }
+    }
+}
@@ -1,16 +1,63 @@
 package collidables;
 import geometry.Line;
 import geometry.Point;
+import geometry.Rectangle;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * The GameEnvironment class holds a collection of collidable objects.
  * It is responsible for managing collision detection between objects and the game environment.
+ * Collidables are kept in a CollidableIndex (a uniform grid unless another index is
+ * given), so a collision query only looks at the collidables near the trajectory
+ * instead of scanning all of them.
+ *
+ * <p>A removed collidable leaves the index, and so every query, at once. Taking it out of
+ * the list of collidables is queued and done for all queued removals in one pass, the next
+ * time the list is asked for or once an eighth of the list is waiting to be taken out, so
+ * removing many collidables in one tick stays linear.</p>
+ *
+ * <p>Collidables that move every tick, like the paddle, are added with
+ * {@link #addDynamicCollidable(Collidable)} instead. They stay out of the index and are
+ * tested directly by every query, and the answer is merged with the index's, so moving
+ * them never touches the index. The index is built while the level loads and from then
+ * on only loses collidables. Ties between the two sets still go to the collidable that
+ * was added first.</p>
  */
 public class GameEnvironment {
+    private static final double DEFAULT_CELL_SIZE = 64;
+    private static final int COMPACT_FRACTION = 8;
+
     private final List<Collidable> collidables = new ArrayList<>();
+    private final Map<Collidable, Integer> pendingRemovals = new IdentityHashMap<>();
+    private final CollidableIndex index;
+    private final Map<Collidable, Long> order = new IdentityHashMap<>();
+    private Collidable[] dynamic = new Collidable[4];
+    private long[] dynamicOrder = new long[4];
+    private int dynamicCount;
+    private long nextOrder;
+    private long version;
+
+    /**
+     * Constructs an empty environment backed by a uniform grid with the default cell size.
+     */
+    public GameEnvironment() {
+        this(new UniformGrid(DEFAULT_CELL_SIZE));
+    }
+
+    /**
+     * Constructs an empty environment backed by the given index.
+     * A DynamicAabbTree suits levels where many collidables move or get destroyed.
+     * @param index an empty index to keep the collidables in
+     */
+    public GameEnvironment(CollidableIndex index) {
+        this.index = index;
+    }
 
     /**
      * Adds the given collidable to the environment.
@@ -18,6 +65,48 @@ public class GameEnvironment {
      */
     public void addCollidable(Collidable c) {
         collidables.add(c);
+        order.put(c, nextOrder++);
+        index.insert(c);
+        version++;
+    }
+
+    /**
+     * Adds a collidable that moves, such as the paddle. It is not indexed but tested
+     * directly by every query, so {@link #updateCollidable(Collidable) updating} it is free.
+     * Meant for a handful of collidables.
+     * @param c the collidable to add
+     */
+    public void addDynamicCollidable(Collidable c) {
+        collidables.add(c);
+        if (dynamicCount == dynamic.length) {
+            dynamic = Arrays.copyOf(dynamic, dynamicCount * 2);
+            dynamicOrder = Arrays.copyOf(dynamicOrder, dynamicCount * 2);
+        }
+        dynamic[dynamicCount] = c;
+        dynamicOrder[dynamicCount] = nextOrder;
+        dynamicCount++;
+        order.put(c, nextOrder++);
+        version++;
+    }
+
+    /**
+     * Checks whether the given collidable is part of the environment.
+     * @param c the collidable to look for
+     * @return true if it was added and not removed since
+     */
+    public boolean contains(Collidable c) {
+        return index.contains(c) || indexOfDynamic(c) >= 0;
+    }
+
+    /**
+     * Returns a number that changes whenever a collidable is added or moved.
+     * Removals do not change it: taking a collidable away can only remove collisions,
+     * never create new ones, so callers also check that the collidable they care
+     * about is still {@link #contains(Collidable) contained}.
+     * @return the current version of the environment
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -25,9 +114,52 @@ public class GameEnvironment {
      * @return a list of Collidable objects.
      */
     public List<Collidable> getCollidables() {
+        applyRemovals();
         return collidables;
     }
 
+    /**
+     * Finds the first collidable, in the order they were added, that passes the given test.
+     * Unlike {@link #getCollidables()} this never changes the environment, so different
+     * threads can call it at the same time as long as nothing is added or removed meanwhile.
+     * @param test the test to apply
+     * @return the first collidable that passes the test, or null if none does
+     */
+    public Collidable firstCollidable(Predicate<Collidable> test) {
+        for (Collidable c : collidables) {
+            if (test.test(c) && (pendingRemovals.isEmpty() || contains(c))) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the collidable, of those added first, whose rectangle contains the given point,
+     * edges included. Gives the same answer as {@link #firstCollidable(Predicate)} with a
+     * containment test, but only looks at the collidables indexed near the point and does
+     * not allocate. Only reads shared state, so different threads can call it at the same
+     * time as long as each uses its own SweepResult.
+     * @param x       the x coordinate of the point
+     * @param y       the y coordinate of the point
+     * @param scratch a result owned by the caller, whose scratch space the query may use
+     * @return the containing collidable that was added first, or null if none contains the point
+     */
+    public Collidable firstContaining(double x, double y, SweepResult scratch) {
+        Collidable best = index.firstContaining(x, y, scratch);
+        if (dynamicCount == 0) {
+            return best;
+        }
+        long bestOrder = best == null ? Long.MAX_VALUE : order.get(best);
+        for (int i = 0; i < dynamicCount; i++) {
+            if (dynamicOrder[i] < bestOrder && UniformGrid.overlaps(dynamic[i].getCollisionRectangle(), x, y, x, y)) {
+                best = dynamic[i];
+                bestOrder = dynamicOrder[i];
+            }
+        }
+        return best;
+    }
+
     /**
      * Checks for the closest collision along a given trajectory.
      * If no collision occurs with any collidable in the environment, returns null.
@@ -36,28 +168,138 @@ public class GameEnvironment {
      * @return a CollisionInfo object representing the closest collision, or null
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        CollisionInfo closest = null;
-        double minDistance = Double.MAX_VALUE;
+        CollisionInfo best = index.closestCollision(trajectory);
+        if (dynamicCount == 0) {
+            return best;
+        }
+        Point start = trajectory.getStart();
+        double bestDistance = best == null ? Double.MAX_VALUE : start.distance(best.collisionPoint());
+        long bestOrder = best == null ? Long.MAX_VALUE : order.get(best.collisionObject());
+        for (int i = 0; i < dynamicCount; i++) {
+            Point p = trajectory.closestIntersectionToStartOfLine(dynamic[i].getCollisionRectangle());
+            if (p == null) {
+                continue;
+            }
+            double distance = start.distance(p);
+            if (distance < bestDistance || (distance == bestDistance && dynamicOrder[i] < bestOrder)) {
+                best = new CollisionInfo(p, dynamic[i]);
+                bestDistance = distance;
+                bestOrder = dynamicOrder[i];
+            }
+        }
+        return best;
+    }
 
-        for (Collidable c : collidables) {
-            Point p = trajectory.closestIntersectionToStartOfLine(c.getCollisionRectangle());
-            if (p != null) {
-                double dist = trajectory.start().distance(p);
-                if (dist < minDistance) {
-                    minDistance = dist;
-                    closest = new CollisionInfo(p, c);
-                }
+    /**
+     * Sweeps a circle of the given radius along a straight movement and finds the first
+     * collidable it touches. The answer is written into the given result, which the caller
+     * owns and can reuse, so the query does not allocate.
+     * @param x      the x coordinate of the circle's centre before the movement
+     * @param y      the y coordinate of the circle's centre before the movement
+     * @param dx     the movement along x
+     * @param dy     the movement along y
+     * @param radius the radius of the circle
+     * @param out    receives the time of impact, contact point and surface normal
+     * @return true if the circle touches a collidable during the movement
+     */
+    public boolean sweepCircle(double x, double y, double dx, double dy, double radius, SweepResult out) {
+        index.sweepCircle(x, y, dx, dy, radius, out);
+        if (dynamicCount > 0) {
+            // Compare the index's hit and the dynamic collidables by the order they were added here.
+            if (out.isHit()) {
+                out.setSequence(order.get(out.getCollidable()));
+            }
+            for (int i = 0; i < dynamicCount; i++) {
+                out.consider(dynamic[i], dynamicOrder[i]);
             }
         }
-        return closest;
+        return out.isHit();
     }
+
+    /**
+     * Adds to the given list every collidable whose collision rectangle overlaps the given area.
+     * @param area the area to look in
+     * @param out  the list the collidables are added to
+     */
+    public void collidablesIn(Rectangle area, List<Collidable> out) {
+        double left = area.getUpperLeft().getX();
+        double top = area.getUpperLeft().getY();
+        double right = left + area.getWidth();
+        double bottom = top + area.getHeight();
+        index.query(left, top, right, bottom, out);
+        for (int i = 0; i < dynamicCount; i++) {
+            if (UniformGrid.overlaps(dynamic[i].getCollisionRectangle(), left, top, right, bottom)) {
+                out.add(dynamic[i]);
+            }
+        }
+    }
+
+    /**
+     * Tells the environment that the collision rectangle of the given collidable changed,
+     * so it can be indexed at its new position. Dynamic collidables are not indexed, so
+     * for them this only records that the environment changed.
+     * @param c the collidable that moved
+     */
+    public void updateCollidable(Collidable c) {
+        if (index.contains(c)) {
+            index.update(c);
+        }
+        version++;
+    }
+
     /**
      * Removes the given collidable object from the environment.
      * @param c the collidable to remove
      */
     public void removeCollidable(Collidable c) {
-        collidables.remove(c);
+        int dynamicIndex = indexOfDynamic(c);
+        if (dynamicIndex >= 0) {
+            dynamicCount--;
+            System.arraycopy(dynamic, dynamicIndex + 1, dynamic, dynamicIndex, dynamicCount - dynamicIndex);
+            System.arraycopy(dynamicOrder, dynamicIndex + 1, dynamicOrder, dynamicIndex, dynamicCount - dynamicIndex);
+            dynamic[dynamicCount] = null;
+        }
+        if (dynamicIndex >= 0 || index.contains(c)) {
+            index.remove(c);
+            order.remove(c);
+            pendingRemovals.merge(c, 1, Integer::sum);
+            if (pendingRemovals.size() > collidables.size() / COMPACT_FRACTION) {
+                applyRemovals();
+            }
+        }
     }
 
-}
+    private int indexOfDynamic(Collidable c) {
+        for (int i = 0; i < dynamicCount; i++) {
+            if (dynamic[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
+    /**
+     * Takes the removed collidables out of the list in one pass. Each queued removal takes
+     * out the first occurrence of its collidable, like List.remove.
+     */
+    private void applyRemovals() {
+        if (pendingRemovals.isEmpty()) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < collidables.size(); i++) {
+            Collidable c = collidables.get(i);
+            Integer pending = pendingRemovals.get(c);
+            if (pending == null) {
+                collidables.set(kept++, c);
+            } else if (pending == 1) {
+                pendingRemovals.remove(c);
+            } else {
+                pendingRemovals.put(c, pending - 1);
+            }
+        }
+        collidables.subList(kept, collidables.size()).clear();
+        pendingRemovals.clear();
+    }
+
+}
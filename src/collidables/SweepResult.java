@@ -0,0 +1,305 @@
+package collidables;
+
+import geometry.Rectangle;
+
+/**
+ * The SweepResult class receives the answer of a swept-circle query: when the moving
+ * circle first touches a collidable, where it touches it and which way the touched
+ * surface faces.
+ *
+ * <p>A SweepResult is owned and reused by the caller (typically one per ball), so running
+ * a query does not allocate. It also carries the scratch space indexes need to walk their
+ * structure, which makes it safe for different threads to query the same environment as
+ * long as each thread uses its own SweepResult.</p>
+ */
+public class SweepResult {
+    private static final double CORNER_SLACK = 1e-6;
+
+    private boolean hit;
+    private double time;
+    private double contactX;
+    private double contactY;
+    private double normalX;
+    private double normalY;
+    private Collidable collidable;
+    private long sequence;
+
+    private double startX;
+    private double startY;
+    private double dx;
+    private double dy;
+    private double radius;
+    private double skin;
+
+    /**
+     * Scratch stack used by tree indexes while walking their nodes.
+     */
+    int[] stack = new int[64];
+
+    /**
+     * Returns whether the last query hit anything.
+     * @return true if the circle touched a collidable
+     */
+    public boolean isHit() {
+        return hit;
+    }
+
+    /**
+     * Returns the time of impact as a fraction of the swept movement, between 0 and 1.
+     * @return the time of impact
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the x coordinate of the point on the collidable the circle touched.
+     * @return the contact x coordinate
+     */
+    public double getContactX() {
+        return contactX;
+    }
+
+    /**
+     * Returns the y coordinate of the point on the collidable the circle touched.
+     * @return the contact y coordinate
+     */
+    public double getContactY() {
+        return contactY;
+    }
+
+    /**
+     * Returns the x component of the normal of the touched surface: -1, 0 or 1.
+     * Both components are non-zero when the circle hit a corner.
+     * @return the normal x component
+     */
+    public double getNormalX() {
+        return normalX;
+    }
+
+    /**
+     * Returns the y component of the normal of the touched surface: -1, 0 or 1.
+     * Both components are non-zero when the circle hit a corner.
+     * @return the normal y component
+     */
+    public double getNormalY() {
+        return normalY;
+    }
+
+    /**
+     * Returns the collidable the circle touched first.
+     * @return the collidable that was hit, or null if nothing was hit
+     */
+    public Collidable getCollidable() {
+        return collidable;
+    }
+
+    /**
+     * Starts a new query, clearing the previous answer.
+     */
+    void begin(double x, double y, double moveX, double moveY, double r) {
+        this.hit = false;
+        this.time = Double.MAX_VALUE;
+        this.collidable = null;
+        this.sequence = Long.MAX_VALUE;
+        this.startX = x;
+        this.startY = y;
+        this.dx = moveX;
+        this.dy = moveY;
+        this.radius = r;
+        double length = Math.hypot(moveX, moveY);
+        this.skin = length == 0 ? 0 : CORNER_SLACK / length;
+    }
+
+    /**
+     * Returns the left edge of the area the circle sweeps through.
+     */
+    double sweepMinX() {
+        return Math.min(startX, startX + dx) - radius;
+    }
+
+    /**
+     * Returns the top edge of the area the circle sweeps through.
+     */
+    double sweepMinY() {
+        return Math.min(startY, startY + dy) - radius;
+    }
+
+    /**
+     * Returns the right edge of the area the circle sweeps through.
+     */
+    double sweepMaxX() {
+        return Math.max(startX, startX + dx) + radius;
+    }
+
+    /**
+     * Returns the bottom edge of the area the circle sweeps through.
+     */
+    double sweepMaxY() {
+        return Math.max(startY, startY + dy) + radius;
+    }
+
+    /**
+     * Returns the time at which the swept circle enters the given box grown by the radius,
+     * or -1 if it never does during this movement.
+     */
+    double enterTime(double minX, double minY, double maxX, double maxY) {
+        double tEnter = 0;
+        double tExit = 1;
+        double lowX = minX - radius;
+        double highX = maxX + radius;
+        double lowY = minY - radius;
+        double highY = maxY + radius;
+        if (dx == 0) {
+            if (startX < lowX || startX > highX) {
+                return -1;
+            }
+        } else {
+            double t1 = (lowX - startX) / dx;
+            double t2 = (highX - startX) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (startY < lowY || startY > highY) {
+                return -1;
+            }
+        } else {
+            double t1 = (lowY - startY) / dy;
+            double t2 = (highY - startY) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        return tEnter <= tExit ? tEnter : -1;
+    }
+
+    /**
+     * Replaces the insertion order of the best hit so far, for merging the answers of
+     * collidables numbered by different indexes.
+     */
+    void setSequence(long seq) {
+        this.sequence = seq;
+    }
+
+    /**
+     * Returns the best time of impact found so far in this query.
+     */
+    double bestTime() {
+        return time;
+    }
+
+    /**
+     * Tests the circle against the rectangle of the given collidable and keeps the hit
+     * if it is the earliest so far. Ties go to the collidable with the smaller sequence.
+     *
+     * <p>The rectangle is grown by the radius on every side and the centre of the circle is
+     * swept against it with a slab test. A circle that only grazes it while moving away does
+     * not count as a hit. A circle that starts out already overlapping the grown rectangle,
+     * as when the paddle moves into a ball, hits it at time 0 on the face it is least deep
+     * behind, unless it is already moving out through that face.</p>
+     * @param c   the collidable to test
+     * @param seq the insertion order of the collidable
+     */
+    void consider(Collidable c, long seq) {
+        Rectangle r = c.getCollisionRectangle();
+        double left = r.getUpperLeft().getX();
+        double top = r.getUpperLeft().getY();
+        double right = left + r.getWidth();
+        double bottom = top + r.getHeight();
+
+        double tEnterX;
+        double tExitX;
+        if (dx == 0) {
+            if (startX <= left - radius || startX >= right + radius) {
+                return;
+            }
+            tEnterX = Double.NEGATIVE_INFINITY;
+            tExitX = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (left - radius - startX) / dx;
+            double t2 = (right + radius - startX) / dx;
+            tEnterX = Math.min(t1, t2);
+            tExitX = Math.max(t1, t2);
+        }
+        double tEnterY;
+        double tExitY;
+        if (dy == 0) {
+            if (startY <= top - radius || startY >= bottom + radius) {
+                return;
+            }
+            tEnterY = Double.NEGATIVE_INFINITY;
+            tExitY = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (top - radius - startY) / dy;
+            double t2 = (bottom + radius - startY) / dy;
+            tEnterY = Math.min(t1, t2);
+            tExitY = Math.max(t1, t2);
+        }
+
+        double tEnter = Math.max(tEnterX, tEnterY);
+        double tExit = Math.min(tExitX, tExitY);
+        if (tEnter > tExit || tExit <= 0 || tEnter > 1) {
+            return;
+        }
+        if (tEnter < -skin) {
+            considerOverlap(c, seq, left, top, right, bottom);
+            return;
+        }
+        double t = Math.max(0, tEnter);
+        if (t > time || (t == time && seq > sequence)) {
+            return;
+        }
+
+        hit = true;
+        time = t;
+        collidable = c;
+        sequence = seq;
+        normalX = 0;
+        normalY = 0;
+        if (tEnterX >= tEnterY - skin) {
+            normalX = dx > 0 ? -1 : 1;
+        }
+        if (tEnterY >= tEnterX - skin) {
+            normalY = dy > 0 ? -1 : 1;
+        }
+        double cx = startX + dx * t;
+        double cy = startY + dy * t;
+        contactX = Math.max(left, Math.min(right, cx));
+        contactY = Math.max(top, Math.min(bottom, cy));
+    }
+
+    /**
+     * Keeps a hit at time 0 for a circle that starts out overlapping the given rectangle,
+     * with the normal of the face it needs the least push to get out through.
+     */
+    private void considerOverlap(Collidable c, long seq, double left, double top, double right, double bottom) {
+        double toLeft = startX - (left - radius);
+        double toRight = right + radius - startX;
+        double toTop = startY - (top - radius);
+        double toBottom = bottom + radius - startY;
+        double least = Math.min(Math.min(toLeft, toRight), Math.min(toTop, toBottom));
+        double nx = 0;
+        double ny = 0;
+        if (least == toLeft) {
+            nx = -1;
+        } else if (least == toRight) {
+            nx = 1;
+        } else if (least == toTop) {
+            ny = -1;
+        } else {
+            ny = 1;
+        }
+        if (dx * nx + dy * ny >= 0 || (time == 0 && seq > sequence)) {
+            // Already on its way out, or an earlier collidable is hit at time 0 too.
+            return;
+        }
+        hit = true;
+        time = 0;
+        collidable = c;
+        sequence = seq;
+        normalX = nx;
+        normalY = ny;
+        contactX = Math.max(left, Math.min(right, startX));
+        contactY = Math.max(top, Math.min(bottom, startY));
+    }
+}
@@ -0,0 +1,444 @@
+package collidables;
+
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The UniformGrid class is a broadphase index over collidables.
+ * The plane is split into square cells and every collidable is stored in each cell
+ * its collision rectangle overlaps, so a trajectory is only tested against the
+ * collidables that live in the cells it actually passes through.
+ */
+public class UniformGrid implements CollidableIndex {
+    private static final double EDGE_SLACK = 1e-6;
+
+    private final double cellSize;
+    private final Map<Collidable, Entry> entries = new IdentityHashMap<>();
+    private Cell[] cells = new Cell[0];
+    private int originX;
+    private int originY;
+    private int cols;
+    private int rows;
+    private long nextSequence;
+    private int queryStamp;
+
+    /**
+     * Constructs an empty grid with the given cell size.
+     * @param cellSize the side length of every cell, in pixels
+     */
+    public UniformGrid(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    @Override
+    public boolean contains(Collidable c) {
+        return entries.containsKey(c);
+    }
+
+    /**
+     * Returns the number of collidables stored in the grid.
+     * @return the number of indexed collidables
+     */
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adds the given collidable to the grid.
+     * Collidables added later lose ties against collidables added earlier.
+     * @param c the collidable to add
+     */
+    @Override
+    public void insert(Collidable c) {
+        Entry e = new Entry(c, nextSequence++);
+        entries.put(c, e);
+        place(e);
+    }
+
+    /**
+     * Removes the given collidable from the grid. Does nothing if it is not indexed.
+     * @param c the collidable to remove
+     */
+    @Override
+    public void remove(Collidable c) {
+        Entry e = entries.remove(c);
+        if (e != null) {
+            unplace(e);
+        }
+    }
+
+    /**
+     * Re-indexes the given collidable after its collision rectangle was replaced.
+     * The collidable keeps its original insertion order for tie-breaking.
+     * @param c the collidable that moved
+     */
+    @Override
+    public void update(Collidable c) {
+        Entry e = entries.get(c);
+        if (e == null || e.bounds == c.getCollisionRectangle()) {
+            return;
+        }
+        unplace(e);
+        place(e);
+    }
+
+    /**
+     * Finds the collidable whose rectangle the trajectory hits closest to its start.
+     * Ties on distance go to the collidable that was inserted first, which gives the
+     * same answer as a linear scan over the collidables in insertion order.
+     * @param trajectory the path to check for collisions
+     * @return the closest collision, or null if the trajectory hits nothing
+     */
+    @Override
+    public CollisionInfo closestCollision(Line trajectory) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Point start = trajectory.getStart();
+        double x0 = start.getX();
+        double y0 = start.getY();
+        double dx = trajectory.getEnd().getX() - x0;
+        double dy = trajectory.getEnd().getY() - y0;
+
+        // Clip the segment to the area covered by the grid.
+        double tEnter = 0;
+        double tExit = 1;
+        double minX = originX * cellSize;
+        double minY = originY * cellSize;
+        double maxX = (originX + cols) * cellSize;
+        double maxY = (originY + rows) * cellSize;
+        if (dx == 0) {
+            if (x0 < minX || x0 > maxX) {
+                return null;
+            }
+        } else {
+            double t1 = (minX - x0) / dx;
+            double t2 = (maxX - x0) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < minY || y0 > maxY) {
+                return null;
+            }
+        } else {
+            double t1 = (minY - y0) / dy;
+            double t2 = (maxY - y0) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (tEnter > tExit) {
+            return null;
+        }
+
+        queryStamp++;
+        Query q = new Query(trajectory, start);
+        double length = Math.hypot(dx, dy);
+
+        int cx = cellIndex(x0 + dx * tEnter);
+        int cy = cellIndex(y0 + dy * tEnter);
+        int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        double tDeltaX = stepX == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dx);
+        double tDeltaY = stepY == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dy);
+        double tMaxX = stepX > 0 ? ((cx + 1) * cellSize - x0) / dx
+                : (stepX < 0 ? (cx * cellSize - x0) / dx : Double.POSITIVE_INFINITY);
+        double tMaxY = stepY > 0 ? ((cy + 1) * cellSize - y0) / dy
+                : (stepY < 0 ? (cy * cellSize - y0) / dy : Double.POSITIVE_INFINITY);
+
+        double tCell = tEnter;
+        while (tCell <= tExit) {
+            // Nothing in a cell entered beyond the best hit can be closer than it.
+            if (q.best != null && tCell * length > q.bestDistance + EDGE_SLACK) {
+                break;
+            }
+            visit(cx, cy, q);
+
+            double tNext = Math.min(tMaxX, tMaxY);
+            if (tNext > tExit) {
+                break;
+            }
+            if (stepX != 0 && stepY != 0 && Math.abs(tMaxX - tMaxY) * length <= EDGE_SLACK) {
+                // Passing through a cell corner: also look at both side neighbours.
+                visit(cx + stepX, cy, q);
+                visit(cx, cy + stepY, q);
+                cx += stepX;
+                cy += stepY;
+                tMaxX += tDeltaX;
+                tMaxY += tDeltaY;
+            } else if (tMaxX < tMaxY) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                cy += stepY;
+                tMaxY += tDeltaY;
+            }
+            tCell = tNext;
+        }
+        return q.best == null ? null : new CollisionInfo(q.bestPoint, q.best);
+    }
+
+    @Override
+    public void sweepCircle(double x, double y, double dx, double dy, double radius, SweepResult out) {
+        out.begin(x, y, dx, dy, radius);
+        int fromCx = Math.max(cellIndex(out.sweepMinX() - EDGE_SLACK), originX);
+        int fromCy = Math.max(cellIndex(out.sweepMinY() - EDGE_SLACK), originY);
+        int toCx = Math.min(cellIndex(out.sweepMaxX() + EDGE_SLACK), originX + cols - 1);
+        int toCy = Math.min(cellIndex(out.sweepMaxY() + EDGE_SLACK), originY + rows - 1);
+        // A collidable spanning several cells is simply tested more than once; that keeps
+        // the sweep free of the per-query stamps, so several threads can sweep at once.
+        for (int cy = fromCy; cy <= toCy; cy++) {
+            for (int cx = fromCx; cx <= toCx; cx++) {
+                Cell cell = cells[(cy - originY) * cols + (cx - originX)];
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size; i++) {
+                    Entry e = cell.items[i];
+                    out.consider(e.collidable, e.sequence);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Collidable firstContaining(double x, double y, SweepResult scratch) {
+        // A point on a cell edge may belong to the collidables of either cell.
+        int fromCx = Math.max(cellIndex(x - EDGE_SLACK), originX);
+        int fromCy = Math.max(cellIndex(y - EDGE_SLACK), originY);
+        int toCx = Math.min(cellIndex(x + EDGE_SLACK), originX + cols - 1);
+        int toCy = Math.min(cellIndex(y + EDGE_SLACK), originY + rows - 1);
+        Collidable best = null;
+        long bestSequence = Long.MAX_VALUE;
+        for (int cy = fromCy; cy <= toCy; cy++) {
+            for (int cx = fromCx; cx <= toCx; cx++) {
+                Cell cell = cells[(cy - originY) * cols + (cx - originX)];
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size; i++) {
+                    Entry e = cell.items[i];
+                    if (e.sequence < bestSequence && overlaps(e.collidable.getCollisionRectangle(), x, y, x, y)) {
+                        best = e.collidable;
+                        bestSequence = e.sequence;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void query(double minX, double minY, double maxX, double maxY, List<Collidable> out) {
+        int fromCx = Math.max(cellIndex(minX), originX);
+        int fromCy = Math.max(cellIndex(minY), originY);
+        int toCx = Math.min(cellIndex(maxX), originX + cols - 1);
+        int toCy = Math.min(cellIndex(maxY), originY + rows - 1);
+        queryStamp++;
+        for (int cy = fromCy; cy <= toCy; cy++) {
+            for (int cx = fromCx; cx <= toCx; cx++) {
+                Cell cell = cells[(cy - originY) * cols + (cx - originX)];
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size; i++) {
+                    Entry e = cell.items[i];
+                    if (e.stamp != queryStamp) {
+                        e.stamp = queryStamp;
+                        if (overlaps(e.collidable.getCollisionRectangle(), minX, minY, maxX, maxY)) {
+                            out.add(e.collidable);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a rectangle overlaps a box, edges included.
+     * @param r    the rectangle
+     * @param minX the left edge of the box
+     * @param minY the top edge of the box
+     * @param maxX the right edge of the box
+     * @param maxY the bottom edge of the box
+     * @return true if they overlap
+     */
+    static boolean overlaps(Rectangle r, double minX, double minY, double maxX, double maxY) {
+        double left = r.getUpperLeft().getX();
+        double top = r.getUpperLeft().getY();
+        return left <= maxX && left + r.getWidth() >= minX && top <= maxY && top + r.getHeight() >= minY;
+    }
+
+    private void visit(int cx, int cy, Query q) {
+        int col = cx - originX;
+        int row = cy - originY;
+        if (col < 0 || row < 0 || col >= cols || row >= rows) {
+            return;
+        }
+        Cell cell = cells[row * cols + col];
+        if (cell == null) {
+            return;
+        }
+        for (int i = 0; i < cell.size; i++) {
+            Entry e = cell.items[i];
+            if (e.stamp == queryStamp) {
+                continue;
+            }
+            e.stamp = queryStamp;
+            Point p = q.trajectory.closestIntersectionToStartOfLine(e.collidable.getCollisionRectangle());
+            if (p == null) {
+                continue;
+            }
+            double dist = q.start.distance(p);
+            if (dist < q.bestDistance || (dist == q.bestDistance && e.sequence < q.bestSequence)) {
+                q.bestDistance = dist;
+                q.bestSequence = e.sequence;
+                q.bestPoint = p;
+                q.best = e.collidable;
+            }
+        }
+    }
+
+    private int cellIndex(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private void place(Entry e) {
+        Rectangle r = e.collidable.getCollisionRectangle();
+        e.bounds = r;
+        double left = r.getUpperLeft().getX();
+        double top = r.getUpperLeft().getY();
+        e.minCx = cellIndex(left - EDGE_SLACK);
+        e.minCy = cellIndex(top - EDGE_SLACK);
+        e.maxCx = cellIndex(left + r.getWidth() + EDGE_SLACK);
+        e.maxCy = cellIndex(top + r.getHeight() + EDGE_SLACK);
+        if (e.minCx < originX || e.minCy < originY
+                || e.maxCx >= originX + cols || e.maxCy >= originY + rows) {
+            grow(e);
+            return;
+        }
+        for (int cy = e.minCy; cy <= e.maxCy; cy++) {
+            for (int cx = e.minCx; cx <= e.maxCx; cx++) {
+                int index = (cy - originY) * cols + (cx - originX);
+                if (cells[index] == null) {
+                    cells[index] = new Cell();
+                }
+                cells[index].add(e);
+            }
+        }
+    }
+
+    private void unplace(Entry e) {
+        for (int cy = e.minCy; cy <= e.maxCy; cy++) {
+            for (int cx = e.minCx; cx <= e.maxCx; cx++) {
+                cells[(cy - originY) * cols + (cx - originX)].remove(e);
+            }
+        }
+    }
+
+    /**
+     * Enlarges the grid so it covers the given entry and rebuilds every cell.
+     * The grid doubles in each direction it grows so repeated growth stays cheap.
+     */
+    private void grow(Entry e) {
+        int minCx = Math.min(e.minCx, cols == 0 ? e.minCx : originX);
+        int minCy = Math.min(e.minCy, rows == 0 ? e.minCy : originY);
+        int maxCx = Math.max(e.maxCx, cols == 0 ? e.maxCx : originX + cols - 1);
+        int maxCy = Math.max(e.maxCy, rows == 0 ? e.maxCy : originY + rows - 1);
+        if (cols != 0) {
+            int extraX = cols;
+            int extraY = rows;
+            if (minCx < originX) {
+                minCx = Math.min(minCx, originX - extraX);
+            }
+            if (maxCx >= originX + cols) {
+                maxCx = Math.max(maxCx, originX + cols - 1 + extraX);
+            }
+            if (minCy < originY) {
+                minCy = Math.min(minCy, originY - extraY);
+            }
+            if (maxCy >= originY + rows) {
+                maxCy = Math.max(maxCy, originY + rows - 1 + extraY);
+            }
+        }
+        originX = minCx;
+        originY = minCy;
+        cols = maxCx - minCx + 1;
+        rows = maxCy - minCy + 1;
+        cells = new Cell[cols * rows];
+        for (Entry other : entries.values()) {
+            place(other);
+        }
+    }
+
+    /**
+     * A collidable together with the cell range it currently occupies.
+     */
+    private static final class Entry {
+        private final Collidable collidable;
+        private final long sequence;
+        private Rectangle bounds;
+        private int minCx;
+        private int minCy;
+        private int maxCx;
+        private int maxCy;
+        private int stamp;
+
+        private Entry(Collidable collidable, long sequence) {
+            this.collidable = collidable;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The entries overlapping a single cell.
+     */
+    private static final class Cell {
+        private Entry[] items = new Entry[4];
+        private int size;
+
+        private void add(Entry e) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = e;
+        }
+
+        private void remove(Entry e) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == e) {
+                    items[i] = items[--size];
+                    items[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The running best hit of a single closest-collision query.
+     */
+    private static final class Query {
+        private final Line trajectory;
+        private final Point start;
+        private Collidable best;
+        private Point bestPoint;
+        private double bestDistance = Double.MAX_VALUE;
+        private long bestSequence = Long.MAX_VALUE;
+
+        private Query(Line trajectory, Point start) {
+            this.trajectory = trajectory;
+            this.start = start;
+        }
+    }
+}
@@ -1,36 +1,98 @@
 package core;
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
 import biuoop.DrawSurface;
 import biuoop.GUI;
 import collidables.Collidable;
 import collidables.GameEnvironment;
 import counters.Counter;
 import geometry.Point;
+import graphics.Camera;
+import graphics.FrameBuffer;
+import graphics.StaticLayer;
 import geometry.Rectangle;
+import input.GameAwareInput;
+import input.InputProvider;
+import input.InputRecorder;
+import input.KeyboardInput;
 import listeners.BallRemover;
 import listeners.BlockRemover;
-import listeners.HitListener;
+import listeners.HitBatchListener;
+import listeners.HitEventQueue;
+import levels.ChunkHost;
+import levels.LevelFile;
+import levels.LevelStreamer;
 import listeners.ScoreTrackingListener;
+import metrics.FrameStats;
+import sprites.PerformanceOverlay;
 import sprites.ScoreIndicator;
 import sprites.Block;
 import sprites.Ball;
+import sprites.BallCollider;
+import sprites.BallScheduler;
 import sprites.SpriteCollection;
 import sprites.Sprite;
 import sprites.Paddle;
+import sprites.StaticSprite;
 import sprites.Velocity;
 
 
 /**
  * The Game class is responsible for setting up and running the game.
  * It handles the creation of sprites, collidables, and the animation loop.
+ * A game can also run headless: without a window, driven by an InputProvider and
+ * stepped as fast as the CPU allows.
  */
 public class Game {
     private final SpriteCollection sprites;
     private final GameEnvironment environment;
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final int SCREEN_WIDTH = 800;
+    private static final int SCREEN_HEIGHT = 600;
+    private static final int CHUNK_SIZE = 256;
+    private static final int STREAM_MARGIN = 64;
+    private static final int BORDER_THICKNESS = 20;
+
     private final GUI gui;
+    private final FrameBuffer frameBuffer;
+    private InputProvider input;
+    private long seed;
+    private InputRecorder recorder;
+    private Path recordingFile;
     private Counter remainingBlocks;
     private Counter remainingBalls;
     private Counter score;
+    private BlockRemover blockRemover;
+    private BallRemover ballRemover;
+    private ScoreTrackingListener scoreListener;
+    private Block deathRegion;
+    private final Set<Block> walls = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long ticks;
+    private boolean ended;
+    private int ticksPerSecond = 60;
+    private int framesPerSecond = 60;
+    private int maxCatchUpTicks = 5;
+    private final FrameStats frameStats;
+    private final HitEventQueue hitEvents = new HitEventQueue();
+    private BallCollider ballCollider;
+    private BallScheduler ballScheduler;
+    private int maxHitsPerTick = 1;
+    private final SpriteCollection steppedSprites = new SpriteCollection();
+    private LevelFile level;
+    private Camera camera;
+    private LevelStreamer streamer;
+    private Paddle paddle;
+    private Rectangle playArea;
+    private final List<Ball> streamedBalls = new ArrayList<>();
+    private Path timingsFile = Paths.get("frame-timings.csv");
 
 
     /**
@@ -41,6 +103,40 @@ public class Game {
         this.sprites = new SpriteCollection();
         this.environment = new GameEnvironment();
         this.gui = new GUI("Arkanoid", 800, 600);
+        this.frameStats = new FrameStats();
+        this.input = new KeyboardInput(gui.getKeyboardSensor());
+        this.sprites.setStaticLayer(new StaticLayer(800, 600, BACKGROUND));
+        this.frameBuffer = new FrameBuffer(800, 600, BACKGROUND);
+    }
+
+    /**
+     * Constructs a headless Game: no window is opened and nothing is drawn.
+     * The paddle is driven by the given input and the game is advanced with {@link #step(int)}.
+     * @param input the input that moves the paddle
+     */
+    public Game(InputProvider input) {
+        this(input, false);
+    }
+
+    /**
+     * Constructs a Game driven by the given input instead of the keyboard, in a window
+     * or headless. Used to watch a replay or a bot play.
+     * @param input    the input that moves the paddle
+     * @param windowed whether to open a window the game can {@link #run()} in
+     */
+    public Game(InputProvider input, boolean windowed) {
+        this.sprites = new SpriteCollection();
+        this.environment = new GameEnvironment();
+        this.gui = windowed ? new GUI("Arkanoid", 800, 600) : null;
+        // Headless games have no frames to time; hundreds of them may share a process.
+        this.frameStats = windowed ? new FrameStats() : null;
+        this.input = input;
+        if (windowed) {
+            this.sprites.setStaticLayer(new StaticLayer(800, 600, BACKGROUND));
+            this.frameBuffer = new FrameBuffer(800, 600, BACKGROUND);
+        } else {
+            this.frameBuffer = null;
+        }
     }
 
     /**
@@ -51,12 +147,26 @@ public class Game {
         environment.addCollidable(c);
     }
 
+    /**
+     * Adds a collidable that moves every tick, such as the paddle, to the game environment.
+     * @param c the Collidable to add
+     */
+    public void addDynamicCollidable(Collidable c) {
+        environment.addDynamicCollidable(c);
+        if (ballScheduler != null) {
+            ballScheduler.watchRow(c);
+        }
+    }
+
     /**
      * Adds a sprite object to the sprite collection.
      * @param s the Sprite to add
      */
     public void addSprite(Sprite s) {
         sprites.addSprite(s);
+        if (ballScheduler != null && !(s instanceof Ball) && !(s instanceof StaticSprite)) {
+            steppedSprites.addSprite(s);
+        }
     }
 
     /**
@@ -64,43 +174,49 @@ public class Game {
      * Sets up the full game state before the animation loop starts.
      */
     public void initialize() {
-        int borderThickness = 20;
+        int borderThickness = BORDER_THICKNESS;
         Color borderColor = Color.GRAY;
+        int width = level == null ? SCREEN_WIDTH : Math.max(SCREEN_WIDTH, level.getWidth());
+        int height = level == null ? SCREEN_HEIGHT : Math.max(SCREEN_HEIGHT, level.getHeight());
+        // The paddle and the balls start at the bottom centre of the world.
+        int dx = (width - SCREEN_WIDTH) / 2;
+        int dy = height - SCREEN_HEIGHT;
 
-        // Initialize counters
-        this.remainingBlocks = new Counter();
-        this.remainingBalls = new Counter();
-        this.score = new Counter();
-
-        // Create listeners
-        BlockRemover blockRemover = new BlockRemover(this, remainingBlocks);
-        BallRemover ballRemover = new BallRemover(this, remainingBalls);
-        ScoreTrackingListener scoreListener = new ScoreTrackingListener(score);
+        if (ballScheduler != null && (width > SCREEN_WIDTH || height > SCREEN_HEIGHT)) {
+            throw new IllegalStateException("an event-driven game cannot stream a level larger than the screen");
+        }
+        this.playArea = playArea(width, height);
+        prepare();
 
         // Create and add border blocks (top, left, right)
-        Block top = new Block(new Rectangle(new Point(0, 0), 800, borderThickness), borderColor);
-        Block left = new Block(new Rectangle(new Point(0, 0), borderThickness, 600), borderColor);
-        Block right = new Block(new Rectangle(new Point(800 - borderThickness, 0), borderThickness, 600), borderColor);
+        Block top = new Block(new Rectangle(new Point(0, 0), width, borderThickness), borderColor);
+        Block left = new Block(new Rectangle(new Point(0, 0), borderThickness, height), borderColor);
+        Block right = new Block(new Rectangle(new Point(width - borderThickness, 0), borderThickness, height),
+                borderColor);
 
-        top.addToGame(this);
-        left.addToGame(this);
-        right.addToGame(this);
+        addWall(top);
+        addWall(left);
+        addWall(right);
 
         // Create and add death-region block
-        Block deathRegion = new Block(new Rectangle(new Point(0, 580), 800, 20), Color.DARK_GRAY);
-        deathRegion.addToGame(this);
-        deathRegion.addHitListener(ballRemover);
+        addDeathRegion(new Block(new Rectangle(new Point(0, height - 20), width, 20), Color.DARK_GRAY));
 
         // Add level blocks and attach both the block remover and score listener
-        addLevelBlocks(this, blockRemover, scoreListener);
+        if (level == null) {
+            addLevelBlocks(this, blockRemover, scoreListener);
+        } else if (width == SCREEN_WIDTH && height == SCREEN_HEIGHT) {
+            addLevel(level);
+        } else {
+            streamLevel(level);
+        }
 
         // Paddle
-        Paddle paddle = new Paddle(new Rectangle(new Point(340, 575), 120, 5), Color.ORANGE,
-                gui.getKeyboardSensor(), 6, 800);
+        Paddle paddle = createPaddle(new Rectangle(new Point(340 + dx, 575 + dy), 120, 5), width);
         paddle.addToGame(this);
+        this.paddle = paddle;
 
         // Ball 1
-        Ball ball1 = new Ball(new Point(300, 400), 5, Color.RED);
+        Ball ball1 = new Ball(new Point(300 + dx, 400 + dy), 5, Color.RED);
         ball1.setVelocity(new Velocity(2, -2));
         ball1.setGameEnvironment(this.environment);
         ball1.setPaddle(paddle);
@@ -108,7 +224,7 @@ public class Game {
         remainingBalls.increase(1);
 
         // Ball 2
-        Ball ball2 = new Ball(new Point(400, 500), 5, Color.PINK);
+        Ball ball2 = new Ball(new Point(400 + dx, 500 + dy), 5, Color.PINK);
         ball2.setVelocity(new Velocity(-2, 2));
         ball2.setGameEnvironment(this.environment);
         ball2.setPaddle(paddle);
@@ -116,61 +232,762 @@ public class Game {
         remainingBalls.increase(1);
 
         // Ball 3
-        Ball ball3 = new Ball(new Point(350, 450), 5, Color.BLUE);
+        Ball ball3 = new Ball(new Point(350 + dx, 450 + dy), 5, Color.BLUE);
         ball3.setVelocity(new Velocity(1, -3));
         ball3.setGameEnvironment(this.environment);
         ball3.setPaddle(paddle);
         ball3.addToGame(this);
         remainingBalls.increase(1);
 
+        addIndicators();
+        if (streamer != null) {
+            updateStreaming();
+        }
+    }
+
+    /**
+     * Rebuilds the game from a snapshot instead of initializing it: the blocks, paddle and
+     * balls are recreated where the snapshot left them, with the usual listeners, and the
+     * score, counters and tick count continue from the snapshot's values.
+     * @param snapshot the state to restore
+     */
+    public void restore(GameSnapshot snapshot) {
+        this.seed = snapshot.seed();
+        this.playArea = playArea(SCREEN_WIDTH, SCREEN_HEIGHT);
+        prepare();
+        this.ticks = snapshot.getTicks();
+        this.score.increase(snapshot.getScore());
+        this.remainingBalls.increase(snapshot.remainingBalls());
+        this.remainingBlocks.increase(snapshot.remainingBlocks());
+
+        Paddle paddle = null;
+        for (int i = 0; i < snapshot.getCollidableCount(); i++) {
+            Rectangle rect = snapshot.rectangle(i);
+            Color color = new Color(snapshot.color(i), true);
+            switch (snapshot.kind(i)) {
+                case GameSnapshot.WALL:
+                    addWall(new Block(rect, color));
+                    break;
+                case GameSnapshot.DEATH_REGION:
+                    addDeathRegion(new Block(rect, color));
+                    break;
+                case GameSnapshot.BLOCK:
+                    Block block = new Block(rect, color);
+                    block.addToGame(this);
+                    hitEvents.subscribe(block.getHitId(), scoreListener);
+                    hitEvents.subscribe(block.getHitId(), blockRemover);
+                    break;
+                case GameSnapshot.PADDLE:
+                    paddle = createPaddle(rect, SCREEN_WIDTH);
+                    paddle.addToGame(this);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown collidable kind " + snapshot.kind(i));
+            }
+        }
+        for (int i = 0; i < snapshot.getBallCount(); i++) {
+            Ball ball = new Ball(snapshot.ballCenter(i), snapshot.ballRadius(i), new Color(snapshot.ballColor(i), true));
+            ball.setVelocity(snapshot.ballVelocity(i));
+            ball.setGameEnvironment(this.environment);
+            ball.setPaddle(paddle);
+            ball.addToGame(this);
+        }
+        this.paddle = paddle;
+
+        addIndicators();
+    }
+
+    /**
+     * Captures the current state of the game: every collidable in the order it was added,
+     * every ball, the counters and the tick count. Restoring the snapshot gives a game
+     * that plays on exactly like this one from here. Games of levels larger than the
+     * screen cannot be captured, since most of their blocks are not loaded.
+     * @return the snapshot
+     */
+    public GameSnapshot snapshot() {
+        if (streamer != null) {
+            throw new IllegalStateException("cannot snapshot a streamed level");
+        }
+        GameSnapshot snapshot = new GameSnapshot(seed, ticks, score.getValue(),
+                remainingBalls.getValue(), remainingBlocks.getValue());
+        for (Collidable c : environment.getCollidables()) {
+            if (c instanceof Paddle) {
+                snapshot.addCollidable(GameSnapshot.PADDLE, c.getCollisionRectangle(),
+                        ((Paddle) c).getColor().getRGB());
+            } else if (c instanceof Block) {
+                Block block = (Block) c;
+                byte kind = block == deathRegion ? GameSnapshot.DEATH_REGION
+                        : walls.contains(block) ? GameSnapshot.WALL : GameSnapshot.BLOCK;
+                snapshot.addCollidable(kind, block.getCollisionRectangle(), block.getColor().getRGB());
+            } else {
+                throw new IllegalStateException("cannot snapshot collidable " + c);
+            }
+        }
+        for (Sprite s : getSprites()) {
+            if (s instanceof Ball) {
+                Ball ball = (Ball) s;
+                snapshot.addBall(ball.getCenter(), ball.getVelocity(), ball.getSize(), ball.getColor().getRGB());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Starts recording if asked to and creates the counters and the listeners that
+     * update them. The first step of both initialize and restore.
+     */
+    private void prepare() {
+        if (remainingBlocks != null) {
+            throw new IllegalStateException("the game is already set up");
+        }
+        if (input instanceof GameAwareInput) {
+            ((GameAwareInput) input).attach(this);
+        }
+        if (recordingFile != null) {
+            this.recorder = new InputRecorder(input, seed);
+            this.input = recorder;
+            if (level != null) {
+                if (level.getSource() == null) {
+                    throw new IllegalStateException("only a level read from a file can be recorded");
+                }
+                recorder.getRecording().setLevel(level.getSource().toString(), level.contentHash());
+            }
+        }
+
+        // Initialize counters
+        this.remainingBlocks = new Counter();
+        this.remainingBalls = new Counter();
+        this.score = new Counter();
+
+        // Create listeners
+        this.blockRemover = new BlockRemover(this, remainingBlocks);
+        this.ballRemover = new BallRemover(this, remainingBalls);
+        this.scoreListener = new ScoreTrackingListener(score);
+    }
+
+    /**
+     * Returns the area inside the walls and above the death region of a world of the given size.
+     */
+    private static Rectangle playArea(int width, int height) {
+        return new Rectangle(new Point(BORDER_THICKNESS, BORDER_THICKNESS), width - 2 * BORDER_THICKNESS,
+                height - 2 * BORDER_THICKNESS);
+    }
+
+    private void addLevel(LevelFile layout) {
+        for (int i = 0; i < layout.getBlockCount(); i++) {
+            Block block = layout.createBlock(i);
+            if (layout.isDestructible(i)) {
+                block.addToGame(this);
+                hitEvents.subscribe(block.getHitId(), scoreListener);
+                hitEvents.subscribe(block.getHitId(), blockRemover);
+                remainingBlocks.increase(1);
+            } else {
+                addWall(block);
+            }
+        }
+    }
+
+    /**
+     * Sets up a level larger than the screen: a camera that follows the play, and a
+     * streamer that only keeps the chunks around the camera and the balls loaded.
+     * Every destructible block counts as remaining from the start, loaded or not.
+     */
+    private void streamLevel(LevelFile layout) {
+        for (int i = 0; i < layout.getBlockCount(); i++) {
+            if (layout.isDestructible(i)) {
+                remainingBlocks.increase(1);
+            }
+        }
+        this.camera = new Camera(SCREEN_WIDTH, SCREEN_HEIGHT,
+                Math.max(SCREEN_WIDTH, layout.getWidth()), Math.max(SCREEN_HEIGHT, layout.getHeight()));
+        // Background prefetching keeps the window smooth; headless games have no frames to keep smooth.
+        this.streamer = new LevelStreamer(layout, new StreamedBlocks(), CHUNK_SIZE, gui != null);
+        // The camera moves over the world, which the static layer and frame buffer cannot follow.
+        sprites.setStaticLayer(null);
+    }
+
+    /**
+     * Moves the camera to the paddle and the balls, and loads the chunks that are around
+     * the camera or close enough to a ball that it can reach them in the next tick.
+     */
+    private void updateStreaming() {
+        // Loading adds sprites, so the balls are collected before any chunk is loaded.
+        streamedBalls.clear();
+        for (Sprite s : sprites.getSprites()) {
+            if (s instanceof Ball) {
+                streamedBalls.add((Ball) s);
+            }
+        }
+        double sumY = 0;
+        streamer.beginUpdate();
+        for (Ball ball : streamedBalls) {
+            Point c = ball.getCenter();
+            double reach = ball.getSize() + STREAM_MARGIN;
+            streamer.require(c.getX() - reach, c.getY() - reach, c.getX() + reach, c.getY() + reach);
+            streamer.prefetch(c.getX() - CHUNK_SIZE, c.getY() - CHUNK_SIZE,
+                    c.getX() + CHUNK_SIZE, c.getY() + CHUNK_SIZE);
+            sumY += c.getY();
+        }
+        Rectangle p = paddle.getCollisionRectangle();
+        camera.follow(p.getUpperLeft().getX() + p.getWidth() / 2,
+                streamedBalls.isEmpty() ? p.getUpperLeft().getY() : sumY / streamedBalls.size());
+        double left = camera.getX();
+        double top = camera.getY();
+        streamer.require(left, top, left + camera.getWidth(), top + camera.getHeight());
+        streamer.prefetch(left - CHUNK_SIZE, top - CHUNK_SIZE,
+                left + camera.getWidth() + CHUNK_SIZE, top + camera.getHeight() + CHUNK_SIZE);
+        streamer.endUpdate();
+    }
+
+    /**
+     * Returns the streamer of a level larger than the screen.
+     * @return the level streamer, or null if the whole level is loaded
+     */
+    public LevelStreamer getLevelStreamer() {
+        return streamer;
+    }
+
+    /**
+     * Returns the camera the world is drawn through when the level is larger than the screen.
+     * @return the camera, or null if the world fits on the screen
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    private void addWall(Block wall) {
+        wall.addToGame(this);
+        walls.add(wall);
+    }
+
+    private void addDeathRegion(Block region) {
+        region.addToGame(this);
+        hitEvents.subscribe(region.getHitId(), ballRemover);
+        this.deathRegion = region;
+    }
+
+    private Paddle createPaddle(Rectangle rect, int worldWidth) {
+        return new Paddle(rect, Color.ORANGE, input, 6, worldWidth);
+    }
+
+    /**
+     * Adds the score indicator and, when there is a window, the performance overlay.
+     */
+    private void addIndicators() {
         // Score indicator at top of screen
         ScoreIndicator scoreIndicator = new ScoreIndicator(score);
         this.addSprite(scoreIndicator);
+
+        // Performance overlay, toggled with the "p" key
+        if (gui != null) {
+            this.addSprite(new PerformanceOverlay(frameStats, gui.getKeyboardSensor()));
+        }
+    }
+
+
+
+
+
+
+    /**
+     * Sets how many simulation ticks run per second of real time.
+     * @param ticksPerSecond the tick rate, 60 by default
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("tick rate must be positive: " + ticksPerSecond);
+        }
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    /**
+     * Sets how many frames per second are drawn, independently of the tick rate.
+     * @param framesPerSecond the frame rate, 60 by default
+     */
+    public void setFrameRate(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("frame rate must be positive: " + framesPerSecond);
+        }
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Sets the most ticks run to catch up before a frame is drawn. When the game falls
+     * further behind than that, the extra time is dropped and the game slows down
+     * instead of spending ever longer catching up.
+     * @param maxCatchUpTicks the catch-up cap, 5 by default
+     */
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        if (maxCatchUpTicks <= 0) {
+            throw new IllegalArgumentException("catch-up cap must be positive: " + maxCatchUpTicks);
+        }
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Sets the CSV file the frame timing histograms are written to when the game ends.
+     * @param file the file to write, or null to not write one
+     */
+    public void setTimingsFile(Path file) {
+        this.timingsFile = file;
+    }
+
+    /**
+     * Sets the seed of the level. The standard level is laid out the same way every time,
+     * so the seed is currently only carried into input recordings, letting a replay tell
+     * which level variant it belongs to.
+     * @param seed the level seed, 0 by default
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the seed of the level.
+     * @return the level seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Records the paddle input of every tick and writes it to the given file when the
+     * game ends, so the game can be replayed exactly. Must be called before initialize.
+     * @param file the recording file
+     */
+    public void setRecordingFile(Path file) {
+        if (remainingBlocks != null) {
+            throw new IllegalStateException("recording must start before the game is initialized");
+        }
+        this.recordingFile = file;
+    }
+
+    /**
+     * Plays the given level instead of the built-in one. Its blocks are added after the
+     * borders and the death region. Must be called before the game is initialized.
+     * @param layout the level to play
+     */
+    public void setLevel(LevelFile layout) {
+        if (remainingBlocks != null) {
+            throw new IllegalStateException("the level must be set before the game is initialized");
+        }
+        this.level = layout;
+    }
+
+    /**
+     * Turns collisions between balls on or off. Balls pass through each other by default.
+     * Must be called before the game is initialized.
+     * @param enabled whether balls bounce off each other
+     */
+    public void setBallCollisions(boolean enabled) {
+        if (remainingBlocks != null) {
+            throw new IllegalStateException("ball collisions must be set before the game is initialized");
+        }
+        if (enabled && ballScheduler != null) {
+            throw new IllegalStateException("an event-driven game cannot have ball collisions");
+        }
+        this.ballCollider = enabled ? new BallCollider() : null;
+    }
+
+    /**
+     * Sets how many hits every ball handles within one tick. With one, the default, a ball
+     * stops at the first thing it touches and moves on next tick; with more, it goes on
+     * along its new path for the rest of the tick after each hit, so balls many times
+     * faster than usual keep their speed and stay inside the playfield. A handful of hits
+     * is enough, since every hit but the last moves the ball on. Must be called before the
+     * game is initialized.
+     * @param hits the most hits per ball per tick, at least 1
+     */
+    public void setMaxHitsPerTick(int hits) {
+        if (remainingBlocks != null) {
+            throw new IllegalStateException("the hits per tick must be set before the game is initialized");
+        }
+        if (hits < 1) {
+            throw new IllegalArgumentException("a ball must handle at least one hit per tick: " + hits);
+        }
+        this.maxHitsPerTick = hits;
     }
 
+    /**
+     * Returns how many hits every ball handles within one tick.
+     * @return the most hits per ball per tick
+     */
+    public int getMaxHitsPerTick() {
+        return maxHitsPerTick;
+    }
+
+    /**
+     * Makes a headless game move its balls from event to event with a BallScheduler
+     * instead of stepping every ball every tick. Every tick is still walked: the paddle and
+     * the hit listeners run every tick, and every hit is handled the same way; only the
+     * straight flights between hits are skipped, which makes games with few balls and few
+     * hits much faster to simulate. Only when the paddle input is {@link InputProvider#IDLE}
+     * does {@link #step(int)} jump straight from one event to the next. Ball positions can
+     * drift from those of a stepped game by rounding errors, so the two are not guaranteed
+     * to play out identically; {@code ant bench-events} counts the games that differ.
+     *
+     * <p>{@link #getSprites()} moves every ball to where it is now, which is the work of a
+     * stepped game, so an input that looks at the balls every tick reads them through
+     * {@link #peekSprites()} and {@link #getBallTick(Ball)} instead, as TrajectoryInput
+     * does. Even so, such a bot costs about as much per tick as the balls it spares, so
+     * bot-played games gain far less than idle or random ones: about 1.4x against 4x in
+     * {@code ant bench-events}.</p>
+     *
+     * <p>Must be called before the game is initialized. Event-driven games cannot have ball
+     * collisions or stream levels larger than the screen.</p>
+     * @param enabled whether the balls are moved from event to event
+     */
+    public void setEventDriven(boolean enabled) {
+        if (remainingBlocks != null) {
+            throw new IllegalStateException("event-driven mode must be set before the game is initialized");
+        }
+        if (enabled && (gui != null || ballCollider != null)) {
+            throw new IllegalStateException("only headless games without ball collisions can be event-driven");
+        }
+        this.ballScheduler = enabled ? new BallScheduler(environment) : null;
+    }
 
+    /**
+     * Returns the scheduler that moves the balls of an event-driven game.
+     * @return the ball scheduler, or null if every ball is stepped every tick
+     */
+    public BallScheduler getBallScheduler() {
+        return ballScheduler;
+    }
 
+    /**
+     * Returns the collider that makes balls bounce off each other.
+     * @return the ball collider, or null if ball collisions are off
+     */
+    public BallCollider getBallCollider() {
+        return ballCollider;
+    }
 
+    /**
+     * Returns the block at the bottom of the world that takes the balls that touch it out
+     * of play.
+     * @return the death region, or null before the game is initialized
+     */
+    public Block getDeathRegion() {
+        return deathRegion;
+    }
 
+    /**
+     * Returns the timing statistics of the game loop.
+     * @return the frame statistics, or null for a headless game
+     */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
 
     /**
      * Starts the animation loop that continuously draws and updates the game.
-     * The game runs at 60 frames per second using a Sleeper.
+     *
+     * <p>The simulation advances in fixed ticks measured with System.nanoTime: real time
+     * is accumulated and consumed one tick at a time, so the game keeps its speed when a
+     * frame takes longer to draw. Frames are drawn at their own rate, interpolated between
+     * the last two ticks.</p>
+     *
+     * <p>The tick, draw and show phases are timed into the game's FrameStats, which the
+     * performance overlay shows and which are written to the timings file at the end.</p>
      */
     public void run() {
-        int framesPerSecond = 60;
-        int millisecondsPerFrame = 1000 / framesPerSecond;
-        biuoop.Sleeper sleeper = new biuoop.Sleeper();
+        if (gui == null) {
+            throw new IllegalStateException("a headless game has no window to run in; use step()");
+        }
+        long nanosPerTick = 1000000000L / ticksPerSecond;
+        long nanosPerFrame = 1000000000L / framesPerSecond;
+        long previous = System.nanoTime();
+        long nextFrame = previous;
+        long accumulator = 0;
 
-        while (this.remainingBlocks.getValue() > 0 && this.remainingBalls.getValue() > 0) {
-            long startTime = System.currentTimeMillis();
+        while (!isOver()) {
+            long now = System.nanoTime();
+            frameStats.frameStarted(now);
+            accumulator += now - previous;
+            previous = now;
 
-            DrawSurface d = gui.getDrawSurface();
+            // Run the ticks that are due, but never more than the catch-up cap.
+            int caughtUp = 0;
+            while (accumulator >= nanosPerTick && caughtUp < maxCatchUpTicks && !isOver()) {
+                long tickStart = System.nanoTime();
+                tick();
+                frameStats.record(FrameStats.Phase.TICK, System.nanoTime() - tickStart);
+                accumulator -= nanosPerTick;
+                caughtUp++;
+            }
+            if (accumulator >= nanosPerTick) {
+                frameStats.ticksDropped(accumulator / nanosPerTick);
+                accumulator %= nanosPerTick;
+            }
 
-            // Draw all sprites
-            this.sprites.drawAllOn(d);
+            // Redraw what changed, part of the way into the next tick, and present the frame
+            long drawStart = System.nanoTime();
+            DrawSurface d = gui.getDrawSurface();
+            if (camera == null) {
+                this.sprites.drawDirtyOn(frameBuffer, (double) accumulator / nanosPerTick);
+                frameBuffer.drawOn(d);
+                frameStats.recordPixelsDrawn(frameBuffer.getPixelsTouched());
+            } else {
+                d.setColor(BACKGROUND);
+                d.fillRectangle(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+                this.sprites.drawAllOn(d, (double) accumulator / nanosPerTick, camera);
+                frameStats.recordPixelsDrawn((long) SCREEN_WIDTH * SCREEN_HEIGHT);
+            }
+            long showStart = System.nanoTime();
             gui.show(d);
+            long shown = System.nanoTime();
+            frameStats.record(FrameStats.Phase.DRAW, showStart - drawStart);
+            frameStats.record(FrameStats.Phase.SHOW, shown - showStart);
 
-            // Notify all sprites that time passed
+            nextFrame += nanosPerFrame;
+            long wait = nextFrame - shown;
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                frameStats.frameDropped();
+                nextFrame = shown;
+            }
+        }
+
+        finish();
+        writeTimings();
+        writeRecording();
+        if (streamer != null) {
+            streamer.close();
+        }
+
+        // Close GUI
+        gui.close();
+    }
+
+    /**
+     * Loads the level around the play when it is streamed, moves every sprite one tick,
+     * hands the hits of the tick to the listeners, then separates the balls that ran into
+     * each other.
+     */
+    private void tick() {
+        if (streamer != null) {
+            updateStreaming();
+        }
+        hitEvents.beginTick(ticks);
+        if (ballScheduler == null) {
             this.sprites.notifyAllTimePassed();
+        } else {
+            steppedSprites.notifyAllTimePassed();
+            ballScheduler.advance(ticks);
+        }
+        hitEvents.dispatch();
+        if (ballCollider != null) {
+            ballCollider.resolve();
+        }
+        ticks++;
+    }
 
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
+    /**
+     * Advances the game by up to n ticks without drawing or sleeping.
+     * Stops early if the game ends. An event-driven game whose paddle input is
+     * {@link InputProvider#IDLE} jumps straight over the ticks in which no ball is due,
+     * since nothing at all happens in them.
+     * @param n the maximum number of ticks to advance
+     * @return the number of ticks actually advanced
+     */
+    public int step(int n) {
+        int done = 0;
+        while (done < n && !isOver()) {
+            if (ballScheduler != null && input == InputProvider.IDLE) {
+                long idle = Math.min(ballScheduler.nextEvent() - ticks, n - done);
+                if (idle > 0) {
+                    ticks += idle;
+                    done += (int) idle;
+                    continue;
+                }
             }
+            tick();
+            done++;
+        }
+        return done;
+    }
+
+    /**
+     * Steps a headless game as fast as possible until it ends or reaches the tick limit,
+     * then prints the outcome and the simulation speed in ticks per second.
+     * @param maxTicks the maximum number of ticks to simulate
+     */
+    public void runHeadless(int maxTicks) {
+        long start = System.nanoTime();
+        int done = step(maxTicks);
+        long elapsed = System.nanoTime() - start;
+        finish();
+        writeRecording();
+        double seconds = elapsed / 1e9;
+        System.out.printf("Simulated %d ticks in %.3f s (%.0f ticks/s)%n",
+                done, seconds, done / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Checks whether the game has ended, either because all blocks or all balls are gone.
+     * @return true if the game is over
+     */
+    public boolean isOver() {
+        return this.remainingBlocks.getValue() <= 0 || this.remainingBalls.getValue() <= 0;
+    }
+
+    /**
+     * Returns the number of ticks the game has advanced so far.
+     * @return the tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Writes the frame timing histograms to the timings file, if there is one.
+     */
+    private void writeTimings() {
+        if (timingsFile == null) {
+            return;
+        }
+        try {
+            frameStats.writeCsv(timingsFile);
+            System.out.println("Frame timings written to " + timingsFile);
+        } catch (IOException e) {
+            System.err.println("Could not write frame timings to " + timingsFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the input recording to the recording file, if the game is being recorded.
+     */
+    private void writeRecording() {
+        if (recorder == null) {
+            return;
         }
+        try {
+            recorder.getRecording().write(recordingFile);
+            System.out.println("Input recorded to " + recordingFile);
+        } catch (IOException e) {
+            System.err.println("Could not write input recording to " + recordingFile + ": " + e.getMessage());
+        }
+    }
 
+    /**
+     * Ends the game: awards the bonus for clearing all blocks. Ending it again does nothing.
+     */
+    public void end() {
+        if (ended) {
+            return;
+        }
+        ended = true;
         // Award +100 score bonus for clearing all blocks
-        if (this.remainingBlocks.getValue() == 0) {
+        if (isWon()) {
             this.score.increase(100);
+        }
+    }
+
+    /**
+     * Checks whether the player cleared all blocks.
+     * @return true if no blocks are left
+     */
+    public boolean isWon() {
+        return this.remainingBlocks.getValue() <= 0;
+    }
+
+    /**
+     * Returns the current score, including the bonus once the game has ended.
+     * @return the score
+     */
+    public int getScore() {
+        return this.score.getValue();
+    }
+
+    /**
+     * Returns the number of balls still in play.
+     * @return the remaining ball count
+     */
+    public int getRemainingBalls() {
+        return this.remainingBalls.getValue();
+    }
+
+    /**
+     * Returns the number of destructible blocks not destroyed yet.
+     * @return the remaining block count
+     */
+    public int getRemainingBlocks() {
+        return this.remainingBlocks.getValue();
+    }
+
+    /**
+     * Returns the paddle.
+     * @return the paddle, or null before the game is set up
+     */
+    public Paddle getPaddle() {
+        return paddle;
+    }
+
+    /**
+     * Returns the area the balls move in: inside the top, left and right walls and above
+     * the death region.
+     * @return the play area, or null before the game is set up
+     */
+    public Rectangle getPlayArea() {
+        return playArea;
+    }
+
+    /**
+     * Returns the sprites of the game in the order they were added. In an event-driven
+     * game the balls are first moved to where they are now.
+     * @return a read-only view of the sprites
+     */
+    public List<Sprite> getSprites() {
+        if (ballScheduler != null) {
+            ballScheduler.sync(ticks);
+        }
+        return sprites.getSprites();
+    }
+
+    /**
+     * Returns the sprites of the game like {@link #getSprites()}, but without moving the
+     * balls of an event-driven game first, so reading them costs nothing extra. A ball's
+     * centre is then where it was at the start of {@link #getBallTick(Ball)}.
+     * @return a read-only view of the sprites
+     */
+    public List<Sprite> peekSprites() {
+        return sprites.getSprites();
+    }
+
+    /**
+     * Returns the tick a ball's centre is for when read through {@link #peekSprites()}.
+     * From there the ball flies in a straight line at its velocity until its next hit, so
+     * its centre now is its velocity times the ticks since then further on.
+     * @param ball a ball of the game
+     * @return the tick the ball was last moved to, or the current tick in a game that
+     *         steps every ball every tick
+     */
+    public long getBallTick(Ball ball) {
+        long at = ballScheduler == null ? -1 : ballScheduler.getPositionTick(ball);
+        return at < 0 ? ticks : at;
+    }
+
+    /**
+     * Checks whether the given collidable is still part of the game.
+     * @param c the collidable to look for
+     * @return true if it was added and not removed since
+     */
+    public boolean containsCollidable(Collidable c) {
+        return environment.contains(c);
+    }
+
+    /**
+     * Ends the game and prints the outcome.
+     */
+    private void finish() {
+        end();
+        if (isWon()) {
             System.out.println("You Win!\nYour score is: " + this.score.getValue());
         } else {
             System.out.println("Game Over.\nYour score is: " + this.score.getValue());
         }
-
-        // Close GUI
-        gui.close();
     }
 
 
@@ -184,7 +1001,7 @@ public class Game {
      * @param remover will remove it
      * @param scorer will add it to the score
      */
-    public void addLevelBlocks(Game game, HitListener remover, HitListener scorer) {
+    public void addLevelBlocks(Game game, HitBatchListener remover, HitBatchListener scorer) {
         int startY = 100;
         int rows = 6;
         int blocksPerRow = 12;
@@ -205,12 +1022,20 @@ public class Game {
                 Rectangle rect = new Rectangle(new Point(x, y), blockWidth, blockHeight);
                 Block block = new Block(rect, color);
                 block.addToGame(game);
-                block.addHitListener(scorer);
-                block.addHitListener(remover);
-                remainingBlocks.increase(1);
+                game.getHitEvents().subscribe(block.getHitId(), scorer);
+                game.getHitEvents().subscribe(block.getHitId(), remover);
+                game.remainingBlocks.increase(1);
             }
         }
     }
+    /**
+     * Returns the queue the hits of every tick are recorded in and dispatched from.
+     * @return the game's hit event queue
+     */
+    public HitEventQueue getHitEvents() {
+        return hitEvents;
+    }
+
     /**
      * Removes the given collidable from the game environment.
      * @param c the collidable to remove
@@ -219,14 +1044,50 @@ public class Game {
         this.environment.removeCollidable(c);
     }
 
+    /**
+     * Tells the game environment that the given collidable moved.
+     * @param c the collidable whose collision rectangle changed
+     */
+    public void updateCollidable(Collidable c) {
+        this.environment.updateCollidable(c);
+    }
+
     /**
      * Removes the given sprite from the game's sprite collection.
      * @param s the sprite to remove
      */
     public void removeSprite(Sprite s) {
         this.sprites.removeSprite(s);
+        if (ballScheduler != null && !(s instanceof Ball) && !(s instanceof StaticSprite)) {
+            steppedSprites.removeSprite(s);
+        }
     }
 
+    /**
+     * Loads streamed blocks into the game like the blocks of a level that fits on the
+     * screen, and frees their hit queue ids again when they are evicted.
+     */
+    private final class StreamedBlocks implements ChunkHost {
+        @Override
+        public void addBlock(Block block, boolean destructible) {
+            if (destructible) {
+                block.addToGame(Game.this);
+                hitEvents.subscribe(block.getHitId(), scoreListener);
+                hitEvents.subscribe(block.getHitId(), blockRemover);
+            } else {
+                addWall(block);
+            }
+        }
 
+        @Override
+        public boolean removeBlock(Block block) {
+            boolean inPlay = environment.contains(block);
+            if (inPlay) {
+                block.removeFromGame(Game.this);
+                walls.remove(block);
+            }
+            block.leaveHitEventQueue();
+            return inPlay;
+        }
+    }
 }
-
@@ -0,0 +1,252 @@
+package core;
+
+import geometry.Point;
+import geometry.Rectangle;
+import sprites.Velocity;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A GameSnapshot is the complete state of a Game at the end of a tick: every collidable
+ * and ball, the counters and the tick count. It is taken with {@link Game#snapshot()},
+ * restored with {@link Game#restore(GameSnapshot)} and saved to a versioned binary file.
+ *
+ * <p>The file is a fixed header followed by one fixed-size record per collidable and per
+ * ball, all big-endian. Coordinates are kept as doubles so a restored game continues
+ * bit-for-bit like the original. Files are written with a single FileChannel write and
+ * read through a memory-mapped buffer, so a level with 100,000 blocks takes milliseconds.</p>
+ */
+public class GameSnapshot {
+    static final byte WALL = 0;
+    static final byte DEATH_REGION = 1;
+    static final byte BLOCK = 2;
+    static final byte PADDLE = 3;
+
+    private static final int MAGIC = 0x41524B53;
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 8 + 4 * 3 + 4 * 2;
+    private static final int COLLIDABLE_BYTES = 1 + 8 * 4 + 4;
+    private static final int BALL_BYTES = 8 * 4 + 4 + 4;
+
+    private final long seed;
+    private final long ticks;
+    private final int score;
+    private final int remainingBalls;
+    private final int remainingBlocks;
+
+    private int collidables;
+    private byte[] kinds = new byte[64];
+    private double[] rectangles = new double[64 * 4];
+    private int[] colors = new int[64];
+
+    private int balls;
+    private double[] ballStates = new double[4 * 4];
+    private int[] ballRadii = new int[4];
+    private int[] ballColors = new int[4];
+
+    /**
+     * Constructs a snapshot with no collidables or balls yet.
+     */
+    GameSnapshot(long seed, long ticks, int score, int remainingBalls, int remainingBlocks) {
+        this.seed = seed;
+        this.ticks = ticks;
+        this.score = score;
+        this.remainingBalls = remainingBalls;
+        this.remainingBlocks = remainingBlocks;
+    }
+
+    /**
+     * Returns the tick count of the game when the snapshot was taken.
+     * @return the tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the score of the game when the snapshot was taken.
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the number of collidables in the snapshot, including walls and the paddle.
+     * @return the collidable count
+     */
+    public int getCollidableCount() {
+        return collidables;
+    }
+
+    /**
+     * Returns the number of balls in the snapshot.
+     * @return the ball count
+     */
+    public int getBallCount() {
+        return balls;
+    }
+
+    /**
+     * Writes the snapshot to the given file, replacing it.
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_BYTES + collidables * COLLIDABLE_BYTES
+                + balls * BALL_BYTES);
+        buffer.putInt(MAGIC).putShort(VERSION).putLong(seed).putLong(ticks)
+                .putInt(score).putInt(remainingBalls).putInt(remainingBlocks)
+                .putInt(collidables).putInt(balls);
+        for (int i = 0; i < collidables; i++) {
+            buffer.put(kinds[i]);
+            for (int k = 0; k < 4; k++) {
+                buffer.putDouble(rectangles[i * 4 + k]);
+            }
+            buffer.putInt(colors[i]);
+        }
+        for (int i = 0; i < balls; i++) {
+            for (int k = 0; k < 4; k++) {
+                buffer.putDouble(ballStates[i * 4 + k]);
+            }
+            buffer.putInt(ballRadii[i]).putInt(ballColors[i]);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(Path)}.
+     * @param file the file to read
+     * @return the snapshot
+     * @throws IOException if reading fails or the file is not a snapshot this version understands
+     */
+    public static GameSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a game snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported snapshot version " + version);
+            }
+            GameSnapshot snapshot = new GameSnapshot(buffer.getLong(), buffer.getLong(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt());
+            int collidableCount = buffer.getInt();
+            int ballCount = buffer.getInt();
+            if (collidableCount < 0 || ballCount < 0 || buffer.remaining()
+                    != (long) collidableCount * COLLIDABLE_BYTES + (long) ballCount * BALL_BYTES) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            snapshot.kinds = new byte[collidableCount];
+            snapshot.rectangles = new double[collidableCount * 4];
+            snapshot.colors = new int[collidableCount];
+            for (int i = 0; i < collidableCount; i++) {
+                snapshot.kinds[i] = buffer.get();
+                for (int k = 0; k < 4; k++) {
+                    snapshot.rectangles[i * 4 + k] = buffer.getDouble();
+                }
+                snapshot.colors[i] = buffer.getInt();
+            }
+            snapshot.collidables = collidableCount;
+            snapshot.ballStates = new double[ballCount * 4];
+            snapshot.ballRadii = new int[ballCount];
+            snapshot.ballColors = new int[ballCount];
+            for (int i = 0; i < ballCount; i++) {
+                for (int k = 0; k < 4; k++) {
+                    snapshot.ballStates[i * 4 + k] = buffer.getDouble();
+                }
+                snapshot.ballRadii[i] = buffer.getInt();
+                snapshot.ballColors[i] = buffer.getInt();
+            }
+            snapshot.balls = ballCount;
+            return snapshot;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    void addCollidable(byte kind, Rectangle rect, int color) {
+        if (collidables == kinds.length) {
+            kinds = Arrays.copyOf(kinds, collidables * 2);
+            rectangles = Arrays.copyOf(rectangles, collidables * 2 * 4);
+            colors = Arrays.copyOf(colors, collidables * 2);
+        }
+        kinds[collidables] = kind;
+        rectangles[collidables * 4] = rect.getUpperLeft().getX();
+        rectangles[collidables * 4 + 1] = rect.getUpperLeft().getY();
+        rectangles[collidables * 4 + 2] = rect.getWidth();
+        rectangles[collidables * 4 + 3] = rect.getHeight();
+        colors[collidables] = color;
+        collidables++;
+    }
+
+    void addBall(Point center, Velocity velocity, int radius, int color) {
+        if (balls == ballRadii.length) {
+            ballStates = Arrays.copyOf(ballStates, balls * 2 * 4);
+            ballRadii = Arrays.copyOf(ballRadii, balls * 2);
+            ballColors = Arrays.copyOf(ballColors, balls * 2);
+        }
+        ballStates[balls * 4] = center.getX();
+        ballStates[balls * 4 + 1] = center.getY();
+        ballStates[balls * 4 + 2] = velocity.getDx();
+        ballStates[balls * 4 + 3] = velocity.getDy();
+        ballRadii[balls] = radius;
+        ballColors[balls] = color;
+        balls++;
+    }
+
+    long seed() {
+        return seed;
+    }
+
+    int remainingBalls() {
+        return remainingBalls;
+    }
+
+    int remainingBlocks() {
+        return remainingBlocks;
+    }
+
+    byte kind(int i) {
+        return kinds[i];
+    }
+
+    Rectangle rectangle(int i) {
+        return new Rectangle(new Point(rectangles[i * 4], rectangles[i * 4 + 1]),
+                rectangles[i * 4 + 2], rectangles[i * 4 + 3]);
+    }
+
+    int color(int i) {
+        return colors[i];
+    }
+
+    Point ballCenter(int i) {
+        return new Point(ballStates[i * 4], ballStates[i * 4 + 1]);
+    }
+
+    Velocity ballVelocity(int i) {
+        return new Velocity(ballStates[i * 4 + 2], ballStates[i * 4 + 3]);
+    }
+
+    int ballRadius(int i) {
+        return ballRadii[i];
+    }
+
+    int ballColor(int i) {
+        return ballColors[i];
+    }
+}
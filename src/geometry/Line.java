@@ -36,6 +36,13 @@ public class Line {
         return start;
     }
 
+    /**
+     * @return the end point of the line.
+     */
+    public Point getEnd() {
+        return end;
+    }
+
     /**
      * @return a copy of the start point
      */
@@ -0,0 +1,211 @@
+package graphics;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * A Camera is the window of the screen onto a world that can be larger than the screen.
+ * Sprites keep drawing in world coordinates; the surface returned by
+ * {@link #project(DrawSurface)} shifts everything drawn on it by the camera position, so
+ * what is inside the viewport lands on the screen.
+ *
+ * <p>The camera never shows anything outside the world: when the world is larger than the
+ * viewport the position is clamped to it, and when it is smaller the world is pinned to
+ * the upper-left corner of the screen.</p>
+ */
+public class Camera {
+    private final int viewWidth;
+    private final int viewHeight;
+    private final int worldWidth;
+    private final int worldHeight;
+    private final TranslatedDrawSurface projected = new TranslatedDrawSurface();
+    private double x;
+    private double y;
+
+    /**
+     * Constructs a camera in the upper-left corner of the world.
+     * @param viewWidth   the width of the viewport, usually the screen width
+     * @param viewHeight  the height of the viewport, usually the screen height
+     * @param worldWidth  the width of the world
+     * @param worldHeight the height of the world
+     */
+    public Camera(int viewWidth, int viewHeight, int worldWidth, int worldHeight) {
+        if (viewWidth <= 0 || viewHeight <= 0 || worldWidth <= 0 || worldHeight <= 0) {
+            throw new IllegalArgumentException("camera and world sizes must be positive");
+        }
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+    }
+
+    /**
+     * Returns the world x coordinate of the left edge of the viewport.
+     * @return the left edge
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Returns the world y coordinate of the top edge of the viewport.
+     * @return the top edge
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Returns the width of the viewport.
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return viewWidth;
+    }
+
+    /**
+     * Returns the height of the viewport.
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return viewHeight;
+    }
+
+    /**
+     * Moves the viewport so its upper-left corner is at the given world point, as far as
+     * the world allows.
+     * @param left the world x coordinate for the left edge
+     * @param top  the world y coordinate for the top edge
+     */
+    public void moveTo(double left, double top) {
+        this.x = Math.max(0, Math.min(left, worldWidth - viewWidth));
+        this.y = Math.max(0, Math.min(top, worldHeight - viewHeight));
+    }
+
+    /**
+     * Centres the viewport on the given world point, as far as the world allows.
+     * @param centerX the world x coordinate to centre on
+     * @param centerY the world y coordinate to centre on
+     */
+    public void follow(double centerX, double centerY) {
+        moveTo(centerX - viewWidth / 2.0, centerY - viewHeight / 2.0);
+    }
+
+    /**
+     * Checks whether the given world box is at least partly inside the viewport.
+     * @param minX the left edge of the box
+     * @param minY the top edge of the box
+     * @param maxX the right edge of the box
+     * @param maxY the bottom edge of the box
+     * @return true if the box and the viewport overlap
+     */
+    public boolean isVisible(double minX, double minY, double maxX, double maxY) {
+        return maxX >= x && minX <= x + viewWidth && maxY >= y && minY <= y + viewHeight;
+    }
+
+    /**
+     * Returns a surface that draws world coordinates onto the given screen surface through
+     * this camera. The surface is reused: it always draws onto the screen surface of the
+     * latest call, at the camera position of the time of drawing.
+     * @param screen the surface of the screen
+     * @return the surface to draw the world on
+     */
+    public DrawSurface project(DrawSurface screen) {
+        projected.target = screen;
+        return projected;
+    }
+
+    /**
+     * Draws on another surface with every coordinate shifted by the camera position.
+     */
+    private final class TranslatedDrawSurface implements DrawSurface {
+        private DrawSurface target;
+
+        private int dx() {
+            return (int) Math.floor(x);
+        }
+
+        private int dy() {
+            return (int) Math.floor(y);
+        }
+
+        @Override
+        public int getWidth() {
+            return viewWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return viewHeight;
+        }
+
+        @Override
+        public void setColor(Color c) {
+            target.setColor(c);
+        }
+
+        @Override
+        public void drawLine(int x1, int y1, int x2, int y2) {
+            target.drawLine(x1 - dx(), y1 - dy(), x2 - dx(), y2 - dy());
+        }
+
+        @Override
+        public void drawOval(int ox, int oy, int w, int h) {
+            target.drawOval(ox - dx(), oy - dy(), w, h);
+        }
+
+        @Override
+        public void fillOval(int ox, int oy, int w, int h) {
+            target.fillOval(ox - dx(), oy - dy(), w, h);
+        }
+
+        @Override
+        public void drawRectangle(int rx, int ry, int w, int h) {
+            target.drawRectangle(rx - dx(), ry - dy(), w, h);
+        }
+
+        @Override
+        public void fillRectangle(int rx, int ry, int w, int h) {
+            target.fillRectangle(rx - dx(), ry - dy(), w, h);
+        }
+
+        @Override
+        public void drawImage(int ix, int iy, Image img) {
+            target.drawImage(ix - dx(), iy - dy(), img);
+        }
+
+        @Override
+        public void drawCircle(int cx, int cy, int r) {
+            target.drawCircle(cx - dx(), cy - dy(), r);
+        }
+
+        @Override
+        public void fillCircle(int cx, int cy, int r) {
+            target.fillCircle(cx - dx(), cy - dy(), r);
+        }
+
+        @Override
+        public void drawText(int tx, int ty, String text, int fontSize) {
+            target.drawText(tx - dx(), ty - dy(), text, fontSize);
+        }
+
+        @Override
+        public void drawPolygon(Polygon polygon) {
+            target.drawPolygon(shifted(polygon));
+        }
+
+        @Override
+        public void fillPolygon(Polygon polygon) {
+            target.fillPolygon(shifted(polygon));
+        }
+
+        private Polygon shifted(Polygon polygon) {
+            Polygon copy = new Polygon(polygon.xpoints, polygon.ypoints, polygon.npoints);
+            copy.translate(-dx(), -dy());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package graphics;
+
+/**
+ * DirtyRegions collects the parts of the screen that must be redrawn, as pixel boxes
+ * clipped to the screen. Overlapping boxes are merged as they are added, and once there
+ * are as many boxes as allowed, a new box is merged with the existing box that makes the
+ * union waste the fewest clean pixels. The boxes never overlap, so no pixel is redrawn twice.
+ */
+public class DirtyRegions {
+    private final int width;
+    private final int height;
+    private final int maxRegions;
+    private final int[] boxes;
+    private int count;
+
+    /**
+     * Constructs an empty set of regions for a screen of the given size.
+     * @param width      the width of the screen in pixels
+     * @param height     the height of the screen in pixels
+     * @param maxRegions how many separate boxes to keep before merging them all
+     */
+    public DirtyRegions(int width, int height, int maxRegions) {
+        if (maxRegions <= 0) {
+            throw new IllegalArgumentException("region limit must be positive: " + maxRegions);
+        }
+        this.width = width;
+        this.height = height;
+        this.maxRegions = maxRegions;
+        this.boxes = new int[maxRegions * 4];
+    }
+
+    /**
+     * Marks a box of pixels as dirty.
+     * @param x      the left edge of the box
+     * @param y      the top edge of the box
+     * @param boxWidth  the width of the box
+     * @param boxHeight the height of the box
+     */
+    public void add(int x, int y, int boxWidth, int boxHeight) {
+        int minX = Math.max(0, x);
+        int minY = Math.max(0, y);
+        int maxX = Math.min(width, x + boxWidth);
+        int maxY = Math.min(height, y + boxHeight);
+        if (minX >= maxX || minY >= maxY) {
+            return;
+        }
+        insert(minX, minY, maxX, maxY);
+    }
+
+    private void insert(int minX, int minY, int maxX, int maxY) {
+        // Grow into any box it overlaps; the grown box may now overlap others, so repeat.
+        int i = 0;
+        while (i < count) {
+            int b = i * 4;
+            if (minX <= boxes[b + 2] && boxes[b] <= maxX && minY <= boxes[b + 3] && boxes[b + 1] <= maxY) {
+                minX = Math.min(minX, boxes[b]);
+                minY = Math.min(minY, boxes[b + 1]);
+                maxX = Math.max(maxX, boxes[b + 2]);
+                maxY = Math.max(maxY, boxes[b + 3]);
+                removeBox(i);
+                i = 0;
+            } else {
+                i++;
+            }
+        }
+        if (count == maxRegions) {
+            // No room left: merge with the box that wastes the fewest pixels.
+            int best = 0;
+            long bestWaste = Long.MAX_VALUE;
+            long area = (long) (maxX - minX) * (maxY - minY);
+            for (int k = 0; k < count; k++) {
+                int b = k * 4;
+                long union = (long) (Math.max(maxX, boxes[b + 2]) - Math.min(minX, boxes[b]))
+                        * (Math.max(maxY, boxes[b + 3]) - Math.min(minY, boxes[b + 1]));
+                long waste = union - area - (long) (boxes[b + 2] - boxes[b]) * (boxes[b + 3] - boxes[b + 1]);
+                if (waste < bestWaste) {
+                    bestWaste = waste;
+                    best = k;
+                }
+            }
+            int b = best * 4;
+            int unionMinX = Math.min(minX, boxes[b]);
+            int unionMinY = Math.min(minY, boxes[b + 1]);
+            int unionMaxX = Math.max(maxX, boxes[b + 2]);
+            int unionMaxY = Math.max(maxY, boxes[b + 3]);
+            removeBox(best);
+            insert(unionMinX, unionMinY, unionMaxX, unionMaxY);
+            return;
+        }
+        int b = count * 4;
+        boxes[b] = minX;
+        boxes[b + 1] = minY;
+        boxes[b + 2] = maxX;
+        boxes[b + 3] = maxY;
+        count++;
+    }
+
+    /**
+     * Marks the whole screen as dirty.
+     */
+    public void addAll() {
+        count = 0;
+        add(0, 0, width, height);
+    }
+
+    /**
+     * Checks whether anything is dirty.
+     * @return true if there is nothing to redraw
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns the number of separate boxes.
+     * @return the box count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the left edge of the i-th box.
+     * @param i the box number
+     * @return the left edge, inclusive
+     */
+    public int minX(int i) {
+        return boxes[i * 4];
+    }
+
+    /**
+     * Returns the top edge of the i-th box.
+     * @param i the box number
+     * @return the top edge, inclusive
+     */
+    public int minY(int i) {
+        return boxes[i * 4 + 1];
+    }
+
+    /**
+     * Returns the right edge of the i-th box.
+     * @param i the box number
+     * @return the right edge, exclusive
+     */
+    public int maxX(int i) {
+        return boxes[i * 4 + 2];
+    }
+
+    /**
+     * Returns the bottom edge of the i-th box.
+     * @param i the box number
+     * @return the bottom edge, exclusive
+     */
+    public int maxY(int i) {
+        return boxes[i * 4 + 3];
+    }
+
+    /**
+     * Returns the number of dirty pixels. Boxes never overlap, so this is exact.
+     * @return the dirty pixel count
+     */
+    public long getPixels() {
+        long pixels = 0;
+        for (int i = 0; i < count; i++) {
+            pixels += (long) (maxX(i) - minX(i)) * (maxY(i) - minY(i));
+        }
+        return pixels;
+    }
+
+    /**
+     * Forgets every dirty box.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    private void removeBox(int i) {
+        count--;
+        System.arraycopy(boxes, count * 4, boxes, i * 4, 4);
+    }
+}
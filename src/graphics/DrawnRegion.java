@@ -0,0 +1,59 @@
+package graphics;
+
+import java.util.Objects;
+
+/**
+ * A DrawnRegion remembers where a sprite was drawn on the last frame and what it looked
+ * like, so the sprite can report the regions that changed: nothing if it was drawn at
+ * the same place with the same appearance, or else both its old and its new box.
+ */
+public class DrawnRegion {
+    private boolean drawn;
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+    private Object appearance;
+
+    /**
+     * Records where the sprite is drawn on this frame and reports what changed.
+     * @param boxX       the left edge of the box the sprite draws in
+     * @param boxY       the top edge of the box
+     * @param boxWidth   the width of the box
+     * @param boxHeight  the height of the box
+     * @param look       anything that changes when the sprite looks different at the same place
+     * @param out        receives the old and the new box if anything changed
+     */
+    public void update(int boxX, int boxY, int boxWidth, int boxHeight, Object look, DirtyRegions out) {
+        if (drawn && boxX == x && boxY == y && boxWidth == width && boxHeight == height
+                && Objects.equals(look, appearance)) {
+            return;
+        }
+        addTo(out);
+        out.add(boxX, boxY, boxWidth, boxHeight);
+        this.drawn = true;
+        this.x = boxX;
+        this.y = boxY;
+        this.width = boxWidth;
+        this.height = boxHeight;
+        this.appearance = look;
+    }
+
+    /**
+     * Reports the box drawn on the last frame, if any.
+     * @param out receives the box
+     */
+    public void addTo(DirtyRegions out) {
+        if (drawn) {
+            out.add(x, y, width, height);
+        }
+    }
+
+    /**
+     * Forgets the last frame, for a sprite that is no longer drawn.
+     */
+    public void clear() {
+        drawn = false;
+        appearance = null;
+    }
+}
@@ -0,0 +1,97 @@
+package graphics;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+/**
+ * A FrameBuffer keeps the last frame in an offscreen image and only redraws the parts of
+ * it that changed. Every redraw clears each dirty region to the background, clips to it
+ * and lets the painter draw the scene again; pixels outside the dirty regions are left
+ * as they were. The very first redraw covers the whole frame.
+ *
+ * <p>biuoop's GUI always presents a whole surface, so the finished frame is still handed
+ * to it as one image; what the dirty regions save is the drawing of the frame.</p>
+ */
+public class FrameBuffer {
+    private static final int MAX_REGIONS = 16;
+
+    private final ImageDrawSurface surface;
+    private final Color background;
+    private final DirtyRegions dirty;
+    private boolean primed;
+    private long pixelsTouched;
+
+    /**
+     * Constructs a frame buffer.
+     * @param width      the width of the frame in pixels
+     * @param height     the height of the frame in pixels
+     * @param background the colour behind everything that is drawn
+     */
+    public FrameBuffer(int width, int height, Color background) {
+        this.surface = new ImageDrawSurface(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        this.background = background;
+        this.dirty = new DirtyRegions(width, height, MAX_REGIONS);
+    }
+
+    /**
+     * Returns the regions to redraw on the next {@link #redraw(Consumer)}.
+     * @return the dirty regions
+     */
+    public DirtyRegions getDirtyRegions() {
+        return dirty;
+    }
+
+    /**
+     * Redraws the dirty regions, then forgets them.
+     * @param painter draws the whole scene; whatever falls outside the region being
+     *                redrawn is clipped away
+     */
+    public void redraw(Consumer<DrawSurface> painter) {
+        if (!primed) {
+            dirty.addAll();
+            primed = true;
+        }
+        Graphics2D g = surface.getGraphics();
+        for (int i = 0; i < dirty.size(); i++) {
+            int x = dirty.minX(i);
+            int y = dirty.minY(i);
+            int w = dirty.maxX(i) - x;
+            int h = dirty.maxY(i) - y;
+            g.setClip(x, y, w, h);
+            g.setColor(background);
+            g.fillRect(x, y, w, h);
+            painter.accept(surface);
+        }
+        g.setClip(null);
+        pixelsTouched = dirty.getPixels();
+        dirty.clear();
+    }
+
+    /**
+     * Returns how many pixels the last redraw touched.
+     * @return the redrawn pixel count
+     */
+    public long getPixelsTouched() {
+        return pixelsTouched;
+    }
+
+    /**
+     * Returns the number of pixels in the whole frame.
+     * @return width times height
+     */
+    public long getPixels() {
+        return (long) surface.getWidth() * surface.getHeight();
+    }
+
+    /**
+     * Draws the frame onto the given surface.
+     * @param d the surface to draw on
+     */
+    public void drawOn(DrawSurface d) {
+        d.drawImage(0, 0, surface.getImage());
+    }
+}
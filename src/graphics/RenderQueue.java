@@ -0,0 +1,492 @@
+package graphics;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A RenderQueue is a DrawSurface that records the commands drawn on it instead of drawing
+ * them, then submits them to another surface sorted so the colour changes as rarely as
+ * possible. Sprites can draw onto it unchanged.
+ *
+ * <p>Commands are sorted by layer first, then images before fills before strokes, then by
+ * colour. Fills are the fill methods; strokes are the outline methods and drawText, so
+ * outlines always end up on top of the fills of their layer. The order of commands that
+ * overlap is therefore only kept across layers: sprites sharing a layer should only
+ * overlap along their outlines, like the blocks of a level, and the picture is the same as
+ * drawing them one by one except where the fill of one would have covered the outline of
+ * another.</p>
+ *
+ * <p>All the commands of one batch paint the same colour, so their order does not matter
+ * and their shapes can be joined: the outlines of a grid of blocks are submitted as one
+ * fill per grid line instead of one rectangle per block.</p>
+ *
+ * <p>Commands are kept in reused arrays, so a frame that draws no more than the previous
+ * ones does not allocate.</p>
+ */
+public class RenderQueue implements DrawSurface {
+    private static final int IMAGE = 0;
+    private static final int FILL = 1;
+    private static final int STROKE = 2;
+    private static final int PASSES = 3;
+
+    private static final byte FILL_RECTANGLE = 0;
+    private static final byte DRAW_RECTANGLE = 1;
+    private static final byte FILL_CIRCLE = 2;
+    private static final byte DRAW_CIRCLE = 3;
+    private static final byte FILL_OVAL = 4;
+    private static final byte DRAW_OVAL = 5;
+    private static final byte DRAW_LINE = 6;
+    private static final byte DRAW_TEXT = 7;
+    private static final byte DRAW_IMAGE = 8;
+    private static final byte FILL_POLYGON = 9;
+    private static final byte DRAW_POLYGON = 10;
+
+    private final int width;
+    private final int height;
+
+    private byte[] ops = new byte[256];
+    private int[] args = new int[256 * 4];
+    private Object[] objects = new Object[256];
+    private int count;
+
+    private final Map<Color, Integer> colorIds = new HashMap<>();
+    private final List<Color> colors = new ArrayList<>();
+    private final Color[] recent = new Color[8];
+    private final int[] recentIds = new int[8];
+    private int nextRecent;
+    private final Map<Long, Bucket> buckets = new HashMap<>();
+    private final List<Bucket> used = new ArrayList<>();
+    private Bucket[] current = new Bucket[0];
+    private Color color = Color.BLACK;
+    private int colorId = -1;
+    private int layer;
+
+    private final int[] rowStart;
+    private final int[] rowEnd;
+    private final int[] rowStamp;
+    private final int[] columnStart;
+    private final int[] columnEnd;
+    private final int[] columnStamp;
+    private int[] openRows = new int[64];
+    private int openRowCount;
+    private int[] openColumns = new int[64];
+    private int openColumnCount;
+    private int stamp;
+    private int pendingX;
+    private int pendingY;
+    private int pendingWidth;
+    private int pendingHeight;
+
+    /**
+     * Constructs an empty queue for a surface of the given size.
+     * @param width  the width reported to the sprites drawing on the queue
+     * @param height the height reported to the sprites drawing on the queue
+     */
+    public RenderQueue(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowStart = new int[height];
+        this.rowEnd = new int[height];
+        this.rowStamp = new int[height];
+        this.columnStart = new int[width];
+        this.columnEnd = new int[width];
+        this.columnStamp = new int[width];
+    }
+
+    /**
+     * Sets the layer the following commands are drawn in. Lower layers are drawn first.
+     * @param layer the layer, from 0 to 32767
+     */
+    public void setLayer(int layer) {
+        if (layer < 0 || layer > 0x7FFF) {
+            throw new IllegalArgumentException("layer out of range: " + layer);
+        }
+        if (layer != this.layer) {
+            this.layer = layer;
+            Arrays.fill(current, null);
+        }
+    }
+
+    /**
+     * Returns the number of commands waiting to be submitted.
+     * @return the number of recorded commands
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Submits the recorded commands to the given surface in sorted order, setting the
+     * colour only when it changes, and empties the queue. The layer goes back to 0.
+     * @param d the surface to draw on
+     */
+    public void flush(DrawSurface d) {
+        used.sort((a, b) -> Long.compare(a.key, b.key));
+        Color last = null;
+        for (Bucket bucket : used) {
+            Color c = colors.get(bucket.colorId);
+            if (c != last) {
+                d.setColor(c);
+                last = c;
+            }
+            if (bucket.pass == IMAGE) {
+                for (int i = 0; i < bucket.size; i++) {
+                    replay(bucket.commands[i], d);
+                }
+            } else {
+                submit(bucket, d);
+            }
+            bucket.size = 0;
+        }
+        used.clear();
+        Arrays.fill(objects, 0, count, null);
+        count = 0;
+        setLayer(0);
+    }
+
+    /**
+     * Submits the commands of one colour. Since they all paint the same opaque colour, only
+     * the union of the pixels they cover matters, so rectangle outlines and straight lines
+     * are cut into one-pixel rows and columns, touching rows and columns are joined, and
+     * each joined run is filled once. Fills next to each other in the same row are joined
+     * too. The other commands are replayed as they are.
+     */
+    private void submit(Bucket bucket, DrawSurface d) {
+        stamp++;
+        pendingWidth = 0;
+        for (int i = 0; i < bucket.size; i++) {
+            int command = bucket.commands[i];
+            int a = command * 4;
+            int x = args[a];
+            int y = args[a + 1];
+            int w = args[a + 2];
+            int h = args[a + 3];
+            switch (ops[command]) {
+                case FILL_RECTANGLE:
+                    if (w > 0 && h > 0) {
+                        fill(x, y, w, h, d);
+                    }
+                    break;
+                case DRAW_RECTANGLE:
+                    if (w >= 0 && h >= 0) {
+                        row(y, x, x + w + 1, d);
+                        row(y + h, x, x + w + 1, d);
+                        column(x, y, y + h + 1, d);
+                        column(x + w, y, y + h + 1, d);
+                    }
+                    break;
+                case DRAW_LINE:
+                    if (y == h) {
+                        row(y, Math.min(x, w), Math.max(x, w) + 1, d);
+                    } else if (x == w) {
+                        column(x, Math.min(y, h), Math.max(y, h) + 1, d);
+                    } else {
+                        replay(command, d);
+                    }
+                    break;
+                default:
+                    replay(command, d);
+                    break;
+            }
+        }
+        if (pendingWidth > 0) {
+            d.fillRectangle(pendingX, pendingY, pendingWidth, pendingHeight);
+        }
+        for (int i = 0; i < openRowCount; i++) {
+            int y = openRows[i];
+            d.fillRectangle(rowStart[y], y, rowEnd[y] - rowStart[y], 1);
+        }
+        for (int i = 0; i < openColumnCount; i++) {
+            int x = openColumns[i];
+            d.fillRectangle(x, columnStart[x], 1, columnEnd[x] - columnStart[x]);
+        }
+        openRowCount = 0;
+        openColumnCount = 0;
+    }
+
+    /**
+     * Fills a rectangle, joining it with the previous one if they span the same rows and
+     * touch or overlap.
+     */
+    private void fill(int x, int y, int w, int h, DrawSurface d) {
+        if (pendingWidth > 0 && y == pendingY && h == pendingHeight
+                && x <= pendingX + pendingWidth && x + w >= pendingX) {
+            int right = Math.max(x + w, pendingX + pendingWidth);
+            pendingX = Math.min(x, pendingX);
+            pendingWidth = right - pendingX;
+            return;
+        }
+        if (pendingWidth > 0) {
+            d.fillRectangle(pendingX, pendingY, pendingWidth, pendingHeight);
+        }
+        pendingX = x;
+        pendingY = y;
+        pendingWidth = w;
+        pendingHeight = h;
+    }
+
+    /**
+     * Adds the pixels from x0 to x1 (exclusive) of row y to the open run of that row.
+     */
+    private void row(int y, int x0, int x1, DrawSurface d) {
+        if (y < 0 || y >= height) {
+            d.fillRectangle(x0, y, x1 - x0, 1);
+            return;
+        }
+        if (rowStamp[y] != stamp) {
+            rowStamp[y] = stamp;
+            if (openRowCount == openRows.length) {
+                openRows = Arrays.copyOf(openRows, openRowCount * 2);
+            }
+            openRows[openRowCount++] = y;
+        } else if (x0 <= rowEnd[y] && x1 >= rowStart[y]) {
+            rowStart[y] = Math.min(rowStart[y], x0);
+            rowEnd[y] = Math.max(rowEnd[y], x1);
+            return;
+        } else {
+            d.fillRectangle(rowStart[y], y, rowEnd[y] - rowStart[y], 1);
+        }
+        rowStart[y] = x0;
+        rowEnd[y] = x1;
+    }
+
+    /**
+     * Adds the pixels from y0 to y1 (exclusive) of column x to the open run of that column.
+     */
+    private void column(int x, int y0, int y1, DrawSurface d) {
+        if (x < 0 || x >= width) {
+            d.fillRectangle(x, y0, 1, y1 - y0);
+            return;
+        }
+        if (columnStamp[x] != stamp) {
+            columnStamp[x] = stamp;
+            if (openColumnCount == openColumns.length) {
+                openColumns = Arrays.copyOf(openColumns, openColumnCount * 2);
+            }
+            openColumns[openColumnCount++] = x;
+        } else if (y0 <= columnEnd[x] && y1 >= columnStart[x]) {
+            columnStart[x] = Math.min(columnStart[x], y0);
+            columnEnd[x] = Math.max(columnEnd[x], y1);
+            return;
+        } else {
+            d.fillRectangle(x, columnStart[x], 1, columnEnd[x] - columnStart[x]);
+        }
+        columnStart[x] = y0;
+        columnEnd[x] = y1;
+    }
+
+    private void replay(int command, DrawSurface d) {
+        int a = command * 4;
+        switch (ops[command]) {
+            case FILL_RECTANGLE:
+                d.fillRectangle(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case DRAW_RECTANGLE:
+                d.drawRectangle(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case FILL_CIRCLE:
+                d.fillCircle(args[a], args[a + 1], args[a + 2]);
+                break;
+            case DRAW_CIRCLE:
+                d.drawCircle(args[a], args[a + 1], args[a + 2]);
+                break;
+            case FILL_OVAL:
+                d.fillOval(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case DRAW_OVAL:
+                d.drawOval(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case DRAW_LINE:
+                d.drawLine(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                break;
+            case DRAW_TEXT:
+                d.drawText(args[a], args[a + 1], (String) objects[command], args[a + 2]);
+                break;
+            case DRAW_IMAGE:
+                d.drawImage(args[a], args[a + 1], (Image) objects[command]);
+                break;
+            case FILL_POLYGON:
+                d.fillPolygon((Polygon) objects[command]);
+                break;
+            case DRAW_POLYGON:
+                d.drawPolygon((Polygon) objects[command]);
+                break;
+            default:
+                throw new IllegalStateException("unknown command " + ops[command]);
+        }
+    }
+
+    /**
+     * Records a command with the current layer and colour and files it in its bucket.
+     */
+    private void record(byte op, int pass, int a0, int a1, int a2, int a3, Object object) {
+        if (count == ops.length) {
+            ops = Arrays.copyOf(ops, count * 2);
+            args = Arrays.copyOf(args, count * 8);
+            objects = Arrays.copyOf(objects, count * 2);
+        }
+        int a = count * 4;
+        ops[count] = op;
+        args[a] = a0;
+        args[a + 1] = a1;
+        args[a + 2] = a2;
+        args[a + 3] = a3;
+        objects[count] = object;
+        bucket(pass).add(count);
+        count++;
+    }
+
+    /**
+     * Returns the bucket of the current layer and colour for the given pass.
+     */
+    private Bucket bucket(int pass) {
+        if (colorId < 0) {
+            colorId = colorId(color);
+        }
+        int slot = colorId * PASSES + pass;
+        if (slot >= current.length) {
+            current = Arrays.copyOf(current, Math.max(slot + 1, current.length * 2));
+        }
+        Bucket bucket = current[slot];
+        if (bucket == null) {
+            long key = (long) layer << 48 | (long) pass << 46 | colorId;
+            bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(key, pass, colorId);
+                buckets.put(key, bucket);
+            }
+            current[slot] = bucket;
+        }
+        if (bucket.size == 0) {
+            used.add(bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the id of the given colour, giving it the next id the first time it is seen.
+     * Sprites usually pass the same few Color objects, so those are found by identity first.
+     */
+    private int colorId(Color c) {
+        for (int i = 0; i < recent.length; i++) {
+            if (recent[i] == c) {
+                return recentIds[i];
+            }
+        }
+        Integer id = colorIds.get(c);
+        if (id == null) {
+            id = colors.size();
+            colorIds.put(c, id);
+            colors.add(c);
+        }
+        recent[nextRecent] = c;
+        recentIds[nextRecent] = id;
+        nextRecent = (nextRecent + 1) % recent.length;
+        return id;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void setColor(Color c) {
+        if (c != this.color && !c.equals(this.color)) {
+            this.color = c;
+            this.colorId = -1;
+        }
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(DRAW_LINE, STROKE, x1, y1, x2, y2, null);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        record(DRAW_OVAL, STROKE, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        record(FILL_OVAL, FILL, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        record(DRAW_RECTANGLE, STROKE, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        record(FILL_RECTANGLE, FILL, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        record(DRAW_IMAGE, IMAGE, x, y, 0, 0, img);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        record(DRAW_CIRCLE, STROKE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        record(FILL_CIRCLE, FILL, x, y, r, 0, null);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        record(DRAW_TEXT, STROKE, x, y, fontSize, 0, text);
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        record(DRAW_POLYGON, STROKE, 0, 0, 0, 0, polygon);
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        record(FILL_POLYGON, FILL, 0, 0, 0, 0, polygon);
+    }
+
+    /**
+     * The commands of one layer, pass and colour, in the order they were drawn.
+     */
+    private static final class Bucket {
+        private final long key;
+        private final int pass;
+        private final int colorId;
+        private int[] commands = new int[64];
+        private int size;
+
+        private Bucket(long key, int pass, int colorId) {
+            this.key = key;
+            this.pass = pass;
+            this.colorId = colorId;
+        }
+
+        private void add(int command) {
+            if (size == commands.length) {
+                commands = Arrays.copyOf(commands, size * 2);
+            }
+            commands[size++] = command;
+        }
+    }
+}
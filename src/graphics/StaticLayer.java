@@ -0,0 +1,230 @@
+package graphics;
+
+import biuoop.DrawSurface;
+import geometry.Rectangle;
+import sprites.StaticSprite;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * A StaticLayer caches the drawing of every StaticSprite in an offscreen image, so a frame
+ * only blits the image instead of drawing every block and border again.
+ *
+ * <p>Adding or removing a sprite only marks its bounds as dirty. Before the next blit the
+ * dirty regions are cleared and the sprites overlapping them are drawn again, clipped to
+ * the region and in the order they were added. Sprites are bucketed in a coarse grid of
+ * cells, so repairing a region only looks at the sprites near it and the cost of a frame
+ * does not depend on the size of the level.</p>
+ */
+public class StaticLayer {
+    private static final int CELL_SIZE = 64;
+    private static final int MAX_DIRTY_REGIONS = 32;
+
+    private final ImageDrawSurface surface;
+    private final Color background;
+    private final int cols;
+    private final int rows;
+    private final List<List<Entry>> cells;
+    private final Map<StaticSprite, Entry> entries = new IdentityHashMap<>();
+    private final DirtyRegions dirty;
+    private long nextSequence;
+    private int paintStamp;
+
+    /**
+     * Constructs an empty, transparent layer the size of the drawing surface. Whatever
+     * was drawn before the layer shows through where no static sprite is.
+     * @param width  the width of the layer in pixels
+     * @param height the height of the layer in pixels
+     */
+    public StaticLayer(int width, int height) {
+        this(width, height, null);
+    }
+
+    /**
+     * Constructs an empty layer the size of the drawing surface. An opaque layer hides
+     * whatever was drawn before it but is much cheaper to blit than a transparent one.
+     * @param width      the width of the layer in pixels
+     * @param height     the height of the layer in pixels
+     * @param background the colour of the layer where no static sprite is, or null for transparent
+     */
+    public StaticLayer(int width, int height, Color background) {
+        this.background = background;
+        this.surface = new ImageDrawSurface(new BufferedImage(width, height,
+                background == null ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB));
+        if (background != null) {
+            surface.setColor(background);
+            surface.fillRectangle(0, 0, width, height);
+        }
+        this.dirty = new DirtyRegions(width, height, MAX_DIRTY_REGIONS);
+        this.cols = (width + CELL_SIZE - 1) / CELL_SIZE;
+        this.rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        this.cells = new ArrayList<>(cols * rows);
+        for (int i = 0; i < cols * rows; i++) {
+            cells.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Adds a sprite to the layer. It is painted before the next blit.
+     * Sprites outside the layer are remembered but never painted.
+     * @param s the sprite to add
+     */
+    public void add(StaticSprite s) {
+        if (entries.containsKey(s)) {
+            return;
+        }
+        Entry e = new Entry(s, nextSequence++, pixelBounds(s.getBounds()));
+        entries.put(s, e);
+        if (e.bounds == null) {
+            return;
+        }
+        forEachCell(e.bounds, cell -> cells.get(cell).add(e));
+        invalidate(e.bounds);
+    }
+
+    /**
+     * Removes a sprite from the layer. Its region is repainted before the next blit.
+     * @param s the sprite to remove
+     */
+    public void remove(StaticSprite s) {
+        Entry e = entries.remove(s);
+        if (e == null || e.bounds == null) {
+            return;
+        }
+        forEachCell(e.bounds, cell -> cells.get(cell).remove(e));
+        invalidate(e.bounds);
+    }
+
+    /**
+     * Checks whether the given sprite is drawn by this layer.
+     * @param s the sprite to look for
+     * @return true if the sprite was added and not removed since
+     */
+    public boolean contains(StaticSprite s) {
+        return entries.containsKey(s);
+    }
+
+    /**
+     * Repaints the dirty regions, then draws the layer onto the given surface.
+     * @param d the surface to draw on
+     */
+    public void drawOn(DrawSurface d) {
+        repair();
+        d.drawImage(0, 0, surface.getImage());
+    }
+
+    /**
+     * Repaints every dirty region of the cached image.
+     */
+    public void repair() {
+        repair(null);
+    }
+
+    /**
+     * Repaints every dirty region of the cached image and reports the repainted regions.
+     * @param repainted receives the repainted regions, or null
+     */
+    public void repair(DirtyRegions repainted) {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Graphics2D g = surface.getGraphics();
+        List<Entry> overlapping = new ArrayList<>();
+        for (int i = 0; i < dirty.size(); i++) {
+            int[] region = {dirty.minX(i), dirty.minY(i), dirty.maxX(i), dirty.maxY(i)};
+            paintStamp++;
+            overlapping.clear();
+            forEachCell(region, cell -> {
+                for (Entry e : cells.get(cell)) {
+                    if (e.stamp != paintStamp && intersects(e.bounds, region)) {
+                        e.stamp = paintStamp;
+                        overlapping.add(e);
+                    }
+                }
+            });
+            overlapping.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+
+            int width = region[2] - region[0];
+            int height = region[3] - region[1];
+            g.setClip(region[0], region[1], width, height);
+            if (background == null) {
+                Composite composite = g.getComposite();
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(region[0], region[1], width, height);
+                g.setComposite(composite);
+            } else {
+                g.setColor(background);
+                g.fillRect(region[0], region[1], width, height);
+            }
+            for (Entry e : overlapping) {
+                e.sprite.drawOn(surface);
+            }
+            if (repainted != null) {
+                repainted.add(region[0], region[1], width, height);
+            }
+        }
+        g.setClip(null);
+        dirty.clear();
+    }
+
+    private void invalidate(int[] region) {
+        dirty.add(region[0], region[1], region[2] - region[0], region[3] - region[1]);
+    }
+
+    /**
+     * Returns the pixels a sprite with the given bounds draws on, as {minX, minY, maxX, maxY}
+     * with exclusive maxima, clipped to the layer, or null if it is entirely outside.
+     * One pixel is added on the right and bottom for the outline drawRectangle draws.
+     */
+    private int[] pixelBounds(Rectangle r) {
+        int minX = Math.max(0, (int) Math.floor(r.getUpperLeft().getX()));
+        int minY = Math.max(0, (int) Math.floor(r.getUpperLeft().getY()));
+        int maxX = Math.min(surface.getWidth(), (int) Math.ceil(r.getUpperLeft().getX() + r.getWidth()) + 1);
+        int maxY = Math.min(surface.getHeight(), (int) Math.ceil(r.getUpperLeft().getY() + r.getHeight()) + 1);
+        if (minX >= maxX || minY >= maxY) {
+            return null;
+        }
+        return new int[] {minX, minY, maxX, maxY};
+    }
+
+    private void forEachCell(int[] bounds, IntConsumer action) {
+        int fromCol = bounds[0] / CELL_SIZE;
+        int fromRow = bounds[1] / CELL_SIZE;
+        int toCol = Math.min(cols - 1, (bounds[2] - 1) / CELL_SIZE);
+        int toRow = Math.min(rows - 1, (bounds[3] - 1) / CELL_SIZE);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int col = fromCol; col <= toCol; col++) {
+                action.accept(row * cols + col);
+            }
+        }
+    }
+
+    private static boolean intersects(int[] a, int[] b) {
+        return a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3];
+    }
+
+    /**
+     * A sprite in the layer, with the order it was added in and the pixels it covers.
+     */
+    private static final class Entry {
+        private final StaticSprite sprite;
+        private final long sequence;
+        private final int[] bounds;
+        private int stamp;
+
+        private Entry(StaticSprite sprite, long sequence, int[] bounds) {
+            this.sprite = sprite;
+            this.sequence = sequence;
+            this.bounds = bounds;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package input;
+
+import core.Game;
+
+/**
+ * A GameAwareInput is an InputProvider that decides by looking at the game it plays, such
+ * as a bot. The game hands itself over when it is set up, before the first poll.
+ */
+public interface GameAwareInput extends InputProvider {
+    /**
+     * Gives the input the game it plays. Called once, before the paddle and balls exist.
+     * @param game the game being set up
+     */
+    void attach(Game game);
+}
@@ -0,0 +1,28 @@
+package input;
+
+/**
+ * An InputProvider tells the paddle which way the player wants it to move.
+ * It replaces reading a KeyboardSensor directly, so the paddle can just as well be
+ * driven by a bot, a recording or nothing at all when the game runs without a window.
+ */
+public interface InputProvider {
+    /**
+     * Bit set in the result of {@link #poll()} while the paddle should move left.
+     */
+    int LEFT = 1;
+    /**
+     * Bit set in the result of {@link #poll()} while the paddle should move right.
+     */
+    int RIGHT = 2;
+
+    /**
+     * An input that never presses anything.
+     */
+    InputProvider IDLE = () -> 0;
+
+    /**
+     * Reads the input for the current tick. Called exactly once per tick.
+     * @return a combination of {@link #LEFT} and {@link #RIGHT}, or 0 for no input
+     */
+    int poll();
+}
@@ -0,0 +1,35 @@
+package input;
+
+/**
+ * An InputRecorder passes the input of another InputProvider through unchanged and
+ * appends every tick's input to an InputRecording.
+ */
+public class InputRecorder implements InputProvider {
+    private final InputProvider source;
+    private final InputRecording recording;
+
+    /**
+     * Constructs an InputRecorder.
+     * @param source the input to record
+     * @param seed   the seed of the game being recorded
+     */
+    public InputRecorder(InputProvider source, long seed) {
+        this.source = source;
+        this.recording = new InputRecording(seed);
+    }
+
+    /**
+     * Returns the recording made so far.
+     * @return the recording
+     */
+    public InputRecording getRecording() {
+        return recording;
+    }
+
+    @Override
+    public int poll() {
+        int pressed = source.poll();
+        recording.append(pressed);
+        return pressed;
+    }
+}
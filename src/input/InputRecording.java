@@ -0,0 +1,212 @@
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * An InputRecording holds the paddle input of every tick of a game, together with the
+ * seed of the game it was recorded in and the level file it was played on, if any, so the
+ * game can be played back exactly.
+ *
+ * <p>Input rarely changes from one tick to the next, so ticks are kept as runs of equal
+ * input. On disk a recording is a small header followed by one (input, run length) pair
+ * per run, every number written as an unsigned varint: 7 bits per byte, high bit set on
+ * all but the last byte. A ten minute session takes a few kilobytes.</p>
+ */
+public class InputRecording {
+    private static final int MAGIC = 0x41524B52;
+    private static final int VERSION = 2;
+
+    private final long seed;
+    private String levelPath;
+    private long levelHash;
+    private int[] values = new int[64];
+    private int[] lengths = new int[64];
+    private int runs;
+    private long ticks;
+
+    /**
+     * Constructs an empty recording.
+     * @param seed the seed of the game being recorded
+     */
+    public InputRecording(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the seed of the game the input was recorded in.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Records the level file the game is played on.
+     * @param path the path of the level file, as the game was given it
+     * @param hash the {@link levels.LevelFile#contentHash() content hash} of the level
+     */
+    public void setLevel(String path, long hash) {
+        this.levelPath = path;
+        this.levelHash = hash;
+    }
+
+    /**
+     * Returns the path of the level file the game was played on.
+     * @return the path, or null if the game was played on the built-in level
+     */
+    public String getLevelPath() {
+        return levelPath;
+    }
+
+    /**
+     * Returns the content hash of the level the game was played on.
+     * @return the hash, or 0 if the game was played on the built-in level
+     */
+    public long getLevelHash() {
+        return levelHash;
+    }
+
+    /**
+     * Returns the number of recorded ticks.
+     * @return the tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Appends the input of one more tick.
+     * @param value the input of the tick, as returned by {@link InputProvider#poll()}
+     */
+    public void append(int value) {
+        if (runs > 0 && values[runs - 1] == value && lengths[runs - 1] != Integer.MAX_VALUE) {
+            lengths[runs - 1]++;
+            ticks++;
+        } else {
+            appendRun(value, 1);
+        }
+    }
+
+    private void appendRun(int value, int length) {
+        if (runs == values.length) {
+            values = Arrays.copyOf(values, runs * 2);
+            lengths = Arrays.copyOf(lengths, runs * 2);
+        }
+        values[runs] = value;
+        lengths[runs] = length;
+        runs++;
+        ticks += length;
+    }
+
+    /**
+     * Returns an input that plays the recording back from the first tick.
+     * Once the recording runs out the input stays idle.
+     * @return a new player of this recording
+     */
+    public InputProvider player() {
+        return new InputProvider() {
+            private int run;
+            private int left = runs > 0 ? lengths[0] : 0;
+
+            @Override
+            public int poll() {
+                while (left == 0) {
+                    if (run + 1 >= runs) {
+                        return 0;
+                    }
+                    run++;
+                    left = lengths[run];
+                }
+                left--;
+                return values[run];
+            }
+        };
+    }
+
+    /**
+     * Writes the recording to the given file, replacing it.
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeUTF(levelPath == null ? "" : levelPath);
+            out.writeLong(levelHash);
+            writeVarint(out, runs);
+            for (int i = 0; i < runs; i++) {
+                writeVarint(out, values[i]);
+                writeVarint(out, lengths[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a recording written by {@link #write(Path)}.
+     * @param file the file to read
+     * @return the recording
+     * @throws IOException if reading fails or the file is not a recording this version understands
+     */
+    public static InputRecording read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not an input recording");
+            }
+            int version = in.readUnsignedByte();
+            if (version != 1 && version != VERSION) {
+                throw new IOException(file + " has unsupported recording version " + version);
+            }
+            InputRecording recording = new InputRecording(in.readLong());
+            if (version >= 2) {
+                // Version 1 recordings were all made on the built-in level.
+                String path = in.readUTF();
+                long hash = in.readLong();
+                if (!path.isEmpty()) {
+                    recording.setLevel(path, hash);
+                }
+            }
+            long runs = readVarint(in);
+            for (long i = 0; i < runs; i++) {
+                int value = (int) readVarint(in);
+                long length = readVarint(in);
+                if (length <= 0 || length > Integer.MAX_VALUE) {
+                    throw new IOException(file + " has a run of invalid length " + length);
+                }
+                recording.appendRun(value, (int) length);
+            }
+            return recording;
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
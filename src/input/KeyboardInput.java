@@ -0,0 +1,30 @@
+package input;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * KeyboardInput is an InputProvider that reads the arrow keys of a KeyboardSensor.
+ */
+public class KeyboardInput implements InputProvider {
+    private final KeyboardSensor keyboard;
+
+    /**
+     * Constructs a KeyboardInput reading the given sensor.
+     * @param keyboard the keyboard sensor of the game window
+     */
+    public KeyboardInput(KeyboardSensor keyboard) {
+        this.keyboard = keyboard;
+    }
+
+    @Override
+    public int poll() {
+        int pressed = 0;
+        if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
+            pressed |= LEFT;
+        }
+        if (keyboard.isPressed(KeyboardSensor.RIGHT_KEY)) {
+            pressed |= RIGHT;
+        }
+        return pressed;
+    }
+}
@@ -0,0 +1,35 @@
+package input;
+
+import java.util.Random;
+
+/**
+ * RandomInput is an InputProvider that plays like a restless player: it picks left,
+ * right or nothing and holds it for a random number of ticks before picking again.
+ * The same seed always produces the same sequence of inputs.
+ */
+public class RandomInput implements InputProvider {
+    private static final int MAX_HOLD = 40;
+    private static final int[] CHOICES = {0, LEFT, RIGHT};
+
+    private final Random random;
+    private int pressed;
+    private int hold;
+
+    /**
+     * Constructs a RandomInput.
+     * @param seed the seed of the input sequence
+     */
+    public RandomInput(long seed) {
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public int poll() {
+        if (hold == 0) {
+            pressed = CHOICES[random.nextInt(CHOICES.length)];
+            hold = 1 + random.nextInt(MAX_HOLD);
+        }
+        hold--;
+        return pressed;
+    }
+}
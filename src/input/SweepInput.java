@@ -0,0 +1,26 @@
+package input;
+
+/**
+ * SweepInput is a scripted InputProvider that moves the paddle left for a fixed number
+ * of ticks, then right for as many ticks, over and over.
+ */
+public class SweepInput implements InputProvider {
+    private final int period;
+    private long tick;
+
+    /**
+     * Constructs a SweepInput.
+     * @param period how many ticks the paddle moves in one direction before turning
+     */
+    public SweepInput(int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        this.period = period;
+    }
+
+    @Override
+    public int poll() {
+        return (tick++ / period) % 2 == 0 ? LEFT : RIGHT;
+    }
+}
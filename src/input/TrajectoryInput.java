@@ -0,0 +1,226 @@
+package input;
+
+import core.Game;
+import geometry.Rectangle;
+import sprites.Ball;
+import sprites.Block;
+import sprites.Paddle;
+import sprites.Sprite;
+import sprites.Velocity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TrajectoryInput is a bot that plays the paddle by predicting, in closed form, where each
+ * ball will next come down to the paddle's line. A ball's straight path is unfolded
+ * through the side walls and, for a ball on its way up, the top wall, so the prediction
+ * costs a few operations per ball instead of simulating the ball ahead. Blocks are not
+ * taken into account; the prediction is redone every tick, so a ball that a block deflects
+ * is simply tracked from its new path. The balls are read without bringing those of an
+ * event-driven game up to date: each one's centre now is worked out from where it was last
+ * moved to, the same way the scheduler would move it, so the bot does not undo the savings
+ * of moving the balls from event to event.
+ *
+ * <p>The bot goes after the ball that comes down soonest. Of the paddle's top surface
+ * regions, which send the ball off at different angles, it picks the one it can still
+ * reach in time that sends the ball closest to the middle of the blocks left, and moves
+ * the paddle so the ball lands in the middle of that region. Where each region sends the
+ * ball is asked from {@link Paddle#regionVelocity(int, Velocity)}, the rule the paddle
+ * itself bounces balls with.</p>
+ */
+public class TrajectoryInput implements GameAwareInput {
+    private Game game;
+    private final List<Ball> balls = new ArrayList<>();
+    private int ballsAtScan = -1;
+    private int blocksAtTarget = -1;
+    private final Velocity[] outgoing = new Velocity[Paddle.REGIONS];
+    private double incomingDx = Double.NaN;
+    private double incomingDy = Double.NaN;
+    private double targetX;
+    private double targetY;
+
+    @Override
+    public void attach(Game g) {
+        this.game = g;
+    }
+
+    @Override
+    public int poll() {
+        Paddle paddle = game.getPaddle();
+        Rectangle area = game.getPlayArea();
+        if (paddle == null || area == null) {
+            return 0;
+        }
+        Rectangle rect = paddle.getCollisionRectangle();
+        double left = rect.getUpperLeft().getX();
+        double top = rect.getUpperLeft().getY();
+        double width = rect.getWidth();
+
+        double nextTicks = Double.POSITIVE_INFINITY;
+        double nextX = 0;
+        double nextDx = 0;
+        double nextDy = 0;
+        long now = game.getTicks();
+        updateBalls();
+        for (Ball ball : balls) {
+            long behind = now - game.getBallTick(ball);
+            double r = ball.getSize();
+            double dy = ball.getVelocity().getDy();
+            double y = ball.getCenter().getY() + dy * behind;
+            double line = top - r;
+            if (dy == 0 || y > line) {
+                // Moving sideways only, or already past the paddle.
+                continue;
+            }
+            double ceiling = area.getUpperLeft().getY() + r;
+            double ticks = dy > 0 ? (line - y) / dy : ((y - ceiling) + (line - ceiling)) / -dy;
+            if (ticks < nextTicks) {
+                double dx = ball.getVelocity().getDx();
+                double min = area.getUpperLeft().getX() + r;
+                double span = Math.max(0, area.getWidth() - 2 * r);
+                double unfolded = ball.getCenter().getX() + dx * behind + dx * ticks - min;
+                // Every time the unfolded path crosses a wall, the real one bounces off it.
+                long bounces = span == 0 ? 0 : (long) Math.floor(unfolded / span);
+                nextTicks = ticks;
+                nextX = min + fold(unfolded, span);
+                nextDx = bounces % 2 == 0 ? dx : -dx;
+                nextDy = Math.abs(dy);
+            }
+        }
+        if (nextTicks == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+
+        double goal = aim(nextDx, nextDy, nextX, top, left, width, paddle.getSpeed() * nextTicks);
+        double speed = paddle.getSpeed();
+        if (goal < left - speed / 2) {
+            return LEFT;
+        }
+        if (goal > left + speed / 2) {
+            return RIGHT;
+        }
+        return 0;
+    }
+
+    /**
+     * Picks the paddle region to catch the ball with and returns where the paddle's left
+     * edge has to be for the ball to land in its middle.
+     * @param dx    the horizontal speed of the ball when it arrives
+     * @param dy    the vertical speed of the ball when it arrives
+     * @param reach how far the paddle can move before the ball arrives
+     */
+    private double aim(double dx, double dy, double impactX, double top, double left, double width, double reach) {
+        updateTarget();
+        updateOutgoing(dx, dy);
+        double regionWidth = width / Paddle.REGIONS;
+        double best = Double.NaN;
+        double bestMiss = Double.POSITIVE_INFINITY;
+        double closest = Double.NaN;
+        double closestTravel = Double.POSITIVE_INFINITY;
+        for (int region = 0; region < Paddle.REGIONS; region++) {
+            double goal = impactX - (region + 0.5) * regionWidth;
+            double travel = Math.abs(goal - left);
+            if (travel < closestTravel) {
+                closest = goal;
+                closestTravel = travel;
+            }
+            if (travel > reach) {
+                continue;
+            }
+            Velocity out = outgoing[region];
+            double miss = Math.abs(impactX + out.getDx() * (targetY - top) / out.getDy() - targetX);
+            if (miss < bestMiss) {
+                best = goal;
+                bestMiss = miss;
+            }
+        }
+        // Out of reach of every region: get as close as possible.
+        return Double.isNaN(best) ? closest : best;
+    }
+
+    /**
+     * Asks the paddle again where each region sends the ball whenever the ball it goes after
+     * arrives with another velocity, which only happens after a bounce.
+     */
+    private void updateOutgoing(double dx, double dy) {
+        if (dx == incomingDx && dy == incomingDy) {
+            return;
+        }
+        incomingDx = dx;
+        incomingDy = dy;
+        Velocity in = new Velocity(dx, dy);
+        for (int region = 0; region < Paddle.REGIONS; region++) {
+            outgoing[region] = Paddle.regionVelocity(region + 1, in);
+        }
+    }
+
+    /**
+     * Collects the balls again whenever one left the game. Balls are not added during a
+     * game, and every ball that leaves takes the ball counter down with it.
+     */
+    private void updateBalls() {
+        int remaining = game.getRemainingBalls();
+        if (remaining == ballsAtScan) {
+            return;
+        }
+        ballsAtScan = remaining;
+        balls.clear();
+        for (Sprite s : game.peekSprites()) {
+            if (s instanceof Ball) {
+                balls.add((Ball) s);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the middle of the blocks left whenever a block was destroyed.
+     */
+    private void updateTarget() {
+        int blocks = game.getRemainingBlocks();
+        if (blocks == blocksAtTarget) {
+            return;
+        }
+        blocksAtTarget = blocks;
+        Rectangle area = game.getPlayArea();
+        double sumX = 0;
+        double sumY = 0;
+        int count = 0;
+        for (Sprite s : game.peekSprites()) {
+            if (s instanceof Block) {
+                Rectangle r = ((Block) s).getCollisionRectangle();
+                double x = r.getUpperLeft().getX() + r.getWidth() / 2;
+                double y = r.getUpperLeft().getY() + r.getHeight() / 2;
+                // Walls span the play area's edges; only the blocks inside count.
+                if (x > area.getUpperLeft().getX() && x < area.getUpperLeft().getX() + area.getWidth()
+                        && y > area.getUpperLeft().getY() && y < area.getUpperLeft().getY() + area.getHeight()) {
+                    sumX += x;
+                    sumY += y;
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            targetX = area.getUpperLeft().getX() + area.getWidth() / 2;
+            targetY = area.getUpperLeft().getY();
+        } else {
+            targetX = sumX / count;
+            targetY = sumY / count;
+        }
+    }
+
+    /**
+     * Folds an offset along the unfolded straight path back between two walls the given
+     * distance apart, as if the path bounced off them.
+     */
+    private static double fold(double offset, double span) {
+        if (span == 0) {
+            return 0;
+        }
+        double t = offset % (2 * span);
+        if (t < 0) {
+            t += 2 * span;
+        }
+        return t <= span ? t : 2 * span - t;
+    }
+}
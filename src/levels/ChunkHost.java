@@ -0,0 +1,23 @@
+package levels;
+
+import sprites.Block;
+
+/**
+ * A ChunkHost is what a {@link LevelStreamer} loads the blocks of a level into and evicts
+ * them from, usually the game.
+ */
+public interface ChunkHost {
+    /**
+     * Adds a block of a chunk that is being loaded.
+     * @param block        the block to add
+     * @param destructible whether the block is destroyed when hit, or is a wall
+     */
+    void addBlock(Block block, boolean destructible);
+
+    /**
+     * Takes out a block of a chunk that is being evicted.
+     * @param block the block to take out
+     * @return true if the block was still in play, false if it had been destroyed
+     */
+    boolean removeBlock(Block block);
+}
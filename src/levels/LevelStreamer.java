@@ -0,0 +1,322 @@
+package levels;
+
+import sprites.Block;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A LevelStreamer keeps only the part of a level that is in play loaded. The level is cut
+ * into square chunks, and every block belongs to the chunk its upper-left corner is in.
+ * Each update says which areas are in play: the chunks that may hold a block overlapping
+ * them are loaded into the host, and chunks that have not been in play for a while are
+ * evicted from it again. Blocks destroyed while their chunk was loaded stay destroyed.
+ *
+ * <p>With background loading on, the chunks around the play areas are prefetched: their
+ * blocks are created on a background thread, and only handed to the host once they are in
+ * play. A chunk that comes into play before its prefetch is done is waited for, and one
+ * that was never prefetched is created right away, so which blocks the host has at a
+ * given tick never depends on the background thread and games stay deterministic.</p>
+ *
+ * <p>Apart from the compact LevelFile itself, the memory a level takes and the work an
+ * update does depend on the size of the areas in play, not on the size of the level.</p>
+ */
+public class LevelStreamer {
+    private static final byte UNLOADED = 0;
+    private static final byte PREFETCHING = 1;
+    private static final byte LOADED = 2;
+
+    private final LevelFile level;
+    private final ChunkHost host;
+    private final int chunkSize;
+    private final int columns;
+    private final int rows;
+    private final int maxBlockWidth;
+    private final int maxBlockHeight;
+    private final int[] chunkStart;
+    private final int[] chunkBlocks;
+    private final boolean[] destroyed;
+
+    private final byte[] state;
+    private final Block[][] blocks;
+    private final Future<?>[] prefetches;
+    private final long[] lastUsed;
+    private int[] active = new int[64];
+    private int activeCount;
+    private int evictAfter = 120;
+    private long updates;
+    private int loadedChunks;
+    private int loadedBlocks;
+    private int waits;
+    private final ExecutorService loader;
+
+    /**
+     * Constructs a streamer over the given level. Nothing is loaded until the first update.
+     * @param level      the level to stream
+     * @param host       what the blocks are loaded into
+     * @param chunkSize  the width and height of a chunk in pixels
+     * @param background whether to prefetch chunks on a background thread
+     */
+    public LevelStreamer(LevelFile level, ChunkHost host, int chunkSize, boolean background) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        }
+        this.level = level;
+        this.host = host;
+        this.chunkSize = chunkSize;
+        this.columns = (level.getWidth() + chunkSize - 1) / chunkSize;
+        this.rows = (level.getHeight() + chunkSize - 1) / chunkSize;
+        int chunks = columns * rows;
+        int count = level.getBlockCount();
+
+        // Sort the blocks by chunk with a counting sort, keeping their order within a chunk.
+        int[] chunkOf = new int[count];
+        int widest = 0;
+        int tallest = 0;
+        this.chunkStart = new int[chunks + 1];
+        for (int i = 0; i < count; i++) {
+            chunkOf[i] = chunkAt(level.x(i), level.y(i));
+            chunkStart[chunkOf[i] + 1]++;
+            widest = Math.max(widest, level.width(i));
+            tallest = Math.max(tallest, level.height(i));
+        }
+        for (int c = 0; c < chunks; c++) {
+            chunkStart[c + 1] += chunkStart[c];
+        }
+        this.chunkBlocks = new int[count];
+        int[] next = Arrays.copyOf(chunkStart, chunks);
+        for (int i = 0; i < count; i++) {
+            chunkBlocks[next[chunkOf[i]]++] = i;
+        }
+        this.maxBlockWidth = widest;
+        this.maxBlockHeight = tallest;
+        this.destroyed = new boolean[count];
+
+        this.state = new byte[chunks];
+        this.blocks = new Block[chunks][];
+        this.prefetches = new Future<?>[chunks];
+        this.lastUsed = new long[chunks];
+        this.loader = background ? Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "level-streamer");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    /**
+     * Sets how many updates a chunk stays loaded after it was last in play, so a ball
+     * going back and forth over a chunk border does not load and evict it every time.
+     * @param updates the number of updates, 120 by default
+     */
+    public void setEvictAfter(int updates) {
+        if (updates < 0) {
+            throw new IllegalArgumentException("eviction delay must not be negative: " + updates);
+        }
+        this.evictAfter = updates;
+    }
+
+    /**
+     * Starts an update. Call {@link #require} and {@link #prefetch} for the areas of this
+     * update, then {@link #endUpdate()}.
+     */
+    public void beginUpdate() {
+        updates++;
+    }
+
+    /**
+     * Loads every chunk that may hold a block overlapping the given area into the host
+     * before returning.
+     * @param minX the left edge of the area
+     * @param minY the top edge of the area
+     * @param maxX the right edge of the area
+     * @param maxY the bottom edge of the area
+     */
+    public void require(double minX, double minY, double maxX, double maxY) {
+        forChunks(minX, minY, maxX, maxY, true);
+    }
+
+    /**
+     * Starts creating the blocks of the chunks that may overlap the given area in the
+     * background, so they are ready when they are required. Does nothing without
+     * background loading.
+     * @param minX the left edge of the area
+     * @param minY the top edge of the area
+     * @param maxX the right edge of the area
+     * @param maxY the bottom edge of the area
+     */
+    public void prefetch(double minX, double minY, double maxX, double maxY) {
+        if (loader != null) {
+            forChunks(minX, minY, maxX, maxY, false);
+        }
+    }
+
+    /**
+     * Ends an update: evicts the chunks and drops the prefetches that were not in any
+     * area for longer than the eviction delay.
+     */
+    public void endUpdate() {
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int c = active[i];
+            if (updates - lastUsed[c] <= evictAfter) {
+                active[kept++] = c;
+            } else if (state[c] == LOADED) {
+                evict(c);
+            } else {
+                prefetches[c].cancel(false);
+                prefetches[c] = null;
+                state[c] = UNLOADED;
+            }
+        }
+        activeCount = kept;
+    }
+
+    /**
+     * Evicts every chunk and stops the background thread. The streamer cannot be used
+     * afterwards.
+     */
+    public void close() {
+        for (int i = 0; i < activeCount; i++) {
+            int c = active[i];
+            if (state[c] == LOADED) {
+                evict(c);
+            }
+            state[c] = UNLOADED;
+            prefetches[c] = null;
+        }
+        activeCount = 0;
+        if (loader != null) {
+            loader.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of chunks loaded into the host.
+     * @return the loaded chunk count
+     */
+    public int getLoadedChunks() {
+        return loadedChunks;
+    }
+
+    /**
+     * Returns the number of blocks loaded into the host, destroyed or not.
+     * @return the loaded block count
+     */
+    public int getLoadedBlocks() {
+        return loadedBlocks;
+    }
+
+    /**
+     * Returns how many times a required chunk had to wait for its prefetch to finish.
+     * @return the number of waits
+     */
+    public int getWaits() {
+        return waits;
+    }
+
+    private void forChunks(double minX, double minY, double maxX, double maxY, boolean load) {
+        // A block belongs to the chunk of its upper-left corner, so blocks reaching into
+        // the area can belong to chunks up to one block size further left and up.
+        int fromColumn = clamp((int) Math.floor((minX - maxBlockWidth) / chunkSize), columns);
+        int toColumn = clamp((int) Math.floor(maxX / chunkSize), columns);
+        int fromRow = clamp((int) Math.floor((minY - maxBlockHeight) / chunkSize), rows);
+        int toRow = clamp((int) Math.floor(maxY / chunkSize), rows);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int c = row * columns + column;
+                if (state[c] == UNLOADED) {
+                    activate(c);
+                }
+                lastUsed[c] = updates;
+                if (load && state[c] != LOADED) {
+                    load(c);
+                } else if (!load && state[c] == UNLOADED) {
+                    int chunk = c;
+                    prefetches[c] = loader.submit(() -> create(chunk));
+                    state[c] = PREFETCHING;
+                }
+            }
+        }
+    }
+
+    private void activate(int c) {
+        if (activeCount == active.length) {
+            active = Arrays.copyOf(active, activeCount * 2);
+        }
+        active[activeCount++] = c;
+    }
+
+    private void load(int c) {
+        Block[] created;
+        if (state[c] == PREFETCHING) {
+            if (!prefetches[c].isDone()) {
+                waits++;
+            }
+            created = join(prefetches[c], c);
+            prefetches[c] = null;
+        } else {
+            created = create(c);
+        }
+        for (int k = 0; k < created.length; k++) {
+            if (created[k] != null) {
+                host.addBlock(created[k], level.isDestructible(chunkBlocks[chunkStart[c] + k]));
+                loadedBlocks++;
+            }
+        }
+        blocks[c] = created;
+        state[c] = LOADED;
+        loadedChunks++;
+    }
+
+    private Block[] join(Future<?> prefetch, int c) {
+        try {
+            return (Block[]) prefetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return create(c);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("could not load chunk " + c, e.getCause());
+        }
+    }
+
+    /**
+     * Creates the blocks of a chunk that were not destroyed, in level order, with null in
+     * place of the destroyed ones. Runs on the background thread when prefetching.
+     */
+    private Block[] create(int c) {
+        Block[] created = new Block[chunkStart[c + 1] - chunkStart[c]];
+        for (int k = 0; k < created.length; k++) {
+            int i = chunkBlocks[chunkStart[c] + k];
+            if (!destroyed[i]) {
+                created[k] = level.createBlock(i);
+            }
+        }
+        return created;
+    }
+
+    private void evict(int c) {
+        Block[] loaded = blocks[c];
+        for (int k = 0; k < loaded.length; k++) {
+            if (loaded[k] != null) {
+                if (!host.removeBlock(loaded[k])) {
+                    destroyed[chunkBlocks[chunkStart[c] + k]] = true;
+                }
+                loadedBlocks--;
+            }
+        }
+        blocks[c] = null;
+        state[c] = UNLOADED;
+        loadedChunks--;
+    }
+
+    private int chunkAt(int x, int y) {
+        return clamp(Math.floorDiv(y, chunkSize), rows) * columns + clamp(Math.floorDiv(x, chunkSize), columns);
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(value, count - 1));
+    }
+}
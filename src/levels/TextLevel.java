@@ -0,0 +1,143 @@
+package levels;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * TextLevel reads a level drawn as text, the easy way to write a level by hand before
+ * converting it to a {@link LevelFile}. A layout looks like this:
+ *
+ * <pre>
+ * # the classic level
+ * size 800 600
+ * cell 50 25
+ * origin 180 100
+ * block R ff0000
+ * wall  W 808080
+ * map
+ * RRRRRRRRRRRR
+ * .WWWWWWWWWWW
+ * </pre>
+ *
+ * <p>{@code size} is the size of the level, {@code cell} the size of one character of the
+ * map and {@code origin} where the map's upper-left corner is. {@code block} and
+ * {@code wall} give a character the colour of destructible blocks or of walls, as an RGB
+ * hex number. Every line after {@code map} is a row of cells; any character without a
+ * colour, such as '.' or a space, leaves its cell empty. Lines starting with '#' are
+ * comments.</p>
+ */
+public final class TextLevel {
+
+    private TextLevel() {
+    }
+
+    /**
+     * Reads the layout in the given text file.
+     * @param file the file to read
+     * @return the level
+     * @throws IOException if reading fails or the layout is malformed
+     */
+    public static LevelFile read(Path file) throws IOException {
+        try {
+            return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses a layout given as lines of text.
+     * @param lines the lines of the layout
+     * @return the level
+     */
+    public static LevelFile parse(List<String> lines) {
+        int width = 800;
+        int height = 600;
+        int cellWidth = 50;
+        int cellHeight = 25;
+        int originX = 0;
+        int originY = 0;
+        int[] colorOf = new int[128];
+        int[] flagsOf = new int[128];
+        Color[] colors = new Color[128];
+        int mapStart = -1;
+
+        for (int i = 0; i < lines.size() && mapStart < 0; i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] words = line.split("\\s+");
+            try {
+                switch (words[0]) {
+                    case "size":
+                        expect(words, 3);
+                        width = Integer.parseInt(words[1]);
+                        height = Integer.parseInt(words[2]);
+                        break;
+                    case "cell":
+                        expect(words, 3);
+                        cellWidth = Integer.parseInt(words[1]);
+                        cellHeight = Integer.parseInt(words[2]);
+                        break;
+                    case "origin":
+                        expect(words, 3);
+                        originX = Integer.parseInt(words[1]);
+                        originY = Integer.parseInt(words[2]);
+                        break;
+                    case "block":
+                    case "wall":
+                        expect(words, 3);
+                        if (words[1].length() != 1 || words[1].charAt(0) >= colors.length) {
+                            throw new IllegalArgumentException("a colour is named by one ASCII character");
+                        }
+                        char c = words[1].charAt(0);
+                        colors[c] = new Color(Integer.parseInt(words[2], 16));
+                        flagsOf[c] = words[0].equals("block") ? LevelFile.DESTRUCTIBLE : 0;
+                        break;
+                    case "map":
+                        mapStart = i + 1;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown keyword " + words[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        if (mapStart < 0) {
+            throw new IllegalArgumentException("the layout has no map");
+        }
+        if (cellWidth <= 0 || cellHeight <= 0) {
+            throw new IllegalArgumentException("cell size must be positive: " + cellWidth + "x" + cellHeight);
+        }
+
+        LevelFile level = new LevelFile(width, height);
+        for (int c = 0; c < colors.length; c++) {
+            if (colors[c] != null) {
+                colorOf[c] = level.addColor(colors[c]);
+            }
+        }
+        for (int row = 0; mapStart + row < lines.size(); row++) {
+            String line = lines.get(mapStart + row);
+            for (int col = 0; col < line.length(); col++) {
+                char c = line.charAt(col);
+                if (c < colors.length && colors[c] != null) {
+                    level.addBlock(originX + col * cellWidth, originY + row * cellHeight,
+                            cellWidth, cellHeight, colorOf[c], flagsOf[c]);
+                }
+            }
+        }
+        return level;
+    }
+
+    private static void expect(String[] words, int count) {
+        if (words.length != count) {
+            throw new IllegalArgumentException(words[0] + " takes " + (count - 1) + " values");
+        }
+    }
+}
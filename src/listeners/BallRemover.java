@@ -4,13 +4,18 @@ import core.Game;
 import counters.Counter;
 import sprites.Ball;
 import sprites.Block;
+
+import java.util.BitSet;
+
 /**
  * BallRemover is a HitListener that removes balls from the game when they hit a designated block
  * (typically a "death region"), and updates the counter tracking the number of remaining balls.
+ * A ball that touches the block more than once in a tick is removed and counted once.
  */
-public class BallRemover implements HitListener {
+public class BallRemover implements HitListener, HitBatchListener {
     private final Game game;
     private final Counter remainingBalls;
+    private final BitSet removed = new BitSet();
     /**
      * Constructs a BallRemover with the given game and ball counter.
      * @param game the game instance from which balls should be removed
@@ -26,5 +31,19 @@ public class BallRemover implements HitListener {
         hitter.removeFromGame(game);
         remainingBalls.decrease(1);
     }
+
+    @Override
+    public void hitEvents(HitBatch batch) {
+        // A batch holds the hits of one tick; a ball that touched the block twice in it is counted once.
+        removed.clear();
+        for (int i = 0; i < batch.size(); i++) {
+            int id = batch.ballId(i);
+            if (!removed.get(id)) {
+                removed.set(id);
+                batch.getBall(i).removeFromGame(game);
+                remainingBalls.decrease(1);
+            }
+        }
+    }
 }
 
@@ -8,9 +8,10 @@ import sprites.Block;
 /**
  * BlockRemover is a HitListener that is responsible for removing blocks from the game
  * when they are hit by a ball of a different color, and updating the counter that tracks
- * the number of remaining blocks.
+ * the number of remaining blocks. A block it removes from a batch of hits also leaves its
+ * hit event queue, which frees its id for the blocks that come after it.
  */
-public class BlockRemover implements HitListener {
+public class BlockRemover implements HitListener, HitBatchListener {
     private final Game game;
     private final Counter remainingBlocks;
     /**
@@ -32,5 +33,17 @@ public class BlockRemover implements HitListener {
         }
     }
 
-
-}
\ No newline at end of file
+    @Override
+    public void hitEvents(HitBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            // Only hits by a ball of another colour are recorded, and the first one removes the block.
+            if (batch.isFirstHit(i)) {
+                Block beingHit = batch.getBlock(i);
+                batch.getBall(i).setColor(beingHit.getColor());
+                beingHit.removeFromGame(game);
+                beingHit.leaveHitEventQueue();
+                remainingBlocks.decrease(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package listeners;
+
+import sprites.Ball;
+import sprites.Block;
+
+/**
+ * A HitBatch is a read-only view of the hits a HitEventQueue hands to one of its
+ * HitBatchListeners. Hits are read by their index in the batch, from 0 to size() - 1,
+ * so going over a batch does not allocate.
+ */
+public final class HitBatch {
+    private final HitEventQueue queue;
+    private int[] offsets = new int[0];
+    private int size;
+
+    HitBatch(HitEventQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Points the view at the given events of the queue.
+     */
+    void reset(int[] eventOffsets, int count) {
+        this.offsets = eventOffsets;
+        this.size = count;
+    }
+
+    /**
+     * Returns the number of hits in the batch.
+     * @return the number of hits
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of the block that was hit.
+     * @param i the index of the hit in the batch
+     * @return the block's id in the queue
+     */
+    public int blockId(int i) {
+        return queue.blockId(offset(i));
+    }
+
+    /**
+     * Returns the id of the ball that hit.
+     * @param i the index of the hit in the batch
+     * @return the ball's id in the queue
+     */
+    public int ballId(int i) {
+        return queue.ballId(offset(i));
+    }
+
+    /**
+     * Returns the tick the hit happened on.
+     * @param i the index of the hit in the batch
+     * @return the tick of the hit
+     */
+    public long tick(int i) {
+        return queue.tick(offset(i));
+    }
+
+    /**
+     * Returns the x coordinate of the point the ball touched the block at.
+     * @param i the index of the hit in the batch
+     * @return the x coordinate of the hit
+     */
+    public double x(int i) {
+        return queue.x(offset(i));
+    }
+
+    /**
+     * Returns the y coordinate of the point the ball touched the block at.
+     * @param i the index of the hit in the batch
+     * @return the y coordinate of the hit
+     */
+    public double y(int i) {
+        return queue.y(offset(i));
+    }
+
+    /**
+     * Checks whether this is the first hit on its block in its tick. Since hits are only
+     * handled after the tick, a block that is destroyed by a hit can be hit again by another
+     * ball in the same tick; listeners that destroy or score blocks only count the first hit.
+     * @param i the index of the hit in the batch
+     * @return true if no ball hit the same block earlier in the tick
+     */
+    public boolean isFirstHit(int i) {
+        return queue.isFirstHit(offset(i));
+    }
+
+    /**
+     * Returns the block that was hit.
+     * @param i the index of the hit in the batch
+     * @return the block
+     */
+    public Block getBlock(int i) {
+        return queue.getBlock(blockId(i));
+    }
+
+    /**
+     * Returns the ball that hit.
+     * @param i the index of the hit in the batch
+     * @return the ball
+     */
+    public Ball getBall(int i) {
+        return queue.getBall(ballId(i));
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("hit " + i + " of " + size);
+        }
+        return offsets[i];
+    }
+}
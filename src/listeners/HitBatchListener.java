@@ -0,0 +1,16 @@
+package listeners;
+
+/**
+ * A HitBatchListener is notified of all the hits of a tick at once, after the tick,
+ * instead of one hit at a time in the middle of a ball's move.
+ */
+public interface HitBatchListener {
+
+    /**
+     * This method is called once per tick with the hits of that tick on the blocks the
+     * listener subscribed to, in the order they happened.
+     * The batch is reused, so it is only valid during the call.
+     * @param batch the hits of the tick
+     */
+    void hitEvents(HitBatch batch);
+}
@@ -0,0 +1,339 @@
+package listeners;
+
+import sprites.Ball;
+import sprites.Block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A HitEventQueue collects the hits of a tick and hands them to its HitBatchListeners in
+ * one batch per listener when the tick is over, instead of calling every listener of a
+ * block in the middle of the ball's move.
+ *
+ * <p>Blocks and balls are registered with the queue and get small integer ids, so a hit
+ * is stored as a record of primitives: block id, ball id, tick and contact point. The
+ * records live in preallocated arrays used as a ring buffer; hits that happen while a
+ * batch is being dispatched are kept for the next one. The buffer only grows when a tick
+ * has more hits than it can hold, so recording and dispatching hits does not allocate.</p>
+ *
+ * <p>Listeners subscribe to individual blocks, and each one only sees the hits on its
+ * blocks. Listeners are called in the order they first subscribed.</p>
+ */
+public class HitEventQueue {
+    private static final int MAX_LISTENERS = 32;
+
+    private int[] blockIds;
+    private int[] ballIds;
+    private long[] ticks;
+    private double[] xs;
+    private double[] ys;
+    private int[] masks;
+    private boolean[] firstHits;
+    private int[] selected;
+    private int head;
+    private int count;
+    private int mask;
+
+    private Block[] blocks = new Block[64];
+    private int[] blockMasks = new int[64];
+    private long[] lastHitTicks = new long[64];
+    private int blockCount;
+    private int[] freeBlockIds = new int[16];
+    private int freeBlocks;
+    private int[] retiredBlockIds = new int[16];
+    private int retiredBlocks;
+    private boolean dispatching;
+    private Ball[] balls = new Ball[16];
+    private int ballCount;
+
+    private final List<HitBatchListener> listeners = new ArrayList<>();
+    private final HitBatch batch = new HitBatch(this);
+    private long tick;
+
+    /**
+     * Constructs a queue that holds up to 256 hits per tick before it has to grow.
+     */
+    public HitEventQueue() {
+        this(256);
+    }
+
+    /**
+     * Constructs a queue that holds the given number of hits per tick before it has to grow.
+     * @param capacity the number of hits to preallocate room for
+     */
+    public HitEventQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        allocate(Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        Arrays.fill(lastHitTicks, -1);
+    }
+
+    /**
+     * Registers a block with the queue. Ids are only reused after {@link #removeBlock(int)}.
+     * @param block the block to register
+     * @return the id of the block in this queue
+     */
+    public int addBlock(Block block) {
+        if (freeBlocks > 0) {
+            int id = freeBlockIds[--freeBlocks];
+            blocks[id] = block;
+            return id;
+        }
+        if (blockCount == blocks.length) {
+            int length = blockCount * 2;
+            blocks = Arrays.copyOf(blocks, length);
+            blockMasks = Arrays.copyOf(blockMasks, length);
+            lastHitTicks = Arrays.copyOf(lastHitTicks, length);
+            Arrays.fill(lastHitTicks, blockCount, length, -1);
+        }
+        blocks[blockCount] = block;
+        return blockCount++;
+    }
+
+    /**
+     * Unregisters a block that left the game for good, so the queue no longer holds on to
+     * it and a new block can take its id. Its subscriptions are dropped. Outside a
+     * dispatch it must not be called while hits on the block are waiting; a listener may
+     * call it for a block it is handed, and the id is then freed once the dispatch is
+     * over, so the rest of the batch can still look the block up.
+     * @param id the id of the block
+     */
+    public void removeBlock(int id) {
+        getBlock(id);
+        blockMasks[id] = 0;
+        if (dispatching) {
+            if (retiredBlocks == retiredBlockIds.length) {
+                retiredBlockIds = Arrays.copyOf(retiredBlockIds, retiredBlocks * 2);
+            }
+            retiredBlockIds[retiredBlocks++] = id;
+            return;
+        }
+        free(id);
+    }
+
+    private void free(int id) {
+        blocks[id] = null;
+        lastHitTicks[id] = -1;
+        if (freeBlocks == freeBlockIds.length) {
+            freeBlockIds = Arrays.copyOf(freeBlockIds, freeBlocks * 2);
+        }
+        freeBlockIds[freeBlocks++] = id;
+    }
+
+    /**
+     * Registers a ball with the queue. Ids are never reused.
+     * @param ball the ball to register
+     * @return the id of the ball in this queue
+     */
+    public int addBall(Ball ball) {
+        if (ballCount == balls.length) {
+            balls = Arrays.copyOf(balls, ballCount * 2);
+        }
+        balls[ballCount] = ball;
+        return ballCount++;
+    }
+
+    /**
+     * Returns the block with the given id.
+     * @param id the id the block got when it was registered
+     * @return the block
+     */
+    public Block getBlock(int id) {
+        if (id < 0 || id >= blockCount || blocks[id] == null) {
+            throw new IllegalArgumentException("no block with id " + id);
+        }
+        return blocks[id];
+    }
+
+    /**
+     * Returns the ball with the given id.
+     * @param id the id the ball got when it was registered
+     * @return the ball
+     */
+    public Ball getBall(int id) {
+        if (id < 0 || id >= ballCount) {
+            throw new IllegalArgumentException("no ball with id " + id);
+        }
+        return balls[id];
+    }
+
+    /**
+     * Subscribes a listener to the hits on the given block.
+     * @param blockId  the id of the block
+     * @param listener the listener to hand the block's hits to
+     */
+    public void subscribe(int blockId, HitBatchListener listener) {
+        getBlock(blockId);
+        int index = listeners.indexOf(listener);
+        if (index < 0) {
+            if (listeners.size() == MAX_LISTENERS) {
+                throw new IllegalStateException("a queue supports at most " + MAX_LISTENERS + " listeners");
+            }
+            listeners.add(listener);
+            index = listeners.size() - 1;
+        }
+        blockMasks[blockId] |= 1 << index;
+    }
+
+    /**
+     * Stops handing the hits on the given block to the given listener.
+     * @param blockId  the id of the block
+     * @param listener the listener to unsubscribe
+     */
+    public void unsubscribe(int blockId, HitBatchListener listener) {
+        getBlock(blockId);
+        int index = listeners.indexOf(listener);
+        if (index >= 0) {
+            blockMasks[blockId] &= ~(1 << index);
+        }
+    }
+
+    /**
+     * Sets the tick the following hits happen on.
+     * @param currentTick the number of the tick that is about to run
+     */
+    public void beginTick(long currentTick) {
+        this.tick = currentTick;
+    }
+
+    /**
+     * Records a hit. Hits on blocks nobody subscribed to are dropped.
+     * @param blockId the id of the block that was hit
+     * @param ballId  the id of the ball that hit it
+     * @param x       the x coordinate of the contact point
+     * @param y       the y coordinate of the contact point
+     */
+    public void append(int blockId, int ballId, double x, double y) {
+        getBlock(blockId);
+        getBall(ballId);
+        int subscribers = blockMasks[blockId];
+        if (subscribers == 0) {
+            return;
+        }
+        if (count == masks.length) {
+            grow();
+        }
+        int slot = (head + count) & mask;
+        blockIds[slot] = blockId;
+        ballIds[slot] = ballId;
+        ticks[slot] = tick;
+        xs[slot] = x;
+        ys[slot] = y;
+        masks[slot] = subscribers;
+        firstHits[slot] = lastHitTicks[blockId] != tick;
+        lastHitTicks[blockId] = tick;
+        count++;
+    }
+
+    /**
+     * Returns the number of hits waiting to be dispatched.
+     * @return the number of queued hits
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Hands the queued hits to the listeners, each listener getting the hits on the
+     * blocks it subscribed to in one batch, and empties the queue.
+     */
+    public void dispatch() {
+        int n = count;
+        if (n == 0) {
+            return;
+        }
+        dispatching = true;
+        try {
+            for (int k = 0; k < listeners.size(); k++) {
+                int bit = 1 << k;
+                int m = 0;
+                for (int i = 0; i < n; i++) {
+                    if ((masks[(head + i) & mask] & bit) != 0) {
+                        selected[m++] = i;
+                    }
+                }
+                if (m > 0) {
+                    batch.reset(selected, m);
+                    listeners.get(k).hitEvents(batch);
+                }
+            }
+        } finally {
+            dispatching = false;
+            head = (head + n) & mask;
+            count -= n;
+            while (retiredBlocks > 0) {
+                free(retiredBlockIds[--retiredBlocks]);
+            }
+        }
+    }
+
+    int blockId(int offset) {
+        return blockIds[(head + offset) & mask];
+    }
+
+    int ballId(int offset) {
+        return ballIds[(head + offset) & mask];
+    }
+
+    long tick(int offset) {
+        return ticks[(head + offset) & mask];
+    }
+
+    double x(int offset) {
+        return xs[(head + offset) & mask];
+    }
+
+    double y(int offset) {
+        return ys[(head + offset) & mask];
+    }
+
+    boolean isFirstHit(int offset) {
+        return firstHits[(head + offset) & mask];
+    }
+
+    /**
+     * Doubles the buffer, moving the queued hits to its start so their offsets from the
+     * head stay the same.
+     */
+    private void grow() {
+        int[] oldBlockIds = blockIds;
+        int[] oldBallIds = ballIds;
+        long[] oldTicks = ticks;
+        double[] oldXs = xs;
+        double[] oldYs = ys;
+        int[] oldMasks = masks;
+        boolean[] oldFirstHits = firstHits;
+        int oldMask = mask;
+        allocate(masks.length * 2);
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) & oldMask;
+            blockIds[i] = oldBlockIds[slot];
+            ballIds[i] = oldBallIds[slot];
+            ticks[i] = oldTicks[slot];
+            xs[i] = oldXs[slot];
+            ys[i] = oldYs[slot];
+            masks[i] = oldMasks[slot];
+            firstHits[i] = oldFirstHits[slot];
+        }
+        head = 0;
+    }
+
+    private void allocate(int capacity) {
+        blockIds = new int[capacity];
+        ballIds = new int[capacity];
+        ticks = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        masks = new int[capacity];
+        firstHits = new boolean[capacity];
+        int[] oldSelected = selected;
+        selected = new int[capacity];
+        if (oldSelected != null) {
+            System.arraycopy(oldSelected, 0, selected, 0, oldSelected.length);
+        }
+        mask = capacity - 1;
+    }
+}
@@ -5,9 +5,11 @@ import sprites.Ball;
 import sprites.Block;
 /**
  * ScoreTrackingListener is a HitListener that updates the game score.
- * whenever a block is hit and removed
+ * whenever a block is hit and removed.
+ * As a HitBatchListener it only counts the first hit on each block in a tick, since the
+ * block is removed by then.
  */
-public class ScoreTrackingListener implements HitListener {
+public class ScoreTrackingListener implements HitListener, HitBatchListener {
     private final Counter currentScore;
     /**
      * Constructs a ScoreTrackingListener with the given score counter.
@@ -23,4 +25,13 @@ public class ScoreTrackingListener implements HitListener {
             currentScore.increase(5);
         }
     }
+
+    @Override
+    public void hitEvents(HitBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isFirstHit(i)) {
+                currentScore.increase(5);
+            }
+        }
+    }
 }
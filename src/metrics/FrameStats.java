@@ -0,0 +1,160 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * FrameStats collects the timing of every phase of the game loop into LogHistograms,
+ * together with the frame rate, the number of frames that missed their deadline and how
+ * many pixels each frame redrew.
+ */
+public class FrameStats {
+    /**
+     * The phases of a frame that are timed separately.
+     */
+    public enum Phase {
+        /** Advancing the sprites by one tick (notifyAllTimePassed). */
+        TICK,
+        /** Drawing the sprites onto the surface (drawDirtyOn and the frame blit). */
+        DRAW,
+        /** Presenting the surface on screen (gui.show). */
+        SHOW,
+        /** The whole frame, from the start of one frame to the start of the next. */
+        FRAME
+    }
+
+    private static final long ONE_SECOND = 1000000000L;
+
+    private final LogHistogram[] histograms = new LogHistogram[Phase.values().length];
+    private final LogHistogram pixelsDrawn = new LogHistogram();
+    private long droppedFrames;
+    private long droppedTicks;
+    private long lastFrameStart = -1;
+    private long windowStart = -1;
+    private int framesInWindow;
+    private double fps;
+
+    /**
+     * Constructs empty frame statistics.
+     */
+    public FrameStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LogHistogram();
+        }
+    }
+
+    /**
+     * Records how long a phase took.
+     * @param phase the phase that was timed
+     * @param nanos its duration in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Marks the start of a new frame, recording the length of the previous frame and
+     * updating the frame rate once per second.
+     * @param now the current System.nanoTime
+     */
+    public void frameStarted(long now) {
+        if (lastFrameStart >= 0) {
+            record(Phase.FRAME, now - lastFrameStart);
+        }
+        lastFrameStart = now;
+        if (windowStart < 0) {
+            windowStart = now;
+        }
+        framesInWindow++;
+        if (now - windowStart >= ONE_SECOND) {
+            fps = framesInWindow * (double) ONE_SECOND / (now - windowStart);
+            windowStart = now;
+            framesInWindow = 0;
+        }
+    }
+
+    /**
+     * Counts a frame that finished after its deadline.
+     */
+    public void frameDropped() {
+        droppedFrames++;
+    }
+
+    /**
+     * Counts ticks that were skipped because the loop fell too far behind.
+     * @param ticks the number of skipped ticks
+     */
+    public void ticksDropped(long ticks) {
+        droppedTicks += ticks;
+    }
+
+    /**
+     * Records how many pixels a frame redrew.
+     * @param pixels the number of redrawn pixels
+     */
+    public void recordPixelsDrawn(long pixels) {
+        pixelsDrawn.record(pixels);
+    }
+
+    /**
+     * Returns the histogram of pixels redrawn per frame.
+     * @return the pixel histogram
+     */
+    public LogHistogram getPixelsDrawn() {
+        return pixelsDrawn;
+    }
+
+    /**
+     * Returns the histogram of a phase.
+     * @param phase the phase
+     * @return its histogram
+     */
+    public LogHistogram get(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Returns the frame rate measured over the last full second.
+     * @return frames per second
+     */
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * Returns the number of frames that missed their deadline.
+     * @return the dropped frame count
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Returns the number of ticks skipped to catch up.
+     * @return the dropped tick count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Writes every histogram to a CSV file, one row per non-empty bucket,
+     * followed by the dropped frame and tick counts.
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.append("phase,lower_ns,upper_ns,count\n");
+            for (Phase phase : Phase.values()) {
+                get(phase).writeCsv(phase.name().toLowerCase(), out);
+            }
+            pixelsDrawn.writeCsv("pixels_drawn", out);
+            out.append("dropped_frames,,,").append(Long.toString(droppedFrames)).append('\n');
+            out.append("dropped_ticks,,,").append(Long.toString(droppedTicks)).append('\n');
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package metrics;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A LogHistogram counts non-negative long values (typically nanoseconds) in logarithmic
+ * buckets: every power of two is split into 16 sub-buckets, so any recorded value is
+ * known to within 1/16 of itself. All buckets are allocated up front, which keeps
+ * {@link #record(long)} free of allocation and cheap enough to call every frame.
+ */
+public class LogHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BITS);
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Records a single value. Negative values are recorded as 0.
+     * @param value the value to record
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts[bucketOf(v)]++;
+        count++;
+        sum += v;
+        if (v > max) {
+            max = v;
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     * @return the exact maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * @return the exact mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the value below which the given percentage of recorded values fall.
+     * The answer is the upper edge of the bucket holding that value, capped at the maximum.
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one, as if they had been
+     * recorded here. Lets threads keep their own histograms and combine them at the end.
+     * @param other the histogram to add
+     */
+    public void add(LogHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * Writes one CSV row per non-empty bucket: the name, the bucket's lower and upper
+     * bounds, and how many values fell into it.
+     * @param name the name written in the first column of every row
+     * @param out  where the rows are written
+     * @throws IOException if writing fails
+     */
+    public void writeCsv(String name, Appendable out) throws IOException {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                out.append(name).append(',')
+                        .append(Long.toString(lowerBound(i))).append(',')
+                        .append(Long.toString(upperBound(i))).append(',')
+                        .append(Long.toString(counts[i])).append('\n');
+            }
+        }
+    }
+
+    private static int bucketOf(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return lowerBound(bucket) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,380 @@
+package net;
+
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * A GameClient is the headless end of a connection to a GameServer. It keeps a copy of
+ * the world as the server last described it, applies the full states and deltas the
+ * server sends, and answers every update with its paddle input and the frame it applied,
+ * which the server builds the next deltas against.
+ *
+ * <p>The socket is non-blocking: {@link #receive()} applies whatever has arrived and
+ * returns right away, so one thread can serve many clients, for example through a
+ * selector on their {@link #getChannel() channels}.</p>
+ */
+public class GameClient implements Closeable {
+    /** The longest update accepted, enough for a full state of a very large level. */
+    private static final int MAX_UPDATE = 1 << 24;
+
+    private final SocketChannel channel;
+    private ByteBuffer in = ByteBuffer.allocate(8192);
+    private ByteBuffer out = ByteBuffer.allocate(64);
+    private final ByteBuffer payload = ByteBuffer.allocate(16);
+    private final WorldState[] history = new WorldState[Wire.HISTORY];
+    private WorldState current;
+    private int input;
+
+    private int[] blockBounds = new int[64 * 4];
+    private int[] blockColors = new int[64];
+    private boolean[] blockAlive = new boolean[64];
+    private int liveBlocks;
+    private int paddleY;
+    private int paddleWidth;
+    private int paddleHeight;
+    private int paddleColor;
+
+    private long bytesReceived;
+    private long fullUpdates;
+    private long deltaUpdates;
+
+    private GameClient(SocketChannel channel) {
+        this.channel = channel;
+        for (int i = 0; i < history.length; i++) {
+            history[i] = new WorldState();
+        }
+    }
+
+    /**
+     * Connects to a server and switches the connection to non-blocking mode.
+     * @param address the address of the server
+     * @return the connected client
+     * @throws IOException if the connection fails
+     */
+    public static GameClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return new GameClient(channel);
+    }
+
+    /**
+     * Returns the channel of the connection, to register it with a selector.
+     * @return the socket channel
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Sets the paddle input sent with the next acknowledgement.
+     * @param bits a combination of InputProvider.LEFT and InputProvider.RIGHT, or 0
+     */
+    public void setInput(int bits) {
+        this.input = bits;
+    }
+
+    /**
+     * Applies every update that has fully arrived, then acknowledges the last one.
+     * Never blocks.
+     * @return the number of updates applied
+     * @throws IOException if the connection fails, is closed by the server or receives a
+     *                     malformed update, one that is read short or long of its frame,
+     *                     or one longer than 16 MiB
+     */
+    public int receive() throws IOException {
+        int applied = 0;
+        while (true) {
+            int read = channel.read(in);
+            if (read < 0) {
+                throw new EOFException("the server closed the connection");
+            }
+            bytesReceived += read;
+            in.flip();
+            int length;
+            while ((length = nextFrame()) >= 0) {
+                ByteBuffer frame = in.slice();
+                frame.limit(length);
+                in.position(in.position() + length);
+                try {
+                    apply(frame);
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    throw new IOException("malformed update", e);
+                }
+                if (frame.hasRemaining()) {
+                    throw new IOException("malformed update: " + frame.remaining() + " bytes past its end");
+                }
+                applied++;
+            }
+            boolean full = in.position() == 0 && in.limit() == in.capacity();
+            in.compact();
+            if (full) {
+                in = Wire.ensure(in, in.capacity());
+            } else if (read == 0 || in.hasRemaining()) {
+                break;
+            }
+        }
+        if (applied > 0) {
+            payload.clear();
+            payload.put((byte) input);
+            Wire.putVarint(payload, current.frame + 1);
+            payload.flip();
+            out = Wire.frame(out, Wire.INPUT, payload);
+        }
+        if (out.position() > 0) {
+            out.flip();
+            channel.write(out);
+            out.compact();
+        }
+        return applied;
+    }
+
+    private int nextFrame() throws IOException {
+        try {
+            return Wire.nextFrame(in, MAX_UPDATE);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("malformed update", e);
+        }
+    }
+
+    private void apply(ByteBuffer message) {
+        byte type = message.get();
+        long frame = Wire.getVarint(message);
+        WorldState state = history[(int) (frame % Wire.HISTORY)];
+        if (type == Wire.FULL) {
+            readFull(message, state);
+            fullUpdates++;
+        } else if (type == Wire.DELTA) {
+            long baseFrame = frame - Wire.getVarint(message);
+            WorldState base = history[(int) (baseFrame % Wire.HISTORY)];
+            if (base.frame != baseFrame || base == state) {
+                throw new IllegalArgumentException("delta against frame " + baseFrame + ", which is not kept");
+            }
+            state.readDelta(base, message);
+            int removed = (int) Wire.getVarint(message);
+            for (int k = 0; k < removed; k++) {
+                int id = (int) Wire.getVarint(message);
+                if (id < blockAlive.length && blockAlive[id]) {
+                    blockAlive[id] = false;
+                    liveBlocks--;
+                }
+            }
+            deltaUpdates++;
+        } else {
+            throw new IllegalArgumentException("unknown message type " + type);
+        }
+        state.frame = frame;
+        current = state;
+    }
+
+    private void readFull(ByteBuffer message, WorldState state) {
+        state.score = (int) Wire.getVarint(message);
+        state.remainingBalls = (int) Wire.getVarint(message);
+        state.remainingBlocks = (int) Wire.getVarint(message);
+        state.paddleX = (int) Wire.getSigned(message);
+        paddleY = (int) Wire.getSigned(message);
+        paddleWidth = (int) Wire.getSigned(message);
+        paddleHeight = (int) Wire.getSigned(message);
+        paddleColor = message.getInt();
+        state.balls = 0;
+        int balls = (int) Wire.getVarint(message);
+        for (int i = 0; i < balls; i++) {
+            int id = (int) Wire.getVarint(message);
+            int x = (int) Wire.getSigned(message);
+            int y = (int) Wire.getSigned(message);
+            int radius = (int) Wire.getVarint(message);
+            state.addBall(id, x, y, radius, message.getInt());
+        }
+        Arrays.fill(blockAlive, false);
+        liveBlocks = 0;
+        int blocks = (int) Wire.getVarint(message);
+        for (int k = 0; k < blocks; k++) {
+            int id = (int) Wire.getVarint(message);
+            if (id >= blockAlive.length) {
+                int length = Math.max(id + 1, blockAlive.length * 2);
+                blockBounds = Arrays.copyOf(blockBounds, length * 4);
+                blockColors = Arrays.copyOf(blockColors, length);
+                blockAlive = Arrays.copyOf(blockAlive, length);
+            }
+            for (int j = 0; j < 4; j++) {
+                blockBounds[id * 4 + j] = (int) Wire.getSigned(message);
+            }
+            blockColors[id] = message.getInt();
+            blockAlive[id] = true;
+            liveBlocks++;
+        }
+    }
+
+    /**
+     * Closes the connection.
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the server frame of the last applied update.
+     * @return the frame, or -1 before the first update
+     */
+    public long getFrame() {
+        return current == null ? -1 : current.frame;
+    }
+
+    /**
+     * Returns the score of the game as of the last update.
+     * @return the score
+     */
+    public int getScore() {
+        return current == null ? 0 : current.score;
+    }
+
+    /**
+     * Returns the ball counter of the game as of the last update.
+     * @return the number of balls still in play
+     */
+    public int getRemainingBalls() {
+        return current == null ? 0 : current.remainingBalls;
+    }
+
+    /**
+     * Returns the block counter of the game as of the last update.
+     * @return the number of destructible blocks not destroyed yet
+     */
+    public int getRemainingBlocks() {
+        return current == null ? 0 : current.remainingBlocks;
+    }
+
+    /**
+     * Returns the number of blocks the client knows are still there, walls included.
+     * @return the live block count
+     */
+    public int getLiveBlocks() {
+        return liveBlocks;
+    }
+
+    /**
+     * Returns the number of balls in the last update.
+     * @return the ball count
+     */
+    public int getBallCount() {
+        return current == null ? 0 : current.balls;
+    }
+
+    /**
+     * Returns the x coordinate of a ball's centre, to within 1/8 of a pixel.
+     * @param i the index of the ball, below {@link #getBallCount()}
+     * @return the x coordinate in pixels
+     */
+    public double getBallX(int i) {
+        return (double) current.ballX[i] / Wire.SCALE;
+    }
+
+    /**
+     * Returns the y coordinate of a ball's centre, to within 1/8 of a pixel.
+     * @param i the index of the ball, below {@link #getBallCount()}
+     * @return the y coordinate in pixels
+     */
+    public double getBallY(int i) {
+        return (double) current.ballY[i] / Wire.SCALE;
+    }
+
+    /**
+     * Returns the x coordinate of the paddle's left edge, to within 1/8 of a pixel.
+     * @return the x coordinate in pixels
+     */
+    public double getPaddleX() {
+        return current == null ? 0 : (double) current.paddleX / Wire.SCALE;
+    }
+
+    /**
+     * Returns the paddle as of the last update, to within 1/8 of a pixel.
+     * @return the paddle's rectangle, or null before the first update
+     */
+    public Rectangle getPaddle() {
+        if (current == null) {
+            return null;
+        }
+        return new Rectangle(new Point(getPaddleX(), (double) paddleY / Wire.SCALE),
+                (double) paddleWidth / Wire.SCALE, (double) paddleHeight / Wire.SCALE);
+    }
+
+    /**
+     * Returns the colour of the paddle.
+     * @return the colour, or null before the first update
+     */
+    public Color getPaddleColor() {
+        return current == null ? null : new Color(paddleColor, true);
+    }
+
+    /**
+     * Checks whether the block with the given id is still there.
+     * @param id the id of the block in the current game
+     * @return true if the block exists and was not destroyed
+     */
+    public boolean isBlockAlive(int id) {
+        return id >= 0 && id < blockAlive.length && blockAlive[id];
+    }
+
+    /**
+     * Returns the rectangle of a block that is still there.
+     * @param id the id of the block in the current game
+     * @return the block's rectangle
+     */
+    public Rectangle getBlockBounds(int id) {
+        if (!isBlockAlive(id)) {
+            throw new IllegalArgumentException("no block with id " + id);
+        }
+        return new Rectangle(new Point((double) blockBounds[id * 4] / Wire.SCALE,
+                (double) blockBounds[id * 4 + 1] / Wire.SCALE),
+                (double) blockBounds[id * 4 + 2] / Wire.SCALE, (double) blockBounds[id * 4 + 3] / Wire.SCALE);
+    }
+
+    /**
+     * Returns the colour of a block that is still there.
+     * @param id the id of the block in the current game
+     * @return the block's colour
+     */
+    public Color getBlockColor(int id) {
+        if (!isBlockAlive(id)) {
+            throw new IllegalArgumentException("no block with id " + id);
+        }
+        return new Color(blockColors[id], true);
+    }
+
+    /**
+     * Returns the number of bytes received from the server.
+     * @return the bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the number of full states applied.
+     * @return the full update count
+     */
+    public long getFullUpdates() {
+        return fullUpdates;
+    }
+
+    /**
+     * Returns the number of deltas applied.
+     * @return the delta update count
+     */
+    public long getDeltaUpdates() {
+        return deltaUpdates;
+    }
+}
@@ -0,0 +1,509 @@
+package net;
+
+import core.Game;
+import geometry.Rectangle;
+import levels.LevelFile;
+import listeners.HitBatchListener;
+import metrics.LogHistogram;
+import sprites.Block;
+import sprites.Paddle;
+import sprites.Sprite;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The GameServer runs games authoritatively for clients connected over TCP. Every client
+ * gets a game of its own that only the server simulates; the client sends its paddle
+ * input and receives what happened. All games tick together at the tick rate on the
+ * thread that calls {@link #run()}, which also serves every socket through one selector.
+ *
+ * <p>Each frame a client is sent only what changed since the last frame it acknowledged:
+ * the counters and the paddle if they changed, the balls that moved, and the ids of the
+ * blocks destroyed since. Blocks are sent once, in the full state a client gets when it
+ * has nothing acknowledged yet, such as when it connects or a new game starts. A client
+ * that cannot keep up with the frames is not sent more while its socket is backed up;
+ * its next delta, still against what it acknowledged, covers the frames it missed.</p>
+ *
+ * <p>When a client's game ends a new one is started for it, so a connection can play on
+ * for as long as it likes. The statistics are meant to be read once run has returned.</p>
+ */
+public class GameServer implements Closeable {
+    private static final int READ_BUFFER = 256;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final List<Connection> connections = new ArrayList<>();
+    private LevelFile level;
+    private int ticksPerSecond = 60;
+    private int maxCatchUpTicks = 5;
+    private volatile boolean running = true;
+    private long frame;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    private long ticks;
+    private long droppedTicks;
+    private long clientFrames;
+    private long bytesSent;
+    private long skippedFrames;
+    private long busyNanos;
+    private final LogHistogram deltaBytes = new LogHistogram();
+    private final LogHistogram fullBytes = new LogHistogram();
+
+    /**
+     * Opens a server socket on the given address. Nothing is served until {@link #run()}.
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the socket cannot be opened
+     */
+    public GameServer(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return the local port
+     * @throws IOException if the socket is closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Sets how many frames per second the games tick and updates are sent.
+     * @param ticksPerSecond the tick rate, 60 by default
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("tick rate must be positive: " + ticksPerSecond);
+        }
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    /**
+     * Plays the given level instead of the built-in one in every game started from now on.
+     * Block ids must stay fixed for a whole game, so the level must fit on the screen and
+     * not be streamed.
+     * @param layout the level to play, or null for the built-in one
+     */
+    public void setLevel(LevelFile layout) {
+        if (layout != null && (layout.getWidth() > 800 || layout.getHeight() > 600)) {
+            throw new IllegalArgumentException("the server only plays levels that fit on the screen");
+        }
+        this.level = layout;
+    }
+
+    /**
+     * Serves clients and ticks their games until {@link #close()} is called, then closes
+     * every connection.
+     * @throws IOException if the selector or the server socket fails
+     */
+    public void run() throws IOException {
+        long nanosPerTick = 1000000000L / ticksPerSecond;
+        long next = System.nanoTime() + nanosPerTick;
+        try {
+            while (running) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    selector.select(Math.max(1, wait / 1000000));
+                } else {
+                    selector.selectNow();
+                }
+                long start = System.nanoTime();
+                handleSelected();
+                long now = System.nanoTime();
+                if (now >= next) {
+                    tick();
+                    ticks++;
+                    next += nanosPerTick;
+                    if (now - next > maxCatchUpTicks * nanosPerTick) {
+                        long behind = (now - next) / nanosPerTick;
+                        droppedTicks += behind;
+                        next += behind * nanosPerTick;
+                    }
+                }
+                busyNanos += System.nanoTime() - start;
+            }
+        } finally {
+            for (Connection c : connections) {
+                c.channel.close();
+            }
+            connections.clear();
+            selector.close();
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * Stops the server. Safe to call from any thread; {@link #run()} returns shortly after.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void handleSelected() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Connection c = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(c);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush(c);
+                }
+            } catch (IOException | IllegalArgumentException | BufferUnderflowException e) {
+                // One broken or misbehaving client only loses its own connection.
+                drop(c);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection c = new Connection(channel);
+        c.key = channel.register(selector, SelectionKey.OP_READ, c);
+        startGame(c);
+        connections.add(c);
+    }
+
+    private void drop(Connection c) {
+        connections.remove(c);
+        c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException e) {
+            // The connection is gone either way.
+        }
+    }
+
+    /**
+     * Reads the input messages that arrived from a client. Every message is parsed within
+     * its own frame, so a malformed one cannot read into the next; it throws instead, which
+     * drops the client.
+     */
+    private void read(Connection c) throws IOException {
+        if (c.channel.read(c.in) < 0) {
+            drop(c);
+            return;
+        }
+        c.in.flip();
+        int length;
+        while ((length = Wire.nextFrame(c.in)) >= 0) {
+            ByteBuffer frame = c.in.slice();
+            frame.limit(length);
+            c.in.position(c.in.position() + length);
+            if (length == 0 || frame.get() != Wire.INPUT) {
+                continue;
+            }
+            byte input = frame.get();
+            long acked = Wire.getVarint(frame) - 1;
+            c.input = input;
+            c.acked = Math.max(c.acked, acked);
+        }
+        if (c.in.position() == 0 && c.in.limit() == c.in.capacity()) {
+            throw new IllegalArgumentException("message too long");
+        }
+        c.in.compact();
+    }
+
+    private void flush(Connection c) {
+        try {
+            c.out.flip();
+            c.channel.write(c.out);
+            c.out.compact();
+            c.key.interestOps(c.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        } catch (IOException e) {
+            drop(c);
+        }
+    }
+
+    /**
+     * Starts a new game for a client. Nothing of the old game can be a base any more, so
+     * the client is sent the full state next.
+     */
+    private void startGame(Connection c) {
+        c.game = new Game(() -> c.input);
+        if (level != null) {
+            c.game.setLevel(level);
+        }
+        c.game.initialize();
+        c.blockIds.clear();
+        c.blocks = 0;
+        for (Sprite s : c.game.getSprites()) {
+            if (s instanceof Block) {
+                Block block = (Block) s;
+                if (c.blocks == c.blockList.length) {
+                    c.blockList = Arrays.copyOf(c.blockList, c.blocks * 2);
+                }
+                c.blockIds.put(block, c.blocks);
+                c.blockList[c.blocks++] = block;
+                c.game.getHitEvents().subscribe(block.getHitId(), c.watcher);
+            }
+        }
+        c.removed = 0;
+        for (WorldState state : c.history) {
+            state.frame = -1;
+        }
+        c.acked = -1;
+        c.fullFrame = -1;
+    }
+
+    /**
+     * Ticks every game and sends every client its update.
+     */
+    private void tick() {
+        frame++;
+        // Backwards, since a client whose socket fails is dropped from the list on the way.
+        for (int i = connections.size() - 1; i >= 0; i--) {
+            Connection c = connections.get(i);
+            if (c.game.isOver()) {
+                c.game.end();
+                startGame(c);
+            } else {
+                c.game.step(1);
+            }
+            for (Block block : c.hitBlocks) {
+                Integer id = c.game.containsCollidable(block) ? null : c.blockIds.remove(block);
+                if (id != null) {
+                    c.logRemoval(id, frame);
+                }
+            }
+            c.hitBlocks.clear();
+            WorldState state = c.history[(int) (frame % Wire.HISTORY)];
+            state.capture(c.game, frame);
+            clientFrames++;
+            send(c, state);
+        }
+    }
+
+    private void send(Connection c, WorldState state) {
+        if (c.out.position() > 0) {
+            skippedFrames++;
+            return;
+        }
+        WorldState base = c.acked < 0 ? null : c.history[(int) (c.acked % Wire.HISTORY)];
+        if (base == null || base.frame != c.acked) {
+            if (c.fullFrame >= 0 && c.acked < c.fullFrame && frame - c.fullFrame < Wire.HISTORY) {
+                // The full state is on its way; deltas follow once it is acknowledged.
+                skippedFrames++;
+                return;
+            }
+            writeFull(c, state);
+            c.fullFrame = frame;
+        } else {
+            writeDelta(c, base, state);
+        }
+        flush(c);
+    }
+
+    private void writeFull(Connection c, WorldState state) {
+        scratch = clear(scratch, 64 + state.balls * 24 + c.blocks * 28);
+        Wire.putVarint(scratch, frame);
+        Wire.putVarint(scratch, state.score);
+        Wire.putVarint(scratch, state.remainingBalls);
+        Wire.putVarint(scratch, state.remainingBlocks);
+        Paddle paddle = c.game.getPaddle();
+        putRectangle(scratch, paddle.getCollisionRectangle());
+        scratch.putInt(paddle.getColor().getRGB());
+        Wire.putVarint(scratch, state.balls);
+        for (int i = 0; i < state.balls; i++) {
+            Wire.putVarint(scratch, state.ballIds[i]);
+            Wire.putSigned(scratch, state.ballX[i]);
+            Wire.putSigned(scratch, state.ballY[i]);
+            Wire.putVarint(scratch, state.ballRadii[i]);
+            scratch.putInt(state.ballColors[i]);
+        }
+        Wire.putVarint(scratch, c.blockIds.size());
+        for (int id = 0; id < c.blocks; id++) {
+            Block block = c.blockList[id];
+            if (c.blockIds.containsKey(block)) {
+                Wire.putVarint(scratch, id);
+                putRectangle(scratch, block.getCollisionRectangle());
+                scratch.putInt(block.getColor().getRGB());
+            }
+        }
+        scratch.flip();
+        fullBytes.record(scratch.remaining());
+        bytesSent += scratch.remaining();
+        c.out = Wire.frame(c.out, Wire.FULL, scratch);
+    }
+
+    private void writeDelta(Connection c, WorldState base, WorldState state) {
+        int first = c.removed;
+        while (first > 0 && c.removedFrames[first - 1] > base.frame) {
+            first--;
+        }
+        scratch = clear(scratch, 64 + (state.balls + base.balls) * 24 + (c.removed - first) * 5);
+        Wire.putVarint(scratch, frame);
+        Wire.putVarint(scratch, frame - base.frame);
+        state.writeDelta(base, scratch);
+        Wire.putVarint(scratch, c.removed - first);
+        for (int k = first; k < c.removed; k++) {
+            Wire.putVarint(scratch, c.removedIds[k]);
+        }
+        scratch.flip();
+        deltaBytes.record(scratch.remaining());
+        bytesSent += scratch.remaining();
+        c.out = Wire.frame(c.out, Wire.DELTA, scratch);
+    }
+
+    private static ByteBuffer clear(ByteBuffer buffer, int capacity) {
+        if (buffer.capacity() < capacity) {
+            return ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void putRectangle(ByteBuffer out, Rectangle r) {
+        Wire.putSigned(out, Wire.quantize(r.getUpperLeft().getX()));
+        Wire.putSigned(out, Wire.quantize(r.getUpperLeft().getY()));
+        Wire.putSigned(out, Wire.quantize(r.getWidth()));
+        Wire.putSigned(out, Wire.quantize(r.getHeight()));
+    }
+
+    /**
+     * Returns the number of frames the server ticked.
+     * @return the frame count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the number of frames dropped because the server fell too far behind.
+     * @return the dropped frame count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Returns the number of client frames: every tick of every client's game.
+     * @return the client frame count
+     */
+    public long getClientFrames() {
+        return clientFrames;
+    }
+
+    /**
+     * Returns the number of client frames not sent because the client was still
+     * receiving an earlier one or had not acknowledged its full state yet.
+     * @return the skipped frame count
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Returns the payload bytes sent to all clients, not counting the frame headers.
+     * @return the bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Returns the time spent serving sockets and ticking games rather than waiting.
+     * @return the busy time in nanoseconds
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * Returns the distribution of delta payload sizes.
+     * @return the delta size histogram, in bytes
+     */
+    public LogHistogram getDeltaBytes() {
+        return deltaBytes;
+    }
+
+    /**
+     * Returns the distribution of full state payload sizes.
+     * @return the full state size histogram, in bytes
+     */
+    public LogHistogram getFullBytes() {
+        return fullBytes;
+    }
+
+    /**
+     * A connected client: its socket buffers, its game, the ids its blocks are known by,
+     * the blocks removed so far and the states of its recent frames.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER);
+        private ByteBuffer out = ByteBuffer.allocate(1024);
+        private int input;
+        private long acked = -1;
+        private long fullFrame = -1;
+
+        private Game game;
+        private final Map<Block, Integer> blockIds = new IdentityHashMap<>();
+        private Block[] blockList = new Block[64];
+        private int blocks;
+        private final List<Block> hitBlocks = new ArrayList<>();
+        private final HitBatchListener watcher = batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                hitBlocks.add(batch.getBlock(i));
+            }
+        };
+        private int[] removedIds = new int[64];
+        private long[] removedFrames = new long[64];
+        private int removed;
+        private final WorldState[] history = new WorldState[Wire.HISTORY];
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            for (int i = 0; i < history.length; i++) {
+                history[i] = new WorldState();
+            }
+        }
+
+        private void logRemoval(int id, long atFrame) {
+            if (removed == removedIds.length) {
+                removedIds = Arrays.copyOf(removedIds, removed * 2);
+                removedFrames = Arrays.copyOf(removedFrames, removed * 2);
+            }
+            removedIds[removed] = id;
+            removedFrames[removed] = atFrame;
+            removed++;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package net;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire holds the message types of the network protocol and the helpers both ends use to
+ * encode them.
+ *
+ * <p>Every message is framed as its length as a varint, a type byte and the payload.
+ * Numbers are unsigned varints (7 bits per byte, high bit set on all but the last byte,
+ * like InputRecording), or zigzag varints when they can be negative. Coordinates are
+ * sent in fixed point, 1/8 of a pixel, so a ball that moved a few pixels since the base
+ * state costs a byte per axis.</p>
+ */
+final class Wire {
+    /** Server to client: the whole world, the new base when there is no acknowledged one. */
+    static final byte FULL = 1;
+    /** Server to client: what changed since a state the client acknowledged. */
+    static final byte DELTA = 2;
+    /** Client to server: the paddle input and the last frame the client applied. */
+    static final byte INPUT = 3;
+
+    /** Fixed-point steps per pixel. */
+    static final int SCALE = 8;
+    /** Number of past frames each end keeps to apply or build deltas against. */
+    static final int HISTORY = 64;
+
+    private Wire() {
+    }
+
+    /**
+     * Converts a coordinate to fixed point.
+     */
+    static int quantize(double v) {
+        return (int) Math.round(v * SCALE);
+    }
+
+    static void putVarint(ByteBuffer out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * @throws BufferUnderflowException if the buffer ends in the middle of it
+     */
+    static long getVarint(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("varint longer than 64 bits");
+    }
+
+    static void putSigned(ByteBuffer out, long v) {
+        putVarint(out, (v << 1) ^ (v >> 63));
+    }
+
+    static long getSigned(ByteBuffer in) {
+        long v = getVarint(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Appends a framed message to a buffer in write mode, growing it when needed.
+     * @param out     the buffer to append to
+     * @param type    the message type
+     * @param payload the payload, flipped for reading
+     * @return the buffer, or a larger copy of it
+     */
+    static ByteBuffer frame(ByteBuffer out, byte type, ByteBuffer payload) {
+        int length = payload.remaining() + 1;
+        out = ensure(out, length + 5);
+        putVarint(out, length);
+        out.put(type);
+        out.put(payload);
+        return out;
+    }
+
+    /**
+     * Returns a buffer in write mode with room for the given number of bytes more,
+     * copying the buffer into a larger one if it has to.
+     */
+    static ByteBuffer ensure(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * Starts reading the next framed message from a buffer in read mode.
+     * @param in the received bytes
+     * @return the length of the message, with the buffer positioned at its type byte, or
+     *         -1 with the buffer unchanged if the message has not fully arrived
+     * @throws IllegalArgumentException if the length is not a valid message length
+     */
+    static int nextFrame(ByteBuffer in) {
+        return nextFrame(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Starts reading the next framed message from a buffer in read mode, refusing one
+     * longer than the given limit as soon as its length has arrived.
+     * @param in  the received bytes
+     * @param max the longest message accepted
+     * @return the length of the message, with the buffer positioned at its type byte, or
+     *         -1 with the buffer unchanged if the message has not fully arrived
+     * @throws IllegalArgumentException if the length is negative or above the limit
+     */
+    static int nextFrame(ByteBuffer in, int max) {
+        int start = in.position();
+        try {
+            long length = getVarint(in);
+            if (length < 0 || length > max) {
+                throw new IllegalArgumentException("frame length " + Long.toUnsignedString(length));
+            }
+            if (in.remaining() >= length) {
+                return (int) length;
+            }
+        } catch (BufferUnderflowException e) {
+            // The length itself has not fully arrived.
+        }
+        in.position(start);
+        return -1;
+    }
+}
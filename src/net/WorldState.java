@@ -0,0 +1,217 @@
+package net;
+
+import core.Game;
+import sprites.Ball;
+import sprites.Sprite;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A WorldState is the part of the world that changes from frame to frame, as the client
+ * sees it: the counters, the paddle position and every ball, in fixed point. The server
+ * keeps one per recent frame to build deltas against, and the client one per recent
+ * frame to apply them to. Blocks only ever disappear, so they are not part of it.
+ */
+final class WorldState {
+    private static final int SCORE = 1;
+    private static final int BALLS = 2;
+    private static final int BLOCKS = 4;
+    private static final int PADDLE = 8;
+
+    private static final int COLOR_CHANGED = 1;
+    private static final int NEW_BALL = 2;
+
+    long frame = -1;
+    int score;
+    int remainingBalls;
+    int remainingBlocks;
+    int paddleX;
+    int balls;
+    int[] ballIds = new int[4];
+    int[] ballX = new int[4];
+    int[] ballY = new int[4];
+    int[] ballRadii = new int[4];
+    int[] ballColors = new int[4];
+
+    /**
+     * Captures the current state of a game.
+     */
+    void capture(Game game, long currentFrame) {
+        frame = currentFrame;
+        score = game.getScore();
+        remainingBalls = game.getRemainingBalls();
+        remainingBlocks = game.getRemainingBlocks();
+        paddleX = Wire.quantize(game.getPaddle().getCollisionRectangle().getUpperLeft().getX());
+        balls = 0;
+        for (Sprite s : game.getSprites()) {
+            if (s instanceof Ball) {
+                Ball ball = (Ball) s;
+                addBall(ball.getHitId(), Wire.quantize(ball.getCenter().getX()),
+                        Wire.quantize(ball.getCenter().getY()), ball.getSize(), ball.getColor().getRGB());
+            }
+        }
+    }
+
+    void copyFrom(WorldState other) {
+        frame = other.frame;
+        score = other.score;
+        remainingBalls = other.remainingBalls;
+        remainingBlocks = other.remainingBlocks;
+        paddleX = other.paddleX;
+        balls = 0;
+        for (int i = 0; i < other.balls; i++) {
+            addBall(other.ballIds[i], other.ballX[i], other.ballY[i], other.ballRadii[i], other.ballColors[i]);
+        }
+    }
+
+    void addBall(int id, int x, int y, int radius, int color) {
+        if (balls == ballIds.length) {
+            int length = balls * 2;
+            ballIds = Arrays.copyOf(ballIds, length);
+            ballX = Arrays.copyOf(ballX, length);
+            ballY = Arrays.copyOf(ballY, length);
+            ballRadii = Arrays.copyOf(ballRadii, length);
+            ballColors = Arrays.copyOf(ballColors, length);
+        }
+        ballIds[balls] = id;
+        ballX[balls] = x;
+        ballY[balls] = y;
+        ballRadii[balls] = radius;
+        ballColors[balls] = color;
+        balls++;
+    }
+
+    int indexOfBall(int id) {
+        for (int i = 0; i < balls; i++) {
+            if (ballIds[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeBall(int index) {
+        int moved = balls - index - 1;
+        System.arraycopy(ballIds, index + 1, ballIds, index, moved);
+        System.arraycopy(ballX, index + 1, ballX, index, moved);
+        System.arraycopy(ballY, index + 1, ballY, index, moved);
+        System.arraycopy(ballRadii, index + 1, ballRadii, index, moved);
+        System.arraycopy(ballColors, index + 1, ballColors, index, moved);
+        balls--;
+    }
+
+    /**
+     * Writes what changed from the base state to this one: the counters and the paddle
+     * if they changed, the balls that moved, changed colour or appeared, and the ids of
+     * the balls that are gone.
+     */
+    void writeDelta(WorldState base, ByteBuffer out) {
+        int flags = (score != base.score ? SCORE : 0) | (remainingBalls != base.remainingBalls ? BALLS : 0)
+                | (remainingBlocks != base.remainingBlocks ? BLOCKS : 0) | (paddleX != base.paddleX ? PADDLE : 0);
+        out.put((byte) flags);
+        if ((flags & SCORE) != 0) {
+            Wire.putVarint(out, score);
+        }
+        if ((flags & BALLS) != 0) {
+            Wire.putVarint(out, remainingBalls);
+        }
+        if ((flags & BLOCKS) != 0) {
+            Wire.putVarint(out, remainingBlocks);
+        }
+        if ((flags & PADDLE) != 0) {
+            Wire.putSigned(out, paddleX - base.paddleX);
+        }
+
+        int changed = 0;
+        for (int i = 0; i < balls; i++) {
+            int j = base.indexOfBall(ballIds[i]);
+            if (j < 0 || ballX[i] != base.ballX[j] || ballY[i] != base.ballY[j] || ballColors[i] != base.ballColors[j]) {
+                changed++;
+            }
+        }
+        Wire.putVarint(out, changed);
+        for (int i = 0; i < balls; i++) {
+            int j = base.indexOfBall(ballIds[i]);
+            if (j < 0) {
+                Wire.putVarint(out, (long) ballIds[i] << 2 | NEW_BALL | COLOR_CHANGED);
+                Wire.putSigned(out, ballX[i]);
+                Wire.putSigned(out, ballY[i]);
+                Wire.putVarint(out, ballRadii[i]);
+                out.putInt(ballColors[i]);
+            } else if (ballX[i] != base.ballX[j] || ballY[i] != base.ballY[j] || ballColors[i] != base.ballColors[j]) {
+                boolean recolored = ballColors[i] != base.ballColors[j];
+                Wire.putVarint(out, (long) ballIds[i] << 2 | (recolored ? COLOR_CHANGED : 0));
+                Wire.putSigned(out, ballX[i] - base.ballX[j]);
+                Wire.putSigned(out, ballY[i] - base.ballY[j]);
+                if (recolored) {
+                    out.putInt(ballColors[i]);
+                }
+            }
+        }
+
+        int gone = 0;
+        for (int j = 0; j < base.balls; j++) {
+            if (indexOfBall(base.ballIds[j]) < 0) {
+                gone++;
+            }
+        }
+        Wire.putVarint(out, gone);
+        for (int j = 0; j < base.balls; j++) {
+            if (indexOfBall(base.ballIds[j]) < 0) {
+                Wire.putVarint(out, base.ballIds[j]);
+            }
+        }
+    }
+
+    /**
+     * Reads changes written by {@link #writeDelta} and makes this state the base state
+     * with the changes applied.
+     */
+    void readDelta(WorldState base, ByteBuffer in) {
+        copyFrom(base);
+        int flags = in.get();
+        if ((flags & SCORE) != 0) {
+            score = (int) Wire.getVarint(in);
+        }
+        if ((flags & BALLS) != 0) {
+            remainingBalls = (int) Wire.getVarint(in);
+        }
+        if ((flags & BLOCKS) != 0) {
+            remainingBlocks = (int) Wire.getVarint(in);
+        }
+        if ((flags & PADDLE) != 0) {
+            paddleX += (int) Wire.getSigned(in);
+        }
+
+        int changed = (int) Wire.getVarint(in);
+        for (int k = 0; k < changed; k++) {
+            long header = Wire.getVarint(in);
+            int id = (int) (header >>> 2);
+            if ((header & NEW_BALL) != 0) {
+                int x = (int) Wire.getSigned(in);
+                int y = (int) Wire.getSigned(in);
+                int radius = (int) Wire.getVarint(in);
+                addBall(id, x, y, radius, in.getInt());
+                continue;
+            }
+            int i = indexOfBall(id);
+            if (i < 0) {
+                throw new IllegalArgumentException("delta moves unknown ball " + id);
+            }
+            ballX[i] += (int) Wire.getSigned(in);
+            ballY[i] += (int) Wire.getSigned(in);
+            if ((header & COLOR_CHANGED) != 0) {
+                ballColors[i] = in.getInt();
+            }
+        }
+
+        int gone = (int) Wire.getVarint(in);
+        for (int k = 0; k < gone; k++) {
+            int i = indexOfBall((int) Wire.getVarint(in));
+            if (i >= 0) {
+                removeBall(i);
+            }
+        }
+    }
+}
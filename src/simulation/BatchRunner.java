@@ -0,0 +1,96 @@
+package simulation;
+
+import core.Game;
+import input.InputProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * The BatchRunner plays many independent headless games on a pool of threads and
+ * aggregates their outcomes into BatchStats.
+ *
+ * <p>Every game gets its own Game instance and its own input, created from the game's
+ * number, so the results do not depend on how many threads play them or in which order.
+ * Each thread pulls the next game number from a shared counter and keeps its own
+ * statistics, which are combined once all games are done.</p>
+ */
+public class BatchRunner {
+    private final LongFunction<InputProvider> policy;
+    private final int maxTicks;
+    private boolean eventDriven;
+
+    /**
+     * Constructs a BatchRunner.
+     * @param policy   creates the input that plays the game with the given number
+     * @param maxTicks the most ticks a game may last before it is stopped as lost
+     */
+    public BatchRunner(LongFunction<InputProvider> policy, int maxTicks) {
+        if (maxTicks <= 0) {
+            throw new IllegalArgumentException("tick limit must be positive: " + maxTicks);
+        }
+        this.policy = policy;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Makes the games move their balls from event to event instead of stepping them every tick.
+     * @param eventDriven whether the games are event-driven, false by default
+     */
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * Plays the given number of games on the given number of threads.
+     * @param games   the number of games to play
+     * @param threads the number of threads to play them on
+     * @return the aggregated outcomes
+     */
+    public BatchStats run(int games, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("thread count must be positive: " + threads);
+        }
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BatchStats>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> {
+                    BatchStats stats = new BatchStats();
+                    for (int n = next.getAndIncrement(); n < games; n = next.getAndIncrement()) {
+                        play(n, stats);
+                    }
+                    return stats;
+                }));
+            }
+            BatchStats total = new BatchStats();
+            for (Future<BatchStats> worker : workers) {
+                total.add(worker.get());
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("batch interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void play(long number, BatchStats stats) {
+        Game game = new Game(policy.apply(number));
+        game.setEventDriven(eventDriven);
+        game.initialize();
+        game.step(maxTicks);
+        game.end();
+        stats.record(game.isWon(), game.getScore(), game.getTicks());
+    }
+}
@@ -0,0 +1,113 @@
+package simulation;
+
+import metrics.LogHistogram;
+
+import java.io.PrintStream;
+
+/**
+ * BatchStats aggregates the outcomes of many games as they finish: win rate, score
+ * distribution and how long games last. Only counters and histograms are kept, so the
+ * memory used does not grow with the number of games.
+ *
+ * <p>A BatchStats is not thread-safe. Each worker fills its own and they are combined
+ * with {@link #add(BatchStats)} at the end.</p>
+ */
+public class BatchStats {
+    private long games;
+    private long wins;
+    private final LogHistogram scores = new LogHistogram();
+    private final LogHistogram ticks = new LogHistogram();
+    private final LogHistogram ticksToClear = new LogHistogram();
+
+    /**
+     * Records the outcome of one game.
+     * @param won   whether the game cleared all blocks
+     * @param score the final score, including the bonus
+     * @param length the number of ticks the game lasted
+     */
+    public void record(boolean won, int score, long length) {
+        games++;
+        scores.record(score);
+        ticks.record(length);
+        if (won) {
+            wins++;
+            ticksToClear.record(length);
+        }
+    }
+
+    /**
+     * Adds the outcomes recorded by another BatchStats to this one.
+     * @param other the statistics to add
+     */
+    public void add(BatchStats other) {
+        games += other.games;
+        wins += other.wins;
+        scores.add(other.scores);
+        ticks.add(other.ticks);
+        ticksToClear.add(other.ticksToClear);
+    }
+
+    /**
+     * Returns the number of recorded games.
+     * @return the game count
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of games that cleared all blocks.
+     * @return the win count
+     */
+    public long getWins() {
+        return wins;
+    }
+
+    /**
+     * Returns the fraction of games that cleared all blocks.
+     * @return the win rate, between 0 and 1
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * Returns the distribution of final scores.
+     * @return the score histogram
+     */
+    public LogHistogram getScores() {
+        return scores;
+    }
+
+    /**
+     * Returns the distribution of game lengths in ticks, won or lost.
+     * @return the game length histogram
+     */
+    public LogHistogram getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the distribution of ticks needed to clear all blocks, for won games only.
+     * @return the ticks-to-clear histogram
+     */
+    public LogHistogram getTicksToClear() {
+        return ticksToClear;
+    }
+
+    /**
+     * Prints a summary of the recorded games.
+     * @param out where the summary is printed
+     */
+    public void print(PrintStream out) {
+        out.printf("games: %d, won: %d (%.1f%%)%n", games, wins, getWinRate() * 100);
+        printRow(out, "score", scores);
+        printRow(out, "ticks", ticks);
+        printRow(out, "ticks to clear", ticksToClear);
+    }
+
+    private static void printRow(PrintStream out, String name, LogHistogram h) {
+        out.printf("%-15s mean %9.1f  p10 %7d  p50 %7d  p90 %7d  max %7d%n", name,
+                h.getMean(), h.getPercentile(10), h.getPercentile(50), h.getPercentile(90), h.getMax());
+    }
+}
@@ -0,0 +1,245 @@
+package simulation;
+
+import core.Game;
+import input.InputProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * The SessionHost runs many headless games at once in real time, the way a server
+ * would: every session ticks at the tick rate, and the sessions share a small number of
+ * carrier threads instead of having a thread each.
+ *
+ * <p>Sessions are dealt out to the carriers round-robin and never move. Each carrier keeps
+ * its sessions in a priority queue by when their next tick is due, runs the ones that are
+ * due and sleeps until the next one is, so a wake-up costs the sessions it runs and not
+ * all of them, and an idle host costs nothing. Sessions start spread evenly over one tick
+ * period, so their ticks do not all fall due at the same moment.</p>
+ *
+ * <p>Sessions are isolated from each other: a game only touches its own state, a session
+ * whose game throws is stopped without affecting the others, a session runs at most the
+ * catch-up cap of ticks in a row before the carrier moves on, and a session that goes
+ * over its tick budget too many ticks in a row is evicted. When a session's game ends,
+ * its outcome is recorded and the session starts the next game between two ticks; the
+ * set-up is timed on its own and not charged to either tick or to the tick budget.</p>
+ */
+public class SessionHost {
+    private final LongFunction<InputProvider> policy;
+    private final int carriers;
+    private int ticksPerSecond = 60;
+    private int maxCatchUpTicks = 5;
+    private long tickBudgetNanos = 2000000;
+    private int maxOverBudgetTicks = 30;
+    private int maxTicks = 20000;
+
+    /**
+     * Constructs a SessionHost.
+     * @param policy   creates the input that plays the game with the given number
+     * @param carriers the number of carrier threads the sessions share
+     */
+    public SessionHost(LongFunction<InputProvider> policy, int carriers) {
+        if (carriers <= 0) {
+            throw new IllegalArgumentException("carrier count must be positive: " + carriers);
+        }
+        this.policy = policy;
+        this.carriers = carriers;
+    }
+
+    /**
+     * Sets how many ticks every session runs per second.
+     * @param ticksPerSecond the tick rate, 60 by default
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("tick rate must be positive: " + ticksPerSecond);
+        }
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    /**
+     * Sets the most ticks a session runs in a row to catch up. A session that is further
+     * behind drops the extra ticks, like a windowed game does.
+     * @param maxCatchUpTicks the catch-up cap, 5 by default
+     */
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        if (maxCatchUpTicks <= 0) {
+            throw new IllegalArgumentException("catch-up cap must be positive: " + maxCatchUpTicks);
+        }
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Sets how long one tick of a session may take, and how many ticks in a row may take
+     * longer before the session is evicted.
+     * @param nanos              the tick budget, 2 ms by default
+     * @param maxOverBudgetTicks the over-budget ticks in a row that evict a session, 30 by default
+     */
+    public void setTickBudget(long nanos, int maxOverBudgetTicks) {
+        if (nanos <= 0 || maxOverBudgetTicks <= 0) {
+            throw new IllegalArgumentException("tick budget and limit must be positive");
+        }
+        this.tickBudgetNanos = nanos;
+        this.maxOverBudgetTicks = maxOverBudgetTicks;
+    }
+
+    /**
+     * Sets the most ticks a game may last before it is stopped as lost and the session
+     * starts the next one.
+     * @param maxTicks the tick limit, 20000 by default
+     */
+    public void setMaxTicks(int maxTicks) {
+        if (maxTicks <= 0) {
+            throw new IllegalArgumentException("tick limit must be positive: " + maxTicks);
+        }
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Runs the given number of sessions for the given time, then stops them all.
+     * @param sessions      the number of concurrent sessions
+     * @param durationNanos how long to run them, in nanoseconds
+     * @return how the host kept up, combined over all carriers
+     */
+    public SessionStats run(int sessions, long durationNanos) {
+        if (sessions <= 0) {
+            throw new IllegalArgumentException("session count must be positive: " + sessions);
+        }
+        long nanosPerTick = 1000000000L / ticksPerSecond;
+        AtomicLong nextGame = new AtomicLong();
+        SessionStats setUp = new SessionStats();
+        Session[] all = new Session[sessions];
+        for (int i = 0; i < sessions; i++) {
+            // Every session is set up before the clock starts, so the set-up does not count as latency.
+            all[i] = new Session();
+            all[i].startGame(nextGame.getAndIncrement(), setUp);
+        }
+        long start = System.nanoTime();
+        List<PriorityQueue<Session>> shards = new ArrayList<>();
+        for (int c = 0; c < carriers; c++) {
+            shards.add(new PriorityQueue<>((a, b) -> Long.compare(a.nextTick, b.nextTick)));
+        }
+        for (int i = 0; i < sessions; i++) {
+            all[i].nextTick = start + i * nanosPerTick / sessions;
+            shards.get(i % carriers).add(all[i]);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(carriers);
+        try {
+            List<Future<SessionStats>> workers = new ArrayList<>();
+            for (PriorityQueue<Session> shard : shards) {
+                workers.add(pool.submit(() -> carry(shard, nextGame, nanosPerTick, start + durationNanos)));
+            }
+            SessionStats total = new SessionStats();
+            for (Future<SessionStats> worker : workers) {
+                total.add(worker.get());
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("session host interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a carrier failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the sessions of one carrier until the deadline.
+     */
+    private SessionStats carry(PriorityQueue<Session> shard, AtomicLong nextGame, long nanosPerTick,
+                               long deadline) {
+        SessionStats stats = new SessionStats();
+        long now = System.nanoTime();
+        while (now < deadline && !shard.isEmpty()) {
+            long busyStart = now;
+            while (!shard.isEmpty() && shard.peek().nextTick <= now) {
+                Session session = shard.poll();
+                if (runDue(session, nextGame, nanosPerTick, stats)) {
+                    shard.add(session);
+                }
+                now = System.nanoTime();
+            }
+            stats.recordBusy(now - busyStart);
+            long nextDue = shard.isEmpty() ? deadline : Math.min(deadline, shard.peek().nextTick);
+            if (nextDue > now) {
+                LockSupport.parkNanos(nextDue - now);
+                now = System.nanoTime();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Runs the ticks a session has due, up to the catch-up cap.
+     * @return false if the session was stopped
+     */
+    private boolean runDue(Session session, AtomicLong nextGame, long nanosPerTick, SessionStats stats) {
+        long now = System.nanoTime();
+        for (int caughtUp = 0; session.nextTick <= now && caughtUp < maxCatchUpTicks; caughtUp++) {
+            try {
+                session.game.step(1);
+            } catch (RuntimeException e) {
+                stats.recordFailed();
+                return false;
+            }
+            long done = System.nanoTime();
+            boolean overBudget = done - now > tickBudgetNanos;
+            stats.recordTick(done - session.nextTick, done - now, overBudget);
+            session.overBudgetRun = overBudget ? session.overBudgetRun + 1 : 0;
+            if (session.overBudgetRun >= maxOverBudgetTicks) {
+                stats.recordEvicted();
+                return false;
+            }
+            session.nextTick += nanosPerTick;
+            now = done;
+            if (session.game.isOver() || session.game.getTicks() >= maxTicks) {
+                // The next game is set up between ticks and timed on its own, so it does not count as tick time.
+                try {
+                    session.startGame(nextGame.getAndIncrement(), stats);
+                } catch (RuntimeException e) {
+                    stats.recordFailed();
+                    return false;
+                }
+                now = System.nanoTime();
+                stats.recordGameStart(now - done);
+            }
+        }
+        if (session.nextTick <= now) {
+            long dropped = (now - session.nextTick) / nanosPerTick + 1;
+            stats.recordDropped(dropped);
+            session.nextTick += dropped * nanosPerTick;
+        }
+        return true;
+    }
+
+    /**
+     * One session: the game it is playing and when its next tick is due.
+     */
+    private final class Session {
+        private Game game;
+        private long nextTick;
+        private int overBudgetRun;
+
+        /**
+         * Records the outcome of the finished game, if any, and starts the next one.
+         */
+        private void startGame(long number, SessionStats stats) {
+            if (game != null) {
+                game.end();
+                stats.getOutcomes().record(game.isWon(), game.getScore(), game.getTicks());
+            }
+            game = new Game(policy.apply(number));
+            game.initialize();
+        }
+    }
+}
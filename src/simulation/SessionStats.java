@@ -0,0 +1,198 @@
+package simulation;
+
+import metrics.LogHistogram;
+
+import java.io.PrintStream;
+
+/**
+ * SessionStats describes how a SessionHost kept up with its sessions: how late every
+ * tick finished compared to when it was due, how long ticks took, how long starting the
+ * next game took, how many ticks were dropped or went over the tick budget, and how busy
+ * the carrier threads were. The
+ * outcomes of the games that finished are kept in a BatchStats.
+ *
+ * <p>Like BatchStats it is not thread-safe. Each carrier fills its own and they are
+ * combined with {@link #add(SessionStats)} at the end.</p>
+ */
+public class SessionStats {
+    private final LogHistogram latency = new LogHistogram();
+    private final LogHistogram tickTimes = new LogHistogram();
+    private final LogHistogram gameStarts = new LogHistogram();
+    private final BatchStats outcomes = new BatchStats();
+    private long ticks;
+    private long droppedTicks;
+    private long overBudgetTicks;
+    private long busyNanos;
+    private int failedSessions;
+    private int evictedSessions;
+
+    /**
+     * Records one tick of a session.
+     * @param lateness   how long after the tick was due it finished, in nanoseconds
+     * @param tickNanos  how long the tick took
+     * @param overBudget whether the tick took longer than the session's tick budget
+     */
+    public void recordTick(long lateness, long tickNanos, boolean overBudget) {
+        ticks++;
+        latency.record(lateness);
+        tickTimes.record(tickNanos);
+        if (overBudget) {
+            overBudgetTicks++;
+        }
+    }
+
+    /**
+     * Records the set-up of a session's next game, which runs between two ticks.
+     * @param nanos how long creating and initializing the game took
+     */
+    public void recordGameStart(long nanos) {
+        gameStarts.record(nanos);
+    }
+
+    /**
+     * Records ticks a session skipped because it fell further behind than its catch-up cap.
+     * @param dropped the number of ticks skipped
+     */
+    public void recordDropped(long dropped) {
+        droppedTicks += dropped;
+    }
+
+    /**
+     * Records time a carrier spent running sessions rather than waiting for them.
+     * @param nanos the busy time
+     */
+    public void recordBusy(long nanos) {
+        busyNanos += nanos;
+    }
+
+    /**
+     * Records a session that was stopped because its game threw.
+     */
+    public void recordFailed() {
+        failedSessions++;
+    }
+
+    /**
+     * Records a session that was stopped because it kept going over its tick budget.
+     */
+    public void recordEvicted() {
+        evictedSessions++;
+    }
+
+    /**
+     * Adds the statistics recorded by another SessionStats to this one.
+     * @param other the statistics to add
+     */
+    public void add(SessionStats other) {
+        latency.add(other.latency);
+        tickTimes.add(other.tickTimes);
+        gameStarts.add(other.gameStarts);
+        outcomes.add(other.outcomes);
+        ticks += other.ticks;
+        droppedTicks += other.droppedTicks;
+        overBudgetTicks += other.overBudgetTicks;
+        busyNanos += other.busyNanos;
+        failedSessions += other.failedSessions;
+        evictedSessions += other.evictedSessions;
+    }
+
+    /**
+     * Returns the distribution of how long after it was due each tick finished.
+     * @return the tick latency histogram, in nanoseconds
+     */
+    public LogHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the distribution of how long each tick took to run.
+     * @return the tick time histogram, in nanoseconds
+     */
+    public LogHistogram getTickTimes() {
+        return tickTimes;
+    }
+
+    /**
+     * Returns the distribution of how long starting a session's next game took.
+     * @return the game start histogram, in nanoseconds
+     */
+    public LogHistogram getGameStarts() {
+        return gameStarts;
+    }
+
+    /**
+     * Returns the outcomes of the games that finished while the sessions ran.
+     * @return the game outcomes
+     */
+    public BatchStats getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * Returns the number of ticks run.
+     * @return the tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the number of ticks skipped by sessions that fell too far behind.
+     * @return the dropped tick count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Returns the number of ticks that took longer than the tick budget.
+     * @return the over-budget tick count
+     */
+    public long getOverBudgetTicks() {
+        return overBudgetTicks;
+    }
+
+    /**
+     * Returns the time the carriers spent running sessions, summed over all carriers.
+     * @return the busy time in nanoseconds
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * Returns the number of sessions stopped because their game threw.
+     * @return the failed session count
+     */
+    public int getFailedSessions() {
+        return failedSessions;
+    }
+
+    /**
+     * Returns the number of sessions stopped for going over their tick budget.
+     * @return the evicted session count
+     */
+    public int getEvictedSessions() {
+        return evictedSessions;
+    }
+
+    /**
+     * Prints a summary of the recorded ticks.
+     * @param out where the summary is printed
+     */
+    public void print(PrintStream out) {
+        out.printf("ticks: %d, dropped: %d, over budget: %d, failed sessions: %d, evicted sessions: %d%n",
+                ticks, droppedTicks, overBudgetTicks, failedSessions, evictedSessions);
+        printRow(out, "tick latency", latency);
+        printRow(out, "tick time", tickTimes);
+        if (gameStarts.getCount() > 0) {
+            printRow(out, "game start", gameStarts);
+        }
+    }
+
+    private static void printRow(PrintStream out, String name, LogHistogram h) {
+        out.printf("%-15s mean %9.1f us  p50 %9.1f  p99 %9.1f  p99.9 %9.1f  max %9.1f%n", name,
+                h.getMean() / 1e3, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3,
+                h.getPercentile(99.9) / 1e3, h.getMax() / 1e3);
+    }
+}
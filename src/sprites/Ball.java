@@ -1,11 +1,13 @@
 package sprites;
 import biuoop.DrawSurface;
 import collidables.Collidable;
-import collidables.CollisionInfo;
 import collidables.GameEnvironment;
+import collidables.SweepResult;
 import core.Game;
-import geometry.Line;
 import geometry.Point;
+import graphics.DirtyRegions;
+import graphics.DrawnRegion;
+import listeners.HitEventQueue;
 import geometry.Rectangle;
 
 import java.awt.Color;
@@ -14,13 +16,26 @@ import java.awt.Color;
  * The Ball class represents a ball with a position, radius, color, and velocity.
  * It can be drawn on the screen, and reacts to collisions based on a game environment.
  */
-public class Ball implements Sprite {
+public class Ball implements ParallelSprite, DirtyRegionSprite, CullableSprite {
+    private static final double SKIN = 1e-3;
+
     private Point center;
+    private Point previousCenter;
     private final int r;
     private Color color;
     private Velocity velocity;
     private GameEnvironment environment;
     private Paddle paddle;
+    private Collidable deathRegion;
+    private final SweepResult sweep = new SweepResult();
+    private final DrawnRegion drawn = new DrawnRegion();
+    private int hitId = -1;
+    private int maxHits = 1;
+    private boolean planned;
+    private Collidable plannedInside;
+    private Point plannedCenter;
+    private Velocity plannedVelocity;
+    private long plannedVersion;
 
     /**
      * Constructs a new Ball at a given Point with a radius and color.
@@ -64,6 +79,14 @@ public class Ball implements Sprite {
         return (int) this.center.getY();
     }
 
+    /**
+     * Returns the exact position of the center of the ball.
+     * @return the center point
+     */
+    public Point getCenter() {
+        return this.center;
+    }
+
     /**
      * Returns the radius of the ball.
      *
@@ -119,58 +142,141 @@ public class Ball implements Sprite {
     }
 
 
+    /**
+     * Sets how many hits the ball handles within one tick. With one hit, the default, the
+     * ball stops where it touches a collidable and only moves on next tick, so a fast
+     * ball loses the rest of its movement at every bounce. With more, the ball goes on
+     * along its new velocity for what is left of the tick, sweeping again after every hit,
+     * until it has moved its whole velocity or used up its hits; what is left after the
+     * last hit is dropped. A ball found inside a collidable is pushed out of it by a hair
+     * instead of a pixel, which counts as a hit. A ball that touches its game's death
+     * region stops there for the rest of the tick, since the hit takes it out of play.
+     * @param hits the most hits per tick, at least 1
+     */
+    public void setMaxHitsPerTick(int hits) {
+        if (hits < 1) {
+            throw new IllegalArgumentException("a ball must handle at least one hit per tick: " + hits);
+        }
+        this.maxHits = hits;
+    }
+
+    /**
+     * Returns how many hits the ball handles within one tick.
+     * @return the most hits per tick
+     */
+    public int getMaxHitsPerTick() {
+        return maxHits;
+    }
+
     /**
      * Moves the ball one step while checking for collisions.
+     * The whole circle is swept against the environment, so the ball stops where its edge
+     * touches a collidable and bounces off the normal of the touched surface, then goes on
+     * for the rest of the step if it handles {@link #setMaxHitsPerTick(int) more hits}.
+     * A step worked out earlier by {@link #prepareTimePassed()} is reused if it still holds.
      */
     public void moveOneStep() {
-        boolean insideBlock = false;
-        Collidable insideCollidable = null;
-
-        for (Collidable c : environment.getCollidables()) {
-            if (isInsideRectangle(c.getCollisionRectangle())) {
-                insideBlock = true;
-                insideCollidable = c;
-                break;
+        if (!isPlanValid()) {
+            plan();
+        }
+        planned = false;
+
+        // The part of this tick's movement the ball still has to make.
+        double left = 1;
+        for (int hits = 1;; hits++) {
+            Collidable touched;
+            if (plannedInside != null) {
+                touched = plannedInside;
+                emergencyExtraction(plannedInside.getCollisionRectangle(), maxHits == 1 ? 1 : SKIN);
+            } else if (!sweep.isHit()) {
+                this.center = new Point(center.getX() + velocity.getDx() * left,
+                        center.getY() + velocity.getDy() * left);
+                return;
+            } else {
+                // Move the ball until it touches the collidable, stopping a hair short of it.
+                double dx = velocity.getDx() * left;
+                double dy = velocity.getDy() * left;
+                double length = Math.hypot(dx, dy);
+                double move = Math.max(0, sweep.getTime() - SKIN / length);
+                this.center = new Point(center.getX() + dx * move, center.getY() + dy * move);
+                touched = sweep.getCollidable();
+                this.velocity = touched.hit(this, sweep, velocity);
+                left *= 1 - move;
             }
+            if (hits >= maxHits || touched == deathRegion) {
+                return;
+            }
+            look(left);
         }
+    }
 
-        if (insideBlock) {
-            emergencyExtraction(insideCollidable.getCollisionRectangle());
-            return;
-        }
+    /**
+     * Works out the next step against the environment without changing anything:
+     * finds the collidable the ball is stuck in, if any, and otherwise sweeps the ball.
+     * Only reads shared state, so different balls can prepare at the same time.
+     */
+    @Override
+    public void prepareTimePassed() {
+        plan();
+    }
 
-        Point nextPoint = velocity.applyToPoint(center);
-        Line trajectory = new Line(center, nextPoint);
-        CollisionInfo collisionInfo = environment.getClosestCollision(trajectory);
+    private void plan() {
+        look(1);
+        plannedCenter = center;
+        plannedVelocity = velocity;
+        plannedVersion = environment.getVersion();
+        planned = true;
+    }
 
-        if (collisionInfo == null) {
-            this.center = nextPoint;
-        } else {
-            Point collisionPoint = collisionInfo.collisionPoint();
-            double safeDistance = center.distance(collisionPoint) - (r + 1.0);
-
-            if (safeDistance > 0) {
-                double move = safeDistance / center.distance(nextPoint);
-                double newX = center.getX() + (nextPoint.getX() - center.getX()) * move;
-                double newY = center.getY() + (nextPoint.getY() - center.getY()) * move;
-                this.center = new Point(newX, newY);
-            }
+    /**
+     * Finds the collidable the ball is stuck in, if any, and otherwise sweeps the given part
+     * of the ball's velocity.
+     */
+    private void look(double part) {
+        plannedInside = environment.firstContaining(center.getX(), center.getY(), sweep);
+        if (plannedInside == null) {
+            environment.sweepCircle(center.getX(), center.getY(), velocity.getDx() * part, velocity.getDy() * part,
+                    r, sweep);
+        }
+    }
 
-            this.velocity = collisionInfo.collisionObject().hit(this, collisionPoint, velocity);
+    /**
+     * A prepared step is still the step the ball would compute now if the ball has not
+     * moved, no collidable was added or moved since, and the collidable it is about to
+     * touch has not been removed. Removing any other collidable cannot give an earlier hit.
+     */
+    private boolean isPlanValid() {
+        if (!planned || plannedCenter != center || plannedVelocity != velocity
+                || plannedVersion != environment.getVersion()) {
+            return false;
         }
+        Collidable target = plannedInside != null ? plannedInside : sweep.getCollidable();
+        return target == null || environment.contains(target);
     }
 
-    private boolean isInsideRectangle(Rectangle rect) {
-        double left = rect.getUpperLeft().getX();
-        double top = rect.getUpperLeft().getY();
-        double right = left + rect.getWidth();
-        double bottom = top + rect.getHeight();
+    /**
+     * Moves the ball straight along its velocity for the given number of ticks without
+     * sweeping it, for a BallScheduler that knows nothing is in the way.
+     */
+    void fly(long ticks) {
+        if (ticks != 0) {
+            this.previousCenter = null;
+            this.center = new Point(center.getX() + velocity.getDx() * ticks, center.getY() + velocity.getDy() * ticks);
+        }
+    }
 
-        return center.getX() >= left && center.getX() <= right
-                && center.getY() >= top && center.getY() <= bottom;
+    /**
+     * Shifts the ball without sweeping it, for pushing apart balls that overlap.
+     */
+    void moveBy(double dx, double dy) {
+        this.center = new Point(center.getX() + dx, center.getY() + dy);
     }
 
-    private void emergencyExtraction(Rectangle rect) {
+    /**
+     * Pushes the ball out of the given rectangle through its nearest side, leaving the given
+     * gap between the ball's edge and the side, and turns it away from the rectangle.
+     */
+    private void emergencyExtraction(Rectangle rect, double gap) {
         double left = rect.getUpperLeft().getX();
         double top = rect.getUpperLeft().getY();
         double right = left + rect.getWidth();
@@ -185,16 +291,16 @@ public class Ball implements Sprite {
                 Math.min(distToTop, distToBottom));
 
         if (minDist == distToLeft) {
-            center = new Point(left - r - 1, center.getY());
+            center = new Point(left - r - gap, center.getY());
             velocity = new Velocity(-Math.abs(velocity.getDx()), velocity.getDy());
         } else if (minDist == distToRight) {
-            center = new Point(right + r + 1, center.getY());
+            center = new Point(right + r + gap, center.getY());
             velocity = new Velocity(Math.abs(velocity.getDx()), velocity.getDy());
         } else if (minDist == distToTop) {
-            center = new Point(center.getX(), top - r - 1);
+            center = new Point(center.getX(), top - r - gap);
             velocity = new Velocity(velocity.getDx(), -Math.abs(velocity.getDy()));
         } else {
-            center = new Point(center.getX(), bottom + r + 1);
+            center = new Point(center.getX(), bottom + r + gap);
             velocity = new Velocity(velocity.getDx(), Math.abs(velocity.getDy()));
         }
     }
@@ -205,8 +311,55 @@ public class Ball implements Sprite {
         surface.fillCircle((int) center.getX(), (int) center.getY(), r);
     }
 
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        surface.setColor(this.color);
+        surface.fillCircle(drawnX(alpha), drawnY(alpha), r);
+    }
+
+    @Override
+    public void addDirtyRegions(double alpha, DirtyRegions out) {
+        drawn.update(drawnX(alpha) - r, drawnY(alpha) - r, 2 * r + 1, 2 * r + 1, color, out);
+    }
+
+    @Override
+    public boolean overlaps(double minX, double minY, double maxX, double maxY) {
+        Point from = previousCenter == null ? center : previousCenter;
+        return Math.min(from.getX(), center.getX()) - r <= maxX && Math.max(from.getX(), center.getX()) + r >= minX
+                && Math.min(from.getY(), center.getY()) - r <= maxY && Math.max(from.getY(), center.getY()) + r >= minY;
+    }
+
+    @Override
+    public void addDrawnRegion(DirtyRegions out) {
+        drawn.addTo(out);
+        drawn.clear();
+    }
+
+    /**
+     * Returns the x coordinate the ball is drawn at, between its position before the last
+     * tick and its current one.
+     */
+    private int drawnX(double alpha) {
+        if (previousCenter == null) {
+            return (int) center.getX();
+        }
+        return (int) (previousCenter.getX() + (center.getX() - previousCenter.getX()) * alpha);
+    }
+
+    /**
+     * Returns the y coordinate the ball is drawn at, between its position before the last
+     * tick and its current one.
+     */
+    private int drawnY(double alpha) {
+        if (previousCenter == null) {
+            return (int) center.getY();
+        }
+        return (int) (previousCenter.getY() + (center.getY() - previousCenter.getY()) * alpha);
+    }
+
     @Override
     public void timePassed() {
+        previousCenter = center;
         moveOneStep();
     }
 
@@ -224,6 +377,33 @@ public class Ball implements Sprite {
      */
     public void addToGame(Game game) {
         game.addSprite(this);
+        if (hitId < 0) {
+            setHitEventQueue(game.getHitEvents());
+        }
+        setMaxHitsPerTick(game.getMaxHitsPerTick());
+        this.deathRegion = game.getDeathRegion();
+        if (game.getBallCollider() != null) {
+            game.getBallCollider().add(this);
+        }
+        if (game.getBallScheduler() != null) {
+            game.getBallScheduler().add(this, game.getTicks());
+        }
+    }
+
+    /**
+     * Registers the ball with the given queue, so blocks can record its hits there.
+     * @param queue the queue the game records hits in
+     */
+    public void setHitEventQueue(HitEventQueue queue) {
+        this.hitId = queue.addBall(this);
+    }
+
+    /**
+     * Returns the id of the ball in its hit event queue.
+     * @return the id, or -1 if the ball is not registered with a queue
+     */
+    public int getHitId() {
+        return hitId;
     }
 
     /**
@@ -240,6 +420,12 @@ public class Ball implements Sprite {
      */
     public void removeFromGame(Game g) {
         g.removeSprite(this);
+        if (g.getBallCollider() != null) {
+            g.getBallCollider().remove(this);
+        }
+        if (g.getBallScheduler() != null) {
+            g.getBallScheduler().remove(this);
+        }
     }
 
 }
@@ -0,0 +1,189 @@
+package sprites;
+
+import geometry.Point;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The BallCollider makes balls bounce off each other, as elastic collisions between
+ * circles whose mass grows with their area.
+ *
+ * <p>Checking every pair of balls grows with the square of their number, so the collider
+ * uses sort-and-sweep instead: balls are kept sorted by the left edge of their bounding
+ * box, and a ball is only tested against the balls that start before its right edge.
+ * Balls move a few pixels per tick, so the order from the previous tick is almost sorted
+ * and an insertion sort puts it back in order in close to linear time.</p>
+ *
+ * <p>Removing a ball only queues it; queued balls are taken out in one pass at the start
+ * of the next {@link #resolve()}.</p>
+ */
+public class BallCollider {
+    private Ball[] balls = new Ball[16];
+    private double[] lefts = new double[16];
+    private int count;
+    private final Set<Ball> pendingRemovals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long shifts;
+    private long pairsTested;
+    private int collisions;
+
+    /**
+     * Adds a ball to the collider.
+     * @param ball the ball to add
+     */
+    public void add(Ball ball) {
+        if (pendingRemovals.remove(ball)) {
+            return;
+        }
+        if (count == balls.length) {
+            balls = Arrays.copyOf(balls, count * 2);
+            lefts = Arrays.copyOf(lefts, count * 2);
+        }
+        balls[count++] = ball;
+    }
+
+    /**
+     * Removes a ball from the collider. It stops colliding at the next resolve.
+     * @param ball the ball to remove
+     */
+    public void remove(Ball ball) {
+        pendingRemovals.add(ball);
+    }
+
+    /**
+     * Returns the number of balls in the collider, removed balls included until the next resolve.
+     * @return the number of balls
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Separates every pair of overlapping balls and bounces the pairs that are moving
+     * towards each other. Called once per tick, after the balls moved.
+     */
+    public void resolve() {
+        applyRemovals();
+        for (int i = 0; i < count; i++) {
+            lefts[i] = balls[i].getCenter().getX() - balls[i].getSize();
+        }
+        sort();
+
+        pairsTested = 0;
+        collisions = 0;
+        for (int i = 0; i < count; i++) {
+            Ball a = balls[i];
+            double right = lefts[i] + 2 * a.getSize();
+            for (int j = i + 1; j < count && lefts[j] <= right; j++) {
+                pairsTested++;
+                if (collide(a, balls[j])) {
+                    collisions++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns how many places balls were moved by the insertion sort of the last resolve.
+     * Close to zero when the balls barely changed order since the tick before.
+     * @return the number of shifts of the last sort
+     */
+    public long getLastShifts() {
+        return shifts;
+    }
+
+    /**
+     * Returns the number of pairs whose bounding boxes overlap along x in the last resolve,
+     * which are the only pairs tested for contact.
+     * @return the number of pairs tested
+     */
+    public long getLastPairsTested() {
+        return pairsTested;
+    }
+
+    /**
+     * Returns the number of touching pairs the last resolve separated.
+     * @return the number of collisions
+     */
+    public int getLastCollisions() {
+        return collisions;
+    }
+
+    /**
+     * Sorts the balls by the left edge of their bounding box. Stable, so balls with the
+     * same left edge keep their order and a resolve is deterministic.
+     */
+    private void sort() {
+        shifts = 0;
+        for (int i = 1; i < count; i++) {
+            Ball ball = balls[i];
+            double key = lefts[i];
+            int j = i - 1;
+            while (j >= 0 && lefts[j] > key) {
+                balls[j + 1] = balls[j];
+                lefts[j + 1] = lefts[j];
+                j--;
+            }
+            shifts += i - 1 - j;
+            balls[j + 1] = ball;
+            lefts[j + 1] = key;
+        }
+    }
+
+    /**
+     * Pushes two touching balls apart along the line between their centres, and if they are
+     * moving towards each other exchanges momentum along it. Heavier balls move less.
+     * @return true if the balls were touching
+     */
+    private static boolean collide(Ball a, Ball b) {
+        Point pa = a.getCenter();
+        Point pb = b.getCenter();
+        double dx = pb.getX() - pa.getX();
+        double dy = pb.getY() - pa.getY();
+        double reach = a.getSize() + b.getSize();
+        double distanceSquared = dx * dx + dy * dy;
+        if (distanceSquared >= reach * reach) {
+            return false;
+        }
+        double distance = Math.sqrt(distanceSquared);
+        double nx = 1;
+        double ny = 0;
+        if (distance > 0) {
+            nx = dx / distance;
+            ny = dy / distance;
+        }
+        double inverseA = 1.0 / (a.getSize() * a.getSize());
+        double inverseB = 1.0 / (b.getSize() * b.getSize());
+        double inverseSum = inverseA + inverseB;
+
+        Velocity va = a.getVelocity();
+        Velocity vb = b.getVelocity();
+        double approach = (vb.getDx() - va.getDx()) * nx + (vb.getDy() - va.getDy()) * ny;
+        if (approach < 0) {
+            double impulse = -2 * approach / inverseSum;
+            a.setVelocity(va.getDx() - impulse * inverseA * nx, va.getDy() - impulse * inverseA * ny);
+            b.setVelocity(vb.getDx() + impulse * inverseB * nx, vb.getDy() + impulse * inverseB * ny);
+        }
+        double push = (reach - distance) / inverseSum;
+        a.moveBy(-nx * push * inverseA, -ny * push * inverseA);
+        b.moveBy(nx * push * inverseB, ny * push * inverseB);
+        return true;
+    }
+
+    private void applyRemovals() {
+        if (pendingRemovals.isEmpty()) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (!pendingRemovals.contains(balls[i])) {
+                balls[kept++] = balls[i];
+            }
+        }
+        Arrays.fill(balls, kept, count, null);
+        count = kept;
+        pendingRemovals.clear();
+    }
+}
@@ -0,0 +1,236 @@
+package sprites;
+
+import collidables.Collidable;
+import collidables.GameEnvironment;
+import collidables.SweepResult;
+import geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The BallScheduler moves balls from event to event instead of stepping every ball every
+ * tick. Between hits a ball flies in a straight line, so the scheduler works out, by
+ * sweeping the ball far ahead against the environment, the tick in which it will next
+ * touch something, and keeps the balls in a priority queue by that tick. A tick only steps the
+ * balls that are due; the others are moved to where they are, in one go, when they are
+ * next due or when someone {@link #sync(long) looks at them}.
+ *
+ * <p>A due ball is stepped by its own {@link Ball#timePassed()}, so hits, listeners and
+ * bounces work exactly as when every ball is stepped. Removing a block only removes
+ * collisions, so it invalidates nothing eagerly: a ball that was heading for the block
+ * wakes up in the tick it would have hit it, finds nothing, and is scheduled again, and
+ * no other ball is touched. Collidables that are added to the environment afterwards are
+ * not seen by balls already scheduled.</p>
+ *
+ * <p>Collidables that move, such as the paddle, cannot be predicted. They are
+ * {@link #watchRow(Collidable) watched} instead: assuming they only move sideways, a ball
+ * that could reach the rows they move in within a tick is stepped every tick.</p>
+ *
+ * <p>Removing a ball only marks it; it leaves the queue when it would next be due.</p>
+ */
+public class BallScheduler {
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final double HORIZON = 4096;
+    private static final double SEGMENT = 256;
+    private static final double MARGIN = 1e-6;
+
+    private final GameEnvironment environment;
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>((a, b) -> a.due != b.due
+            ? Long.compare(a.due, b.due) : Long.compare(a.order, b.order));
+    private final Map<Ball, Entry> entries = new IdentityHashMap<>();
+    private final List<Collidable> watched = new ArrayList<>();
+    private final SweepResult sweep = new SweepResult();
+    private long nextOrder;
+    private long steps;
+    private long syncs;
+
+    /**
+     * Constructs a BallScheduler.
+     * @param environment the environment the balls move in
+     */
+    public BallScheduler(GameEnvironment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Watches a collidable that moves sideways, like the paddle. Balls that could touch
+     * the rows it covers within a tick are stepped every tick.
+     * @param c the collidable to watch
+     */
+    public void watchRow(Collidable c) {
+        watched.add(c);
+    }
+
+    /**
+     * Adds a ball. Its position and velocity are taken as those at the start of the given tick.
+     * Balls due in the same tick are stepped in the order they were added.
+     * @param ball the ball to add
+     * @param tick the tick the ball joins at
+     */
+    public void add(Ball ball, long tick) {
+        Entry e = new Entry(ball, tick, nextOrder++);
+        entries.put(ball, e);
+        schedule(e);
+    }
+
+    /**
+     * Removes a ball. It is no longer stepped or moved from the next tick on.
+     * @param ball the ball to remove
+     */
+    public void remove(Ball ball) {
+        Entry e = entries.remove(ball);
+        if (e != null) {
+            e.removed = true;
+        }
+    }
+
+    /**
+     * Runs the given tick: every ball that is due is moved to where it is at the start of
+     * the tick, stepped once, and scheduled again. Ticks must be run in order; ticks with
+     * no ball due may be skipped.
+     * @param tick the tick to run
+     */
+    public void advance(long tick) {
+        while (!queue.isEmpty() && queue.peek().due <= tick) {
+            Entry e = queue.poll();
+            if (e.removed) {
+                continue;
+            }
+            e.ball.fly(tick - e.at);
+            e.ball.timePassed();
+            e.at = tick + 1;
+            steps++;
+            if (!e.removed) {
+                schedule(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the first tick in which a ball is due, so a caller with nothing else to do
+     * between events, such as a game whose paddle stands still, can jump straight to it.
+     * @return the tick of the next event, or Long.MAX_VALUE if no ball will ever be due
+     */
+    public long nextEvent() {
+        while (!queue.isEmpty() && queue.peek().removed) {
+            queue.poll();
+        }
+        return queue.isEmpty() ? NEVER : queue.peek().due;
+    }
+
+    /**
+     * Moves every ball to where it is at the start of the given tick, so its position can
+     * be read. Does not change when any ball is due.
+     * @param tick the tick to bring the balls to
+     */
+    public void sync(long tick) {
+        for (Entry e : entries.values()) {
+            if (e.at != tick) {
+                e.ball.fly(tick - e.at);
+                e.at = tick;
+                syncs++;
+            }
+        }
+    }
+
+    /**
+     * Returns the tick a ball's position is for. The ball is where it was at the start of
+     * that tick and flies in a straight line at its velocity from there until it is next
+     * due, so its position in a later tick can be worked out without moving it.
+     * @param ball the ball
+     * @return the tick, or -1 if the ball is not in the scheduler
+     */
+    public long getPositionTick(Ball ball) {
+        Entry e = entries.get(ball);
+        return e == null ? -1 : e.at;
+    }
+
+    /**
+     * Works out the tick a ball is next due in, from its position at the start of tick e.at.
+     */
+    private void schedule(Entry e) {
+        Ball ball = e.ball;
+        double x = ball.getCenter().getX();
+        double y = ball.getCenter().getY();
+        double dx = ball.getVelocity().getDx();
+        double dy = ball.getVelocity().getDy();
+        double r = ball.getSize();
+        long due = NEVER;
+        for (Collidable c : watched) {
+            Rectangle rect = c.getCollisionRectangle();
+            double top = rect.getUpperLeft().getY() - r - Math.abs(dy);
+            double bottom = rect.getUpperLeft().getY() + rect.getHeight() + r + Math.abs(dy);
+            if (y >= top && y <= bottom) {
+                due = e.at;
+            } else if (dy > 0 && y < top) {
+                due = Math.min(due, e.at + (long) Math.floor((top - y) / dy));
+            } else if (dy < 0 && y > bottom) {
+                due = Math.min(due, e.at + (long) Math.floor((y - bottom) / -dy));
+            }
+        }
+        double speed = Math.hypot(dx, dy);
+        if (speed > 0 && due > e.at) {
+            // Sweep ahead in short segments, since a grid sweep looks at every cell of the
+            // segment's bounding box. The ball is due in the tick whose step would touch something.
+            long segment = (long) Math.ceil(SEGMENT / speed);
+            long horizon = e.at + segment * (long) Math.ceil(HORIZON / SEGMENT);
+            long from = e.at;
+            while (from < Math.min(due, horizon)) {
+                long offset = from - e.at;
+                if (environment.sweepCircle(x + dx * offset, y + dy * offset, dx * segment, dy * segment, r, sweep)) {
+                    due = Math.min(due, from + Math.max(0, (long) Math.floor(sweep.getTime() * segment - MARGIN)));
+                    break;
+                }
+                from += segment;
+            }
+            due = Math.min(due, Math.max(e.at, horizon - 1));
+        }
+        e.due = due;
+        queue.add(e);
+    }
+
+    /**
+     * Returns the number of times a ball was stepped because it was due.
+     * @return the step count
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of times a ball was moved to be read between its events.
+     * @return the sync count
+     */
+    public long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * Returns the number of balls in the scheduler.
+     * @return the ball count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * One ball, the tick its position is for and the tick it is next due in.
+     */
+    private static final class Entry {
+        private final Ball ball;
+        private final long order;
+        private long at;
+        private long due;
+        private boolean removed;
+
+        private Entry(Ball ball, long at, long order) {
+            this.ball = ball;
+            this.at = at;
+            this.order = order;
+        }
+    }
+}
@@ -1,25 +1,28 @@
 package sprites;
 import biuoop.DrawSurface;
 import collidables.Collidable;
+import collidables.SweepResult;
 import core.Game;
 import geometry.Line;
 import geometry.Point;
 import geometry.Rectangle;
+import listeners.HitEventQueue;
 import listeners.HitListener;
 import listeners.HitNotifier;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * The Block class represents a rectangular block in the game.
  * Blocks can be collided with and drawn to the screen.
  */
-public class Block implements Sprite, Collidable, HitNotifier {
+public class Block implements StaticSprite, Collidable, HitNotifier {
     private final Rectangle rectangle;
     private final Color color;
-    private final List<HitListener> hitListeners;
+    private HitListener[] hitListeners;
+    private HitEventQueue hitEvents;
+    private int hitId = -1;
 
 
     /**
@@ -28,7 +31,7 @@ public class Block implements Sprite, Collidable, HitNotifier {
      * @param color the color of the block
      */
     public Block(Rectangle rect, Color color) {
-        this.hitListeners = new ArrayList<>();
+        this.hitListeners = new HitListener[0];
         this.rectangle = rect;
         this.color = color;
     }
@@ -81,11 +84,40 @@ public class Block implements Sprite, Collidable, HitNotifier {
             x = -x;
         }
         if (!ballColorMatch(hitter)) {
-            this.notifyHit(hitter);
+            this.notifyHit(hitter, collisionPoint.getX(), collisionPoint.getY());
         }
         return new Velocity(x, y);
     }
 
+    /**
+     * Notifies the block that a swept ball touched it. The velocity is reflected along the
+     * surface normal of the contact, and along both axes on a corner hit.
+     * @param hitter          the ball that hits
+     * @param contact         the contact point and surface normal of the hit
+     * @param currentVelocity the velocity before the hit
+     * @return the new velocity after the hit
+     */
+    @Override
+    public Velocity hit(Ball hitter, SweepResult contact, Velocity currentVelocity) {
+        double x = currentVelocity.getDx();
+        double y = currentVelocity.getDy();
+        if (contact.getNormalX() != 0) {
+            x = Math.copySign(x, contact.getNormalX());
+        }
+        if (contact.getNormalY() != 0) {
+            y = Math.copySign(y, contact.getNormalY());
+        }
+        if (!ballColorMatch(hitter)) {
+            this.notifyHit(hitter, contact.getContactX(), contact.getContactY());
+        }
+        return new Velocity(x, y);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return this.rectangle;
+    }
+
     /**
      * Notifies the block that time has passed.
      */
@@ -119,6 +151,9 @@ public class Block implements Sprite, Collidable, HitNotifier {
     public void addToGame(Game game) {
         game.addSprite(this);
         game.addCollidable(this);
+        if (hitEvents == null) {
+            setHitEventQueue(game.getHitEvents());
+        }
     }
     @Override
     public String toString() {
@@ -143,10 +178,43 @@ public class Block implements Sprite, Collidable, HitNotifier {
         game.removeCollidable(this);
         game.removeSprite(this);
     }
-    private void notifyHit(Ball hitter) {
-        // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<HitListener>(this.hitListeners);
-        // Notify all listeners about a hit event:
+    /**
+     * Registers the block with the given queue, which from now on receives a record of
+     * every hit on the block, besides the hit listeners that are called right away.
+     * @param queue the queue to record hits in
+     */
+    public void setHitEventQueue(HitEventQueue queue) {
+        this.hitEvents = queue;
+        this.hitId = queue.addBlock(this);
+    }
+
+    /**
+     * Unregisters the block from its hit event queue once it left the game for good, so
+     * the queue can give its id to another block. Does nothing if the block is not
+     * registered with a queue.
+     */
+    public void leaveHitEventQueue() {
+        if (hitEvents != null) {
+            hitEvents.removeBlock(hitId);
+            hitEvents = null;
+            hitId = -1;
+        }
+    }
+
+    /**
+     * Returns the id of the block in its hit event queue.
+     * @return the id, or -1 if the block is not registered with a queue
+     */
+    public int getHitId() {
+        return hitId;
+    }
+
+    private void notifyHit(Ball hitter, double x, double y) {
+        if (hitEvents != null) {
+            hitEvents.append(hitId, hitter.getHitId(), x, y);
+        }
+        // Listeners may remove themselves, which replaces the array and not this copy.
+        HitListener[] listeners = this.hitListeners;
         for (HitListener hl : listeners) {
             hl.hitEvent(this, hitter);
         }
@@ -158,7 +226,8 @@ public class Block implements Sprite, Collidable, HitNotifier {
      * @param hl the HitListener to be added
      */
     public void addHitListener(HitListener hl) {
-        hitListeners.add(hl);
+        hitListeners = Arrays.copyOf(hitListeners, hitListeners.length + 1);
+        hitListeners[hitListeners.length - 1] = hl;
     }
     /**
      * Removes a HitListener from the block.
@@ -167,6 +236,14 @@ public class Block implements Sprite, Collidable, HitNotifier {
      * @param hl the HitListener to be removed
      */
     public void removeHitListener(HitListener hl) {
-        hitListeners.remove(hl);
+        for (int i = 0; i < hitListeners.length; i++) {
+            if (hitListeners[i].equals(hl)) {
+                HitListener[] rest = new HitListener[hitListeners.length - 1];
+                System.arraycopy(hitListeners, 0, rest, 0, i);
+                System.arraycopy(hitListeners, i + 1, rest, i, rest.length - i);
+                hitListeners = rest;
+                return;
+            }
+        }
     }
 }
@@ -0,0 +1,19 @@
+package sprites;
+
+/**
+ * A CullableSprite knows where in the world it draws, so a SpriteCollection drawing
+ * through a camera can skip it when it is outside the viewport instead of drawing it.
+ */
+public interface CullableSprite extends Sprite {
+
+    /**
+     * Checks whether the sprite may draw anything inside the given world box, at any
+     * interpolation between the previous tick and the current one.
+     * @param minX the left edge of the box
+     * @param minY the top edge of the box
+     * @param maxX the right edge of the box
+     * @param maxY the bottom edge of the box
+     * @return false only if the sprite draws nothing inside the box
+     */
+    boolean overlaps(double minX, double minY, double maxX, double maxY);
+}
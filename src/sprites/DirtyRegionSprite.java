@@ -0,0 +1,25 @@
+package sprites;
+
+import graphics.DirtyRegions;
+
+/**
+ * A DirtyRegionSprite knows which parts of the screen it changed since the previous
+ * frame, so only those parts need to be redrawn instead of the whole screen.
+ */
+public interface DirtyRegionSprite extends Sprite {
+
+    /**
+     * Reports the screen regions that look different from the previous frame because of
+     * this sprite: where it was drawn then and where it will be drawn now, if either its
+     * position or its appearance changed. Called once per frame, right before drawing.
+     * @param alpha how far the frame is from the previous tick (0) to the current one (1)
+     * @param out   receives the dirty regions
+     */
+    void addDirtyRegions(double alpha, DirtyRegions out);
+
+    /**
+     * Reports where the sprite was drawn on the previous frame, for when it is removed.
+     * @param out receives the region
+     */
+    void addDrawnRegion(DirtyRegions out);
+}
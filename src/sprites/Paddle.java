@@ -2,23 +2,36 @@ package sprites;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 import collidables.Collidable;
+import collidables.SweepResult;
 import core.Game;
 import geometry.Point;
 import geometry.Rectangle;
+import graphics.DirtyRegions;
+import graphics.DrawnRegion;
+import input.InputProvider;
+import input.KeyboardInput;
 
 import java.awt.Color;
 
 /**
  * The Paddle class represents the player's paddle in the game.
- * It is controlled using the keyboard and can bounce balls.
+ * It is controlled by an InputProvider (usually the keyboard) and can bounce balls.
  * The paddle is both a Sprite and a Collidable.
  */
-public class Paddle implements Sprite, Collidable {
+public class Paddle implements DirtyRegionSprite, CullableSprite, Collidable {
+    /**
+     * The number of regions the top surface is split into, numbered 1 to REGIONS from the left.
+     */
+    public static final int REGIONS = 5;
+
     private Rectangle rectangle;
+    private Rectangle previousRectangle;
     private final Color color;
-    private final KeyboardSensor keyboard;
+    private final InputProvider input;
     private final double speed;
     private final int screenWidth;
+    private Game game;
+    private final DrawnRegion drawn = new DrawnRegion();
 
     /**
      * Constructs a Paddle object.
@@ -29,13 +42,41 @@ public class Paddle implements Sprite, Collidable {
      * @param screenWidth  the width of the screen
      */
     public Paddle(Rectangle rectangle, Color color, KeyboardSensor keyboard, int speed, int screenWidth) {
+        this(rectangle, color, new KeyboardInput(keyboard), speed, screenWidth);
+    }
+
+    /**
+     * Constructs a Paddle object driven by the given input.
+     * @param rectangle    the shape and position of the paddle
+     * @param color        the color of the paddle
+     * @param input        the input that moves the paddle
+     * @param speed        the movement speed of the paddle
+     * @param screenWidth  the width of the screen
+     */
+    public Paddle(Rectangle rectangle, Color color, InputProvider input, int speed, int screenWidth) {
         this.rectangle = rectangle;
         this.color = color;
-        this.keyboard = keyboard;
+        this.input = input;
         this.speed = speed;
         this.screenWidth = screenWidth;
     }
 
+    /**
+     * Returns the color of the paddle.
+     * @return the color
+     */
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * Returns how far the paddle moves in a tick while a direction is pressed.
+     * @return the speed in pixels per tick
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
     /**
      * Moves the paddle to the left. Wraps around the screen if needed.
      */
@@ -46,6 +87,9 @@ public class Paddle implements Sprite, Collidable {
         }
         this.rectangle = new Rectangle(new Point(newX, rectangle.getUpperLeft().getY()),
                 rectangle.getWidth(), rectangle.getHeight());
+        if (game != null) {
+            game.updateCollidable(this);
+        }
     }
 
     /**
@@ -58,18 +102,23 @@ public class Paddle implements Sprite, Collidable {
         }
         this.rectangle = new Rectangle(new Point(newX, rectangle.getUpperLeft().getY()),
                 rectangle.getWidth(), rectangle.getHeight());
+        if (game != null) {
+            game.updateCollidable(this);
+        }
     }
 
     /**
      * Notifies the paddle that time has passed.
-     * Moves the paddle based on keyboard input.
+     * Moves the paddle based on the input of this tick.
      */
     @Override
     public void timePassed() {
-        if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
+        previousRectangle = rectangle;
+        int pressed = input.poll();
+        if ((pressed & InputProvider.LEFT) != 0) {
             moveLeft();
         }
-        if (keyboard.isPressed(KeyboardSensor.RIGHT_KEY)) {
+        if ((pressed & InputProvider.RIGHT) != 0) {
             moveRight();
         }
     }
@@ -91,6 +140,61 @@ public class Paddle implements Sprite, Collidable {
         d.drawRectangle(x, y, width, height);
     }
 
+    /**
+     * Draws the paddle between its position before the last tick and its current one.
+     * A tick that wrapped the paddle around the screen is not interpolated.
+     *
+     * @param d     the surface to draw on
+     * @param alpha how far to go from the previous position (0) to the current one (1)
+     */
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        int x = drawnX(alpha);
+        int y = (int) rectangle.getUpperLeft().getY();
+        int width = (int) rectangle.getWidth();
+        int height = (int) rectangle.getHeight();
+        d.setColor(color);
+        d.fillRectangle(x, y, width, height);
+        d.setColor(Color.BLACK);
+        d.drawRectangle(x, y, width, height);
+    }
+
+    @Override
+    public void addDirtyRegions(double alpha, DirtyRegions out) {
+        drawn.update(drawnX(alpha), (int) rectangle.getUpperLeft().getY(),
+                (int) rectangle.getWidth() + 1, (int) rectangle.getHeight() + 1, null, out);
+    }
+
+    @Override
+    public boolean overlaps(double minX, double minY, double maxX, double maxY) {
+        Rectangle from = previousRectangle == null ? rectangle : previousRectangle;
+        double left = Math.min(from.getUpperLeft().getX(), rectangle.getUpperLeft().getX());
+        double right = Math.max(from.getUpperLeft().getX(), rectangle.getUpperLeft().getX())
+                + rectangle.getWidth() + 1;
+        double top = rectangle.getUpperLeft().getY();
+        return left <= maxX && right >= minX && top <= maxY && top + rectangle.getHeight() + 1 >= minY;
+    }
+
+    @Override
+    public void addDrawnRegion(DirtyRegions out) {
+        drawn.addTo(out);
+        drawn.clear();
+    }
+
+    /**
+     * Returns the x coordinate the paddle is drawn at, between its position before the
+     * last tick and its current one. A tick that wrapped the paddle around the screen
+     * is not interpolated.
+     */
+    private int drawnX(double alpha) {
+        if (previousRectangle == null
+                || Math.abs(rectangle.getUpperLeft().getX() - previousRectangle.getUpperLeft().getX()) > speed) {
+            return (int) rectangle.getUpperLeft().getX();
+        }
+        double from = previousRectangle.getUpperLeft().getX();
+        return (int) (from + (rectangle.getUpperLeft().getX() - from) * alpha);
+    }
+
     /**
      * Returns the rectangle representing the paddle's collision shape.
      *
@@ -140,18 +244,7 @@ public class Paddle implements Sprite, Collidable {
 
         // Top surface hit: region-based reflection
         if (Math.abs(y - top) < epsilon && x > left && x < right) {
-            double regionWidth = width / 5;
-            int region = (int) ((x - left) / regionWidth) + 1;
-            region = Math.max(1, Math.min(5, region));
-
-            return switch (region) {
-                case 1 -> Velocity.fromAngleAndSpeed(300, speed);
-                case 2 -> Velocity.fromAngleAndSpeed(330, speed);
-                case 3 -> new Velocity(dx, -Math.abs(dy));
-                case 4 -> Velocity.fromAngleAndSpeed(30, speed);
-                case 5 -> Velocity.fromAngleAndSpeed(60, speed);
-                default -> new Velocity(dx, -Math.abs(dy)); // fallback
-            };
+            return topHit(x, currentVelocity);
         }
 
         //Fallback: vertical bounce
@@ -164,6 +257,71 @@ public class Paddle implements Sprite, Collidable {
 
 
 
+    /**
+     * Handles a swept ball touching the paddle, using the surface normal of the contact
+     * instead of re-deriving the edge from the contact point.
+     * The top surface keeps the same 5 regions as {@link #hit(Ball, Point, Velocity)}.
+     *
+     * @param hitter          the ball that hits
+     * @param contact         the contact point and surface normal of the hit
+     * @param currentVelocity the velocity before the hit
+     * @return the new velocity after the hit
+     */
+    @Override
+    public Velocity hit(Ball hitter, SweepResult contact, Velocity currentVelocity) {
+        double dx = currentVelocity.getDx();
+        double dy = currentVelocity.getDy();
+        double nx = contact.getNormalX();
+        double ny = contact.getNormalY();
+
+        if (ny < 0 && nx != 0) {
+            // Top-left or top-right corner
+            return Velocity.fromAngleAndSpeed(nx < 0 ? 300 : 60, Math.hypot(dx, dy));
+        }
+        if (ny < 0) {
+            return topHit(contact.getContactX(), currentVelocity);
+        }
+        if (nx != 0) {
+            return new Velocity(Math.copySign(dx, nx), dy);
+        }
+        return new Velocity(dx, Math.copySign(dy, ny));
+    }
+
+    /**
+     * Returns the velocity of a ball bouncing off the top surface at the given x.
+     * The surface is split into 5 regions, from a sharp left angle to a sharp right angle.
+     */
+    private Velocity topHit(double x, Velocity currentVelocity) {
+        double left = rectangle.getUpperLeft().getX();
+        double regionWidth = rectangle.getWidth() / REGIONS;
+        int region = (int) ((x - left) / regionWidth) + 1;
+        region = Math.max(1, Math.min(REGIONS, region));
+        return regionVelocity(region, currentVelocity);
+    }
+
+    /**
+     * Returns the velocity a ball leaves the top surface with after landing in the given
+     * region: the outer regions send it off at fixed angles, the middle one reflects it.
+     * The ball keeps its speed.
+     *
+     * @param region          the region the ball lands in, 1 to REGIONS from the left
+     * @param currentVelocity the velocity before the hit
+     * @return the new velocity after the hit
+     */
+    public static Velocity regionVelocity(int region, Velocity currentVelocity) {
+        double dx = currentVelocity.getDx();
+        double dy = currentVelocity.getDy();
+        double speed = Math.hypot(dx, dy);
+        return switch (region) {
+            case 1 -> Velocity.fromAngleAndSpeed(300, speed);
+            case 2 -> Velocity.fromAngleAndSpeed(330, speed);
+            case 3 -> new Velocity(dx, -Math.abs(dy));
+            case 4 -> Velocity.fromAngleAndSpeed(30, speed);
+            case 5 -> Velocity.fromAngleAndSpeed(60, speed);
+            default -> throw new IllegalArgumentException("no paddle region " + region);
+        };
+    }
+
     /**
      * Adds the paddle to the game as both a Sprite and a Collidable.
      *
@@ -171,7 +329,8 @@ public class Paddle implements Sprite, Collidable {
      */
     public void addToGame(Game g) {
         g.addSprite(this);
-        g.addCollidable(this);
+        g.addDynamicCollidable(this);
+        this.game = g;
     }
     @Override
     public String toString() {
@@ -0,0 +1,18 @@
+package sprites;
+
+/**
+ * A ParallelSprite can do the expensive part of its timePassed ahead of time, on another
+ * thread, without changing any shared state. SpriteCollection uses this to prepare many
+ * sprites at once on several cores and then apply them one by one, in order, on the
+ * game thread.
+ *
+ * <p>timePassed must give exactly the same result whether or not prepareTimePassed ran
+ * first: a sprite that finds its prepared work out of date simply redoes it.</p>
+ */
+public interface ParallelSprite extends Sprite {
+
+    /**
+     * Prepares the next timePassed. Must only read state shared with other sprites.
+     */
+    void prepareTimePassed();
+}
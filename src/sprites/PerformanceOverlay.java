@@ -0,0 +1,95 @@
+package sprites;
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+import graphics.DirtyRegions;
+import metrics.FrameStats;
+import metrics.LogHistogram;
+
+import java.awt.Color;
+/**
+ * PerformanceOverlay is a Sprite that shows the frame rate, the p50/p99/max time of each
+ * phase of the game loop and the number of dropped frames. It is hidden until its toggle
+ * key is pressed, and pressing the key again hides it.
+ */
+public class PerformanceOverlay implements DirtyRegionSprite, ScreenSprite {
+    private static final String TOGGLE_KEY = "p";
+
+    private final FrameStats stats;
+    private final KeyboardSensor keyboard;
+    private boolean visible;
+    private boolean keyWasDown;
+    private boolean drawnVisible;
+
+    /**
+     * Constructs a PerformanceOverlay showing the given statistics.
+     * @param stats    the frame statistics to show
+     * @param keyboard the keyboard sensor whose "p" key toggles the overlay
+     */
+    public PerformanceOverlay(FrameStats stats, KeyboardSensor keyboard) {
+        this.stats = stats;
+        this.keyboard = keyboard;
+    }
+
+    /**
+     * Shows or hides the overlay.
+     * @param visible true to show the overlay
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
+    @Override
+    public void drawOn(DrawSurface d) {
+        if (!visible) {
+            return;
+        }
+        d.setColor(Color.BLACK);
+        int y = 40;
+        d.drawText(30, y, String.format("FPS %.1f   dropped frames %d   dropped ticks %d",
+                stats.getFps(), stats.getDroppedFrames(), stats.getDroppedTicks()), 12);
+        for (FrameStats.Phase phase : FrameStats.Phase.values()) {
+            y += 14;
+            LogHistogram h = stats.get(phase);
+            d.drawText(30, y, String.format("%-5s p50 %7.3f ms  p99 %7.3f ms  max %7.3f ms",
+                    phase, h.getPercentile(50) / 1e6, h.getPercentile(99) / 1e6, h.getMax() / 1e6), 12);
+        }
+        y += 14;
+        LogHistogram pixels = stats.getPixelsDrawn();
+        d.drawText(30, y, String.format("PIXELS p50 %d  p99 %d  per frame", pixels.getPercentile(50),
+                pixels.getPercentile(99)), 12);
+    }
+
+    /**
+     * The overlay changes every frame while it is visible, so its whole area is dirty
+     * then, and once more on the frame it is hidden.
+     */
+    @Override
+    public void addDirtyRegions(double alpha, DirtyRegions out) {
+        if (visible || drawnVisible) {
+            addArea(out);
+        }
+        drawnVisible = visible;
+    }
+
+    @Override
+    public void addDrawnRegion(DirtyRegions out) {
+        if (drawnVisible) {
+            addArea(out);
+        }
+        drawnVisible = false;
+    }
+
+    private static void addArea(DirtyRegions out) {
+        // Roomy enough for the six lines of 12pt text drawn from (30, 40).
+        out.add(25, 26, 520, 90);
+    }
+
+    @Override
+    public void timePassed() {
+        boolean keyDown = keyboard.isPressed(TOGGLE_KEY);
+        if (keyDown && !keyWasDown) {
+            visible = !visible;
+        }
+        keyWasDown = keyDown;
+    }
+}
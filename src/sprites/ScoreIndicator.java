@@ -1,13 +1,16 @@
 package sprites;
 import biuoop.DrawSurface;
 import counters.Counter;
+import graphics.DirtyRegions;
+import graphics.DrawnRegion;
 
 import java.awt.Color;
 /**
  * ScoreIndicator is a Sprite that displays the current score at the top of the screen.
  */
-public class ScoreIndicator implements Sprite {
+public class ScoreIndicator implements DirtyRegionSprite, ScreenSprite {
     private final Counter score;
+    private final DrawnRegion drawn = new DrawnRegion();
     /**
      * Constructs a ScoreIndicator with the given score counter.
      * @param score the counter tracking the current score
@@ -22,6 +25,18 @@ public class ScoreIndicator implements Sprite {
         d.drawText(350, 18, "Score: " + score.getValue(), 16);
     }
 
+    @Override
+    public void addDirtyRegions(double alpha, DirtyRegions out) {
+        // Roomy enough for the text of any score at this font size.
+        drawn.update(340, 0, 200, 26, score.getValue(), out);
+    }
+
+    @Override
+    public void addDrawnRegion(DirtyRegions out) {
+        drawn.addTo(out);
+        drawn.clear();
+    }
+
     @Override
     public void timePassed() {
     }
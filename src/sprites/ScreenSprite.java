@@ -0,0 +1,9 @@
+package sprites;
+
+/**
+ * A ScreenSprite draws in screen coordinates, like the score or an overlay. When the
+ * sprites are drawn through a camera it stays in place on top of the world instead of
+ * scrolling with it.
+ */
+public interface ScreenSprite extends Sprite {
+}
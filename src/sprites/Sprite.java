@@ -15,6 +15,18 @@ public interface Sprite {
      */
     void drawOn(DrawSurface d);
 
+    /**
+     * Draws the sprite part of the way between its state before the last tick and its
+     * current state, so drawing can run at a different rate than the simulation.
+     * Sprites that do not move can ignore the interpolation, which is the default.
+     *
+     * @param d     the surface to draw the sprite on
+     * @param alpha how far to go from the previous state (0) to the current state (1)
+     */
+    default void drawOn(DrawSurface d, double alpha) {
+        drawOn(d);
+    }
+
     /**
      * Notifies the sprite that a unit of time has passed,
      * so it can update its state accordingly.
@@ -1,14 +1,77 @@
 package sprites;
 import biuoop.DrawSurface;
+import graphics.Camera;
+import graphics.DirtyRegions;
+import graphics.FrameBuffer;
+import graphics.RenderQueue;
+import graphics.StaticLayer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The SpriteCollection class manages a collection of Sprite objects.
  * It is responsible for updating and drawing all the sprites in the collection.
+ *
+ * <p>Removing a sprite only queues the removal; queued removals are applied together in
+ * one pass over the list before the sprites are next updated, drawn or listed. A tick can
+ * therefore walk the list by index while sprites remove themselves or each other, and
+ * removing many sprites at once costs one pass instead of one pass each.</p>
  */
 public class SpriteCollection {
+    private static final int MIN_PARALLEL_RUN = 64;
+    private static final int PREPARE_CHUNK = 16;
+
     private final List<Sprite> sprites = new ArrayList<>();
+    private final Map<Sprite, Integer> pendingRemovals = new IdentityHashMap<>();
+    private ForkJoinPool pool;
+    private StaticLayer staticLayer;
+    private RenderQueue renderQueue;
+    private final List<DirtyRegionSprite> removedSinceDraw = new ArrayList<>();
+    private boolean removedUntracked;
+    private boolean drawsDirty;
+
+    /**
+     * Sets the pool ParallelSprites prepare their timePassed on, or null to update
+     * every sprite on the calling thread. Either way the sprites are applied one by one
+     * in the order they were added, so the outcome of a tick does not depend on it.
+     * @param pool the pool to prepare sprites on, or null
+     */
+    public void setParallelism(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the layer StaticSprites are cached in, or null to draw them every frame.
+     * Static sprites already in the collection are moved into the new layer.
+     * The cached layer is drawn first, so static sprites end up below all the others.
+     * @param layer the layer to cache static sprites in, or null
+     */
+    public void setStaticLayer(StaticLayer layer) {
+        applyRemovals();
+        this.staticLayer = layer;
+        if (layer != null) {
+            for (Sprite s : this.sprites) {
+                if (s instanceof StaticSprite) {
+                    layer.add((StaticSprite) s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the queue StaticSprites are batched in when they are not cached in a static
+     * layer, or null to draw them one by one. The queue draws them below all the other
+     * sprites, grouped by colour, so drawing many blocks changes the colour only a few times.
+     * @param queue the queue to batch static sprites in, or null
+     */
+    public void setRenderQueue(RenderQueue queue) {
+        this.renderQueue = queue;
+    }
 
     /**
      * Adds a sprite to the collection.
@@ -16,17 +79,39 @@ public class SpriteCollection {
      */
     public void addSprite(Sprite s) {
         this.sprites.add(s);
+        if (staticLayer != null && s instanceof StaticSprite) {
+            staticLayer.add((StaticSprite) s);
+        }
     }
 
     /**
      * Calls timePassed on all sprites in the collection.
      * This updates each sprite according to the passage of time.
+     * When a pool is set, long runs of ParallelSprites are first prepared on the pool.
+     * Sprites added during the tick are first updated on the next one; sprites removed
+     * during the tick are still updated on this one if their turn had not come yet.
      */
     public void notifyAllTimePassed() {
-        List<Sprite> copy = new ArrayList<>(this.sprites);
-        for (Sprite s : copy) {
-            s.timePassed();
+        applyRemovals();
+        int size = this.sprites.size();
+        int i = 0;
+        while (i < size) {
+            int end = i;
+            if (pool != null) {
+                while (end < size && this.sprites.get(end) instanceof ParallelSprite) {
+                    end++;
+                }
+            }
+            if (end - i >= MIN_PARALLEL_RUN) {
+                pool.invoke(new Prepare(this.sprites, i, end));
+            } else {
+                end = Math.max(end, i + 1);
+            }
+            for (; i < end; i++) {
+                this.sprites.get(i).timePassed();
+            }
         }
+        applyRemovals();
     }
 
     /**
@@ -35,16 +120,196 @@ public class SpriteCollection {
      * @param d the drawing surface
      */
     public void drawAllOn(DrawSurface d) {
+        applyRemovals();
+        boolean batched = drawStaticOn(d);
+        for (Sprite s : this.sprites) {
+            if (!batched || !(s instanceof StaticSprite)) {
+                s.drawOn(d);
+            }
+        }
+    }
+
+    /**
+     * Calls drawOn on all sprites in the collection, interpolated between the previous
+     * and the current tick.
+     * @param d     the drawing surface
+     * @param alpha how far to go from the previous tick (0) to the current tick (1)
+     */
+    public void drawAllOn(DrawSurface d, double alpha) {
+        applyRemovals();
+        boolean batched = drawStaticOn(d);
         for (Sprite s : this.sprites) {
-            s.drawOn(d);
+            if (!batched || !(s instanceof StaticSprite)) {
+                s.drawOn(d, alpha);
+            }
         }
     }
+
+    /**
+     * Draws the world through a camera, interpolated like {@link #drawAllOn(DrawSurface, double)}.
+     * CullableSprites outside the viewport are skipped without being drawn, so the cost of
+     * a frame depends on what is on screen and not on the size of the world. ScreenSprites
+     * are drawn last, straight onto the screen. The static layer and the render queue are
+     * not used, since both cache the screen and not the world.
+     * @param screen the surface of the screen
+     * @param alpha  how far to go from the previous tick (0) to the current tick (1)
+     * @param camera the camera the world is seen through
+     */
+    public void drawAllOn(DrawSurface screen, double alpha, Camera camera) {
+        applyRemovals();
+        DrawSurface world = camera.project(screen);
+        double minX = camera.getX();
+        double minY = camera.getY();
+        double maxX = minX + camera.getWidth();
+        double maxY = minY + camera.getHeight();
+        for (Sprite s : this.sprites) {
+            if (s instanceof ScreenSprite
+                    || (s instanceof CullableSprite && !((CullableSprite) s).overlaps(minX, minY, maxX, maxY))) {
+                continue;
+            }
+            s.drawOn(world, alpha);
+        }
+        for (Sprite s : this.sprites) {
+            if (s instanceof ScreenSprite) {
+                s.drawOn(screen, alpha);
+            }
+        }
+    }
+
+    /**
+     * Draws the static sprites through the static layer or the render queue, if either is set.
+     * @return true if the static sprites were drawn, false if they are left to be drawn in order
+     */
+    private boolean drawStaticOn(DrawSurface d) {
+        if (staticLayer != null) {
+            staticLayer.drawOn(d);
+            return true;
+        }
+        if (renderQueue == null) {
+            return false;
+        }
+        for (Sprite s : this.sprites) {
+            if (s instanceof StaticSprite) {
+                s.drawOn(renderQueue);
+            }
+        }
+        renderQueue.flush(d);
+        return true;
+    }
+
+    /**
+     * Draws the sprites into a frame buffer, interpolated like {@link #drawAllOn(DrawSurface, double)},
+     * but only redraws the regions that changed since the previous call: regions of the
+     * static layer that were repainted, regions reported by DirtyRegionSprites, and where
+     * removed sprites used to be. Any other sprite makes the whole frame dirty.
+     * @param frame the frame buffer to draw into
+     * @param alpha how far to go from the previous tick (0) to the current tick (1)
+     */
+    public void drawDirtyOn(FrameBuffer frame, double alpha) {
+        applyRemovals();
+        drawsDirty = true;
+        DirtyRegions dirty = frame.getDirtyRegions();
+        if (staticLayer != null) {
+            staticLayer.repair(dirty);
+        }
+        for (DirtyRegionSprite s : removedSinceDraw) {
+            s.addDrawnRegion(dirty);
+        }
+        removedSinceDraw.clear();
+        if (removedUntracked) {
+            dirty.addAll();
+            removedUntracked = false;
+        }
+        for (Sprite s : this.sprites) {
+            if (s instanceof DirtyRegionSprite) {
+                ((DirtyRegionSprite) s).addDirtyRegions(alpha, dirty);
+            } else if (staticLayer == null || !(s instanceof StaticSprite)) {
+                dirty.addAll();
+            }
+        }
+        frame.redraw(d -> drawAllOn(d, alpha));
+    }
+
+    /**
+     * Returns the sprites in the order they were added.
+     * @return a read-only view of the sprites
+     */
+    public List<Sprite> getSprites() {
+        applyRemovals();
+        return Collections.unmodifiableList(this.sprites);
+    }
+
     /**
      * Removes the given sprite from the sprite collection.
+     * The sprite is taken out of the list the next time the sprites are updated, drawn or
+     * listed, so this is safe to call while the collection is being updated.
      *
      * @param s the sprite to remove
      */
     public void removeSprite(Sprite s) {
-        this.sprites.remove(s);
+        pendingRemovals.merge(s, 1, Integer::sum);
+        if (staticLayer != null && s instanceof StaticSprite) {
+            staticLayer.remove((StaticSprite) s);
+        } else if (!drawsDirty) {
+            return;
+        } else if (s instanceof DirtyRegionSprite) {
+            removedSinceDraw.add((DirtyRegionSprite) s);
+        } else {
+            removedUntracked = true;
+        }
+    }
+
+    /**
+     * Applies the queued removals in one pass over the list. Like List.remove, each queued
+     * removal takes out the first occurrence of its sprite, and removing a sprite that is
+     * not in the collection does nothing.
+     */
+    private void applyRemovals() {
+        if (pendingRemovals.isEmpty()) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < this.sprites.size(); i++) {
+            Sprite s = this.sprites.get(i);
+            Integer pending = pendingRemovals.get(s);
+            if (pending == null) {
+                this.sprites.set(kept++, s);
+            } else if (pending == 1) {
+                pendingRemovals.remove(s);
+            } else {
+                pendingRemovals.put(s, pending - 1);
+            }
+        }
+        this.sprites.subList(kept, this.sprites.size()).clear();
+        pendingRemovals.clear();
+    }
+
+    /**
+     * Prepares a range of ParallelSprites, splitting it in halves across the pool.
+     */
+    private static final class Prepare extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Sprite> sprites;
+        private final int from;
+        private final int to;
+
+        private Prepare(List<Sprite> sprites, int from, int to) {
+            this.sprites = sprites;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PREPARE_CHUNK) {
+                for (int i = from; i < to; i++) {
+                    ((ParallelSprite) sprites.get(i)).prepareTimePassed();
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Prepare(sprites, from, mid), new Prepare(sprites, mid, to));
+        }
     }
 }
@@ -0,0 +1,26 @@
+package sprites;
+
+import geometry.Rectangle;
+
+/**
+ * A StaticSprite looks the same on every frame for as long as it is in the game, and
+ * only draws inside its bounds. SpriteCollection can therefore paint it once into a
+ * cached layer instead of drawing it every frame.
+ */
+public interface StaticSprite extends CullableSprite {
+
+    /**
+     * Returns the area the sprite draws in, not counting the one-pixel outline that
+     * drawRectangle adds on the right and bottom edges.
+     * @return the bounds of the sprite
+     */
+    Rectangle getBounds();
+
+    @Override
+    default boolean overlaps(double minX, double minY, double maxX, double maxY) {
+        Rectangle r = getBounds();
+        double left = r.getUpperLeft().getX();
+        double top = r.getUpperLeft().getY();
+        return left <= maxX && left + r.getWidth() + 1 >= minX && top <= maxY && top + r.getHeight() + 1 >= minY;
+    }
+}